@@ -23,6 +23,8 @@
  */
 package org.knowceans.arms;
 
+import java.util.Random;
+
 /**
  * ArmSampler implements an adaptive rejection Metropolis sampler (ARMS) that
  * can sample from virtually any univariate distribution. The method performs
@@ -49,6 +51,10 @@ package org.knowceans.arms;
  * <p>
  * Gilks, W. R. and Wild, P. (1992) Adaptive rejection sampling for Gibbs
  * sampling. Applied Statistics 41, pp 337-348.
+ * <p>
+ * The envelope points, the Metropolis state and the working point are
+ * allocated once per instance and reused by subsequent calls of arms(), so an
+ * instance should not be used by several threads at a time.
  * 
  * @author gregor heinrich
  */
@@ -142,6 +148,18 @@ public abstract class ArmSampler {
     /** maximum y avoiding overflow in exp(y) */
     public static final double YCEIL = 50.;
 
+    /** envelope reused across calls */
+    private Envelope workEnv;
+
+    /** metropolis bits reused across calls */
+    private Metropolis workMetrop;
+
+    /** working point reused across calls */
+    private Point workPoint;
+
+    /** generator for uniforms, Math.random() if null */
+    private Random rand;
+
     /**
      * adaptive rejection metropolis sampling - simplified argument list
      * 
@@ -211,7 +229,7 @@ public abstract class ArmSampler {
         /* rejection envelope */
         Envelope env;
         /* a working point, not yet incorporated in envelope */
-        Point pwork = new Point();
+        Point pwork;
         /* the number of x-values currently sampled */
         int msamp = 0;
         /* to hold bits for metropolis step */
@@ -228,12 +246,18 @@ public abstract class ArmSampler {
             }
         }
 
-        env = new Envelope();
+        if (workEnv == null) {
+            workEnv = new Envelope();
+            workMetrop = new Metropolis();
+            workPoint = new Point();
+        }
+        env = workEnv;
+        pwork = workPoint;
 
         /*
          * start setting up metropolis struct
          */
-        metrop = new Metropolis();
+        metrop = workMetrop;
 
         metrop.on = dometrop;
 
@@ -348,11 +372,17 @@ public abstract class ArmSampler {
         env.neval[DEREF] = 0;
 
         /*
-         * set up space for envelope POINTs
+         * set up space for envelope POINTs (kept from previous calls if large
+         * enough)
          */
         env.npoint = npoint;
 
-        env.p = new Point[npoint];
+        if (env.p == null || env.p.length < npoint) {
+            env.p = new Point[npoint];
+            for (i = 0; i < npoint; i++) {
+                env.p[i] = new Point();
+            }
+        }
 
         /*
          * set up envelope POINTs
@@ -361,13 +391,11 @@ public abstract class ArmSampler {
         /*
          * left bound
          */
-        q[DEREF] = new Point();
         q[DEREF].x = xl;
         q[DEREF].f = 0;
         q[DEREF].pl = null;
         q[DEREF].pr = q[1];
         for (j = 1, k = 0; j < mpoint - 1; j++) {
-            q[j] = new Point();
             if ((j % 2) != 0) {
                 /*
                  * point on log density
@@ -387,7 +415,6 @@ public abstract class ArmSampler {
         /*
          * right bound
          */
-        q[j] = new Point();
         q[j].x = xr;
         q[j].f = 0;
         q[j].pl = q[j - 1];
@@ -429,7 +456,7 @@ public abstract class ArmSampler {
         /*
          * sample a uniform
          */
-        prob = Math.random();
+        prob = uniform();
         /*
          * get x-value correponding to a cumulative probability prob
          */
@@ -546,7 +573,7 @@ public abstract class ArmSampler {
         /*
          * for rejection test
          */
-        u = Math.random() * p.ey;
+        u = uniform() * p.ey;
         y = logshift(u, env.ymax);
 
         if (!(metrop.on) && (p.pl.pl != null) && (p.pr.pr != null)) {
@@ -637,7 +664,7 @@ public abstract class ArmSampler {
         } else {
             w = 0.0;
         }
-        u = Math.random();
+        u = uniform();
         if (u > w) {
             /*
              * metropolis says dont move, so replace current point with previous
@@ -688,7 +715,7 @@ public abstract class ArmSampler {
         /*
          * copy working POINT p to a new POINT q
          */
-        q = new Point();
+        q = env.p[env.cpoint++];
         q.x = p.x;
         q.y = p.y;
         q.f = 1;
@@ -696,7 +723,7 @@ public abstract class ArmSampler {
         /*
          * allocate an unused POINT for a new intersection
          */
-        m = new Point();
+        m = env.p[env.cpoint++];
         m.f = 0;
         if ((p.pl.f != 0) && (p.pr.f == 0)) {
             /*
@@ -1015,6 +1042,58 @@ public abstract class ArmSampler {
         return (Math.log(y) + y0 - YCEIL);
     }
 
+    /**
+     * @param rand generator for the uniforms of this sampler, e.g., one stream
+     *        per thread; null to use Math.random()
+     */
+    public void setRandom(Random rand) {
+        this.rand = rand;
+    }
+
+    double uniform() {
+        return rand != null ? rand.nextDouble() : Math.random();
+    }
+
+    /**
+     * copy abscissae of the log density evaluated in the last call of arms()
+     * to x, at most n and spread evenly by rank over the envelope. They are
+     * in ascending order and can serve as starting values of the next call
+     * for a similar density.
+     * 
+     * @param x [out] abscissae
+     * @param n maximum number of abscissae
+     * @return number of abscissae copied
+     */
+    public int getAbscissae(double[] x, int n) {
+        Point q;
+        int i, j, nf = 0;
+
+        if (workEnv == null || workEnv.p == null) {
+            return 0;
+        }
+        q = workEnv.p[DEREF];
+        while (q.pl != null)
+            q = q.pl;
+        for (Point r = q; r != null; r = r.pr) {
+            if (r.f != 0)
+                nf++;
+        }
+        if (nf < n)
+            n = nf;
+        for (i = 0, j = 0; q != null && j < n; q = q.pr) {
+            if (q.f != 0) {
+                /*
+                 * take the evaluated point of rank (j + 1/2) nf / n
+                 */
+                if (i == (int) ((j + 0.5) * nf / n)) {
+                    x[j++] = q.x;
+                }
+                i++;
+            }
+        }
+        return n;
+    }
+
     /**
      * to evaluate log density and increment count of evaluations
      * 
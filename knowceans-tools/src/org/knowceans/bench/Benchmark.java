@@ -0,0 +1,157 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.bench;
+
+/**
+ * Benchmark is a micro-benchmark of one operation under one parameter setting,
+ * measured as nanoseconds per operation in the manner of JMH: warm-up
+ * iterations let the JIT compile the code, then each measurement iteration
+ * runs a batch of operations calibrated to take at least a minimum time.
+ * Subclasses implement run(n) with a loop over n operations whose results are
+ * folded into the return value, which is consumed by the harness so the JIT
+ * cannot eliminate the work. Data the operations need is prepared in setup()
+ * outside the measured time.
+ *
+ * @author heinrich
+ */
+public abstract class Benchmark {
+
+	/**
+	 * Result holds the timing of one benchmark.
+	 */
+	public static class Result {
+
+		public final String name;
+
+		public final String params;
+
+		/**
+		 * operations per measurement iteration
+		 */
+		public final long ops;
+
+		/**
+		 * ns per operation of each measurement iteration
+		 */
+		public final double[] nsPerOp;
+
+		public Result(String name, String params, long ops, double[] nsPerOp) {
+			this.name = name;
+			this.params = params;
+			this.ops = ops;
+			this.nsPerOp = nsPerOp;
+		}
+
+		public double mean() {
+			double sum = 0;
+			for (double t : nsPerOp) {
+				sum += t;
+			}
+			return sum / nsPerOp.length;
+		}
+
+		/**
+		 * @return standard deviation over the iterations
+		 */
+		public double sd() {
+			double mean = mean(), sum = 0;
+			for (double t : nsPerOp) {
+				sum += (t - mean) * (t - mean);
+			}
+			return nsPerOp.length > 1 ? Math.sqrt(sum / (nsPerOp.length - 1))
+					: 0;
+		}
+
+		public double min() {
+			double min = Double.POSITIVE_INFINITY;
+			for (double t : nsPerOp) {
+				min = Math.min(min, t);
+			}
+			return min;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-36s %-24s %12.2f +- %8.2f ns/op", name,
+					params, mean(), sd());
+		}
+	}
+
+	/**
+	 * consumes the results of run()
+	 */
+	private static volatile double sink;
+
+	protected final String name;
+
+	protected final String params;
+
+	/**
+	 * @param name
+	 *            operation, e.g., "Samplers.randMult"
+	 * @param params
+	 *            parameter setting, e.g., "K=100 a=0.1"
+	 */
+	public Benchmark(String name, String params) {
+		this.name = name;
+		this.params = params;
+	}
+
+	/**
+	 * prepare the data of the operations (not timed)
+	 */
+	public void setup() {
+	}
+
+	/**
+	 * perform n operations
+	 *
+	 * @param n
+	 * @return value depending on the results of all operations
+	 */
+	public abstract double run(int n);
+
+	/**
+	 * measure the time per operation
+	 *
+	 * @param warmups
+	 *            number of warm-up iterations
+	 * @param iterations
+	 *            number of measurement iterations
+	 * @param minNanos
+	 *            minimum duration of an iteration
+	 * @return
+	 */
+	public Result measure(int warmups, int iterations, long minNanos) {
+		setup();
+		// calibrate the batch size during warm-up
+		int n = 1;
+		for (int i = 0; i < warmups || i == 0; i++) {
+			while (time(n) < minNanos && n < Integer.MAX_VALUE / 2) {
+				n *= 2;
+			}
+		}
+		double[] nsPerOp = new double[iterations];
+		for (int i = 0; i < iterations; i++) {
+			nsPerOp[i] = time(n) / (double) n;
+		}
+		return new Result(name, params, n, nsPerOp);
+	}
+
+	private long time(int n) {
+		long t = System.nanoTime();
+		double r = run(n);
+		t = System.nanoTime() - t;
+		sink += r;
+		return t;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getParams() {
+		return params;
+	}
+}
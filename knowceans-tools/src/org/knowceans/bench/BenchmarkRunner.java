@@ -0,0 +1,168 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.bench;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import org.knowceans.util.Arguments;
+
+/**
+ * BenchmarkRunner runs a list of benchmarks, prints the results and writes
+ * them as CSV and JSON for tracking across versions. Command line options
+ * (see OPTIONS) select benchmarks by a regular expression on name and params
+ * and set warm-up, iterations and minimum iteration time.
+ *
+ * @author heinrich
+ */
+public class BenchmarkRunner {
+
+	public static final String OPTIONS = "w|warmup=i {warm-up iterations, "
+			+ "default 5} i|iter=i {measurement iterations, default 10} "
+			+ "t|time=i {minimum ms per iteration, default 100} "
+			+ "f|filter=s {regex on name and params} "
+			+ "c|csv=s {csv output file} " + "j|json=s {json output file}";
+
+	private List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+	private int warmups = 5;
+
+	private int iterations = 10;
+
+	private long minNanos = 100000000L;
+
+	private Pattern filter = null;
+
+	private String csvFile = null;
+
+	private String jsonFile = null;
+
+	public BenchmarkRunner() {
+	}
+
+	/**
+	 * runner configured from the command line
+	 *
+	 * @param args
+	 *            options in OPTIONS
+	 */
+	public BenchmarkRunner(String[] args) {
+		Arguments a = new Arguments(OPTIONS, "");
+		a.parse(args);
+		warmups = (Integer) a.getOption("w", warmups);
+		iterations = (Integer) a.getOption("i", iterations);
+		minNanos = (Integer) a.getOption("t", (int) (minNanos / 1000000))
+				* 1000000L;
+		String f = (String) a.getOption("f", null);
+		if (f != null) {
+			filter = Pattern.compile(f);
+		}
+		csvFile = (String) a.getOption("c", null);
+		jsonFile = (String) a.getOption("j", null);
+	}
+
+	public void add(Benchmark b) {
+		benchmarks.add(b);
+	}
+
+	/**
+	 * run all benchmarks that match the filter, print the results and write
+	 * the output files
+	 *
+	 * @return results
+	 * @throws IOException
+	 */
+	public List<Benchmark.Result> run() throws IOException {
+		List<Benchmark.Result> results = new ArrayList<Benchmark.Result>();
+		for (Benchmark b : benchmarks) {
+			if (filter != null
+					&& !filter.matcher(b.getName() + " " + b.getParams())
+							.find()) {
+				continue;
+			}
+			Benchmark.Result r = b.measure(warmups, iterations, minNanos);
+			System.out.println(r);
+			results.add(r);
+		}
+		if (csvFile != null) {
+			Writer w = new BufferedWriter(new FileWriter(csvFile));
+			writeCsv(w, results);
+			w.close();
+		}
+		if (jsonFile != null) {
+			Writer w = new BufferedWriter(new FileWriter(jsonFile));
+			writeJson(w, results);
+			w.close();
+		}
+		return results;
+	}
+
+	/**
+	 * write one line per result
+	 *
+	 * @param w
+	 * @param results
+	 * @throws IOException
+	 */
+	public static void writeCsv(Writer w, List<Benchmark.Result> results)
+			throws IOException {
+		w.write("benchmark,params,ops,iterations,ns_per_op,sd,min\n");
+		for (Benchmark.Result r : results) {
+			w.write(String.format(Locale.US, "%s,%s,%d,%d,%.4f,%.4f,%.4f\n",
+					r.name, r.params, r.ops, r.nsPerOp.length, r.mean(),
+					r.sd(), r.min()));
+		}
+	}
+
+	/**
+	 * write an array of result objects with the times of all iterations
+	 *
+	 * @param w
+	 * @param results
+	 * @throws IOException
+	 */
+	public static void writeJson(Writer w, List<Benchmark.Result> results)
+			throws IOException {
+		w.write("[\n");
+		for (int i = 0; i < results.size(); i++) {
+			Benchmark.Result r = results.get(i);
+			w.write(String.format(Locale.US,
+					"  {\"benchmark\": %s, \"params\": %s, \"ops\": %d, "
+							+ "\"ns_per_op\": %.4f, \"sd\": %.4f, "
+							+ "\"min\": %.4f, \"iterations\": [", quote(r.name),
+					quote(r.params), r.ops, r.mean(), r.sd(), r.min()));
+			for (int j = 0; j < r.nsPerOp.length; j++) {
+				w.write((j > 0 ? ", " : "")
+						+ String.format(Locale.US, "%.4f", r.nsPerOp[j]));
+			}
+			w.write(i < results.size() - 1 ? "]},\n" : "]}\n");
+		}
+		w.write("]\n");
+	}
+
+	/**
+	 * @param s
+	 * @return s as a JSON string
+	 */
+	public static String quote(String s) {
+		StringBuffer b = new StringBuffer("\"");
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				b.append('\\').append(c);
+			} else if (c < ' ') {
+				b.append(String.format("\\u%04x", (int) c));
+			} else {
+				b.append(c);
+			}
+		}
+		return b.append('"').toString();
+	}
+}
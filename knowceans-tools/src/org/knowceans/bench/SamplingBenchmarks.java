@@ -0,0 +1,399 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.knowceans.util.AliasTable;
+import org.knowceans.util.Cokus;
+import org.knowceans.util.CokusRandom;
+import org.knowceans.util.FastMultinomial;
+import org.knowceans.util.Gamma;
+import org.knowceans.util.GammaTable;
+import org.knowceans.util.MersenneTwister;
+import org.knowceans.util.RandomSamplers;
+import org.knowceans.util.Samplers;
+import org.knowceans.util.SplitMix64;
+import org.knowceans.util.Xoshiro256;
+
+/**
+ * SamplingBenchmarks measures the hot paths of the samplers: discrete sampling
+ * (Samplers, FastMultinomial, AliasTable) over the number of categories K and
+ * the sparsity of the weights (Dirichlet(a) weights, fewer categories carry
+ * the mass for smaller a), the special functions of Gamma, the uniform
+ * generators and the gamma and Dirichlet samplers of RandomSamplers.
+ * Results are printed and written to CSV / JSON with the options of
+ * BenchmarkRunner, e.g.,
+ *
+ * <pre>
+ * java org.knowceans.bench.SamplingBenchmarks -f randMult -c mult.csv
+ * </pre>
+ *
+ * @author heinrich
+ */
+public class SamplingBenchmarks {
+
+	public static final int[] KS = { 10, 100, 1000, 10000 };
+
+	public static final double[] SPARSITY = { 1., 0.1, 0.01 };
+
+	public static final double[] SHAPES = { 0.1, 1., 10. };
+
+	/**
+	 * number of precomputed arguments, cycled through by the operations
+	 */
+	private static final int NARGS = 1024;
+
+	public static void main(String[] args) throws Exception {
+		BenchmarkRunner runner = new BenchmarkRunner(args);
+		for (int K : KS) {
+			for (double a : SPARSITY) {
+				addDiscrete(runner, K, a);
+			}
+		}
+		addSpecial(runner);
+		addUniform(runner);
+		addGamma(runner);
+		runner.run();
+	}
+
+	/**
+	 * @param K
+	 * @param a
+	 * @param seed
+	 * @return normalised Dirichlet(a) weights
+	 */
+	static double[] weights(int K, double a, long seed) {
+		RandomSamplers rs = new RandomSamplers(new CokusRandom(seed));
+		double[] aa = new double[K];
+		double[] pp = new double[K];
+		Arrays.fill(aa, a);
+		rs.randDir(aa, pp, 0);
+		return pp;
+	}
+
+	/**
+	 * @return NARGS uniforms with a fixed seed
+	 */
+	static double[] uniforms() {
+		Random rand = new CokusRandom(4357);
+		double[] u = new double[NARGS];
+		for (int i = 0; i < NARGS; i++) {
+			u[i] = rand.nextDouble();
+		}
+		return u;
+	}
+
+	static void addDiscrete(BenchmarkRunner runner, final int K,
+			final double a) {
+		String params = "K=" + K + " a=" + a;
+		final double[] pp = weights(K, a, 4357);
+
+		runner.add(new Benchmark("Samplers.randMult", params) {
+			@Override
+			public double run(int n) {
+				int s = 0;
+				for (int i = 0; i < n; i++) {
+					s += Samplers.randMult(pp);
+				}
+				return s;
+			}
+		});
+
+		runner.add(new Benchmark("Samplers.randMult.buffered", params) {
+			double[] cum = new double[K];
+
+			@Override
+			public double run(int n) {
+				int s = 0;
+				for (int i = 0; i < n; i++) {
+					s += Samplers.randMult(pp, cum);
+				}
+				return s;
+			}
+		});
+
+		// randMultDirect cumulates in place, so each draw copies the weights
+		runner.add(new Benchmark("Samplers.randMultDirect", params) {
+			double[] work = new double[K];
+
+			@Override
+			public double run(int n) {
+				int s = 0;
+				for (int i = 0; i < n; i++) {
+					System.arraycopy(pp, 0, work, 0, K);
+					s += Samplers.randMultDirect(work);
+				}
+				return s;
+			}
+		});
+
+		runner.add(new Benchmark("Samplers.binarySearch", params) {
+			double[] cum = new double[K];
+			double[] u = uniforms();
+
+			@Override
+			public void setup() {
+				double sum = 0;
+				for (int k = 0; k < K; k++) {
+					cum[k] = sum += pp[k];
+				}
+				for (int i = 0; i < NARGS; i++) {
+					u[i] *= sum;
+				}
+			}
+
+			@Override
+			public double run(int n) {
+				int s = 0;
+				for (int i = 0; i < n; i++) {
+					s += Samplers.binarySearch(cum, u[i & (NARGS - 1)]);
+				}
+				return s;
+			}
+		});
+
+		runner.add(new Benchmark("AliasTable.sample", params) {
+			AliasTable at = new AliasTable(K);
+			Random rand = new CokusRandom(4357);
+
+			@Override
+			public void setup() {
+				at.build(pp);
+			}
+
+			@Override
+			public double run(int n) {
+				int s = 0;
+				for (int i = 0; i < n; i++) {
+					s += at.sample(rand);
+				}
+				return s;
+			}
+		});
+
+		runner.add(new Benchmark("AliasTable.build", params) {
+			AliasTable at = new AliasTable(K);
+
+			@Override
+			public double run(int n) {
+				for (int i = 0; i < n; i++) {
+					at.build(pp);
+				}
+				return at.getSum();
+			}
+		});
+
+		// three factors as in LDA: sparse document-topic weights times
+		// denser topic-word and normalisation factors
+		final double[][] ww = new double[][] { pp, weights(K, 3., 1),
+				weights(K, 3., 2) };
+		runner.add(new Benchmark("FastMultinomial.sampleIdx", params) {
+			int[][] idx = new int[2][K];
+			double[] norms = new double[ww.length];
+			Random rand = new CokusRandom(4357);
+
+			@Override
+			public void setup() {
+				for (int k = 0; k < K; k++) {
+					idx[0][k] = k;
+				}
+				FastMultinomial.indexsort(ww[0], idx);
+				for (int i = 0; i < ww.length; i++) {
+					norms[i] = FastMultinomial.sumcube(ww[i]);
+				}
+			}
+
+			@Override
+			public double run(int n) {
+				int s = 0;
+				for (int i = 0; i < n; i++) {
+					s += FastMultinomial.sampleIdx(ww, norms, idx[0], rand);
+				}
+				return s;
+			}
+		});
+
+		runner.add(new Benchmark("FastMultinomial.sample0", params) {
+			Random rand = new CokusRandom(4357);
+
+			@Override
+			public double run(int n) {
+				int s = 0;
+				for (int i = 0; i < n; i++) {
+					s += FastMultinomial.sample0(ww, rand);
+				}
+				return s;
+			}
+		});
+
+		runner.add(new Benchmark("RandomSamplers.randDir", params) {
+			RandomSamplers rs = new RandomSamplers(new CokusRandom(4357));
+			double[] aa = new double[K];
+			double[] out = new double[K];
+
+			@Override
+			public void setup() {
+				Arrays.fill(aa, a);
+			}
+
+			@Override
+			public double run(int n) {
+				double s = 0;
+				for (int i = 0; i < n; i++) {
+					rs.randDir(aa, out, 0);
+					s += out[0];
+				}
+				return s;
+			}
+		});
+	}
+
+	/**
+	 * special functions for arguments in [lo, hi)
+	 */
+	static void addSpecial(BenchmarkRunner runner) {
+		double[][] ranges = { { 0.01, 1 }, { 1, 10 }, { 10, 1000 } };
+		for (double[] range : ranges) {
+			String params = "x=" + range[0] + ".." + range[1];
+			final double[] x = uniforms();
+			for (int i = 0; i < NARGS; i++) {
+				x[i] = range[0] + x[i] * (range[1] - range[0]);
+			}
+
+			runner.add(new Benchmark("Gamma.digamma", params) {
+				@Override
+				public double run(int n) {
+					double s = 0;
+					for (int i = 0; i < n; i++) {
+						s += Gamma.digamma(x[i & (NARGS - 1)]);
+					}
+					return s;
+				}
+			});
+
+			runner.add(new Benchmark("Gamma.digamma1", params) {
+				@Override
+				public double run(int n) {
+					double s = 0;
+					for (int i = 0; i < n; i++) {
+						s += Gamma.digamma1(x[i & (NARGS - 1)]);
+					}
+					return s;
+				}
+			});
+
+			runner.add(new Benchmark("Gamma.trigamma", params) {
+				@Override
+				public double run(int n) {
+					double s = 0;
+					for (int i = 0; i < n; i++) {
+						s += Gamma.trigamma(x[i & (NARGS - 1)]);
+					}
+					return s;
+				}
+			});
+
+			runner.add(new Benchmark("Gamma.lgamma", params) {
+				@Override
+				public double run(int n) {
+					double s = 0;
+					for (int i = 0; i < n; i++) {
+						s += Gamma.lgamma(x[i & (NARGS - 1)]);
+					}
+					return s;
+				}
+			});
+		}
+
+		// table lookup for count arguments n + a
+		final int[] counts = new int[NARGS];
+		double[] u = uniforms();
+		for (int i = 0; i < NARGS; i++) {
+			counts[i] = (int) (u[i] * 100);
+		}
+		final GammaTable gt = new GammaTable(0.1, 1000);
+		runner.add(new Benchmark("GammaTable.digamma", "n=0..100 a=0.1") {
+			@Override
+			public double run(int n) {
+				double s = 0;
+				for (int i = 0; i < n; i++) {
+					s += gt.digamma(counts[i & (NARGS - 1)]);
+				}
+				return s;
+			}
+		});
+	}
+
+	/**
+	 * uniform generators, static Cokus against instance generators
+	 */
+	static void addUniform(BenchmarkRunner runner) {
+		Cokus.seed(4357);
+		runner.add(new Benchmark("Cokus.randDouble", "") {
+			@Override
+			public double run(int n) {
+				double s = 0;
+				for (int i = 0; i < n; i++) {
+					s += Cokus.randDouble();
+				}
+				return s;
+			}
+		});
+
+		Random[] rands = { new CokusRandom(4357), new MersenneTwister(4357),
+				new Xoshiro256(4357), new SplitMix64(4357), new Random(4357) };
+		for (final Random rand : rands) {
+			runner.add(new Benchmark(rand.getClass().getSimpleName()
+					+ ".nextDouble", "") {
+				@Override
+				public double run(int n) {
+					double s = 0;
+					for (int i = 0; i < n; i++) {
+						s += rand.nextDouble();
+					}
+					return s;
+				}
+			});
+		}
+	}
+
+	/**
+	 * gamma variates one by one and in batches
+	 */
+	static void addGamma(BenchmarkRunner runner) {
+		for (final double shape : SHAPES) {
+			String params = "shape=" + shape;
+			runner.add(new Benchmark("RandomSamplers.randGamma", params) {
+				RandomSamplers rs = new RandomSamplers(new CokusRandom(4357));
+
+				@Override
+				public double run(int n) {
+					double s = 0;
+					for (int i = 0; i < n; i++) {
+						s += rs.randGamma(shape);
+					}
+					return s;
+				}
+			});
+
+			// time per variate, in batches of NARGS
+			runner.add(new Benchmark("RandomSamplers.randGamma.batch", params) {
+				RandomSamplers rs = new RandomSamplers(new CokusRandom(4357));
+				double[] out = new double[NARGS];
+
+				@Override
+				public double run(int n) {
+					double s = 0;
+					for (int i = 0; i < n; i += NARGS) {
+						rs.randGamma(shape, out, 0, Math.min(NARGS, n - i));
+						s += out[0];
+					}
+					return s;
+				}
+			});
+		}
+	}
+}
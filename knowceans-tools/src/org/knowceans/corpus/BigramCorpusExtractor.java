@@ -6,10 +6,12 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
 
 import org.knowceans.map.BijectiveHashMap;
 import org.knowceans.util.Conf;
+import org.knowceans.util.OrderedPipeline;
 import org.knowceans.util.StopWatch;
 import org.knowceans.util.UnHtml;
 
@@ -112,7 +114,8 @@ public class BigramCorpusExtractor extends SimpleCorpusExtractor {
 
 	/**
 	 * read data for the resolver and authorship information, as well as the
-	 * content. More direct approach than in {@link SimpleCorpusExtractor}
+	 * content. More direct approach than in {@link SimpleCorpusExtractor}. The
+	 * content files are read by readThreads threads after the metadata.
 	 * 
 	 * @return
 	 * 
@@ -131,6 +134,7 @@ public class BigramCorpusExtractor extends SimpleCorpusExtractor {
 		boolean skipdoc = false;
 		AanDocument doc = null;
 		aanid2mid = new BijectiveHashMap<String, Integer>();
+		List<AanDocument> docs = new ArrayList<AanDocument>();
 
 		while ((line = br.readLine()) != null) {
 			// replace html entities
@@ -160,19 +164,7 @@ public class BigramCorpusExtractor extends SimpleCorpusExtractor {
 				doc.mid = mid;
 				doc.aanid = aanid;
 				mid2doc.put(mid, doc);
-
-				// read content from corpus file
-				BufferedReader brc = new BufferedReader(new FileReader(f));
-				String linec = null;
-				StringBuffer sb = new StringBuffer();
-				// write content to .text file
-				while ((linec = brc.readLine()) != null) {
-					// line format is (\d+:\d+)\s+(.+); we need only content
-					linec = linec.replaceAll("^.+\t", "").trim();
-					sb.append(" " + linec);
-				}
-				brc.close();
-				doc.content = UnHtml.getText(sb.toString());
+				docs.add(doc);
 			} else if (!skipdoc) {
 				if (line.startsWith("author = ")) {
 					line = line.trim().substring(10, line.length() - 1);
@@ -194,6 +186,39 @@ public class BigramCorpusExtractor extends SimpleCorpusExtractor {
 			}
 		}
 		br.close();
+
+		// read content from corpus files
+		OrderedPipeline<AanDocument, String> reader = new OrderedPipeline<AanDocument, String>(
+				readThreads, readWindow) {
+			@Override
+			public String process(AanDocument doc) throws Exception {
+				BufferedReader brc = new BufferedReader(new FileReader(srcbase
+						+ contentDir + "/" + doc.aanid + ".txt"));
+				String linec = null;
+				StringBuffer sb = new StringBuffer();
+				while ((linec = brc.readLine()) != null) {
+					// line format is (\d+:\d+)\s+(.+); we need only content
+					linec = linec.replaceAll("^.+\t", "").trim();
+					sb.append(" " + linec);
+				}
+				brc.close();
+				return UnHtml.getText(sb.toString());
+			}
+
+			@Override
+			public void consume(int i, AanDocument doc, String content) {
+				doc.content = content;
+			}
+		};
+		try {
+			reader.run(docs);
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e);
+		} finally {
+			reader.shutdown();
+		}
 		return aanid2mid;
 	}
 
@@ -225,29 +250,43 @@ public class BigramCorpusExtractor extends SimpleCorpusExtractor {
 
 	/**
 	 * only uses information created in the mid2doc field, does not read !
+	 * Documents are tokenised by readThreads threads.
 	 */
 	@Override
 	protected void readAndIndexContent(
 			BijectiveHashMap<String, Integer> aanid2mid) throws Exception {
-		int i = 0;
-		for (int mid : mid2doc.keySet()) {
-			if (i++ % 500 == 0) {
-				debug("i = " + i + " mid = " + mid);
+		OrderedPipeline<Map.Entry<Integer, AanDocument>, String[]> tokeniser = new OrderedPipeline<Map.Entry<Integer, AanDocument>, String[]>(
+				readThreads, readWindow) {
+			@Override
+			public String[] process(Map.Entry<Integer, AanDocument> e) {
+				return tokenise(e.getValue(), e.getValue().content);
 			}
-			AanDocument doc = mid2doc.get(mid);
-			indexDocument(doc, doc.content);
+
+			@Override
+			public void consume(int i, Map.Entry<Integer, AanDocument> e,
+					String[] words) {
+				if (i % 500 == 0) {
+					debug("i = " + (i + 1) + " mid = " + e.getKey());
+				}
+				corpus.setDocContent(e.getKey(), words);
+			}
+		};
+		try {
+			tokeniser.run(mid2doc.entrySet());
+		} finally {
+			tokeniser.shutdown();
 		}
 	}
 
 	/**
-	 * index document in the given document writer
+	 * tokenise the content and title of the document into words and bigrams
 	 * 
 	 * @param doc document with all metadata
 	 * @param content additional content for the document (not stored in doc to
 	 *        preserved overall memory)
 	 */
-	public void indexDocument(AanDocument aandoc, String content)
-			throws Exception {
+	@Override
+	protected String[] tokenise(AanDocument aandoc, String content) {
 		// TODO: That's somewhat overkill because in readWriteContent we could
 		// just save the file names. However, this is more flexible for other
 		// corpora.
@@ -287,7 +326,7 @@ public class BigramCorpusExtractor extends SimpleCorpusExtractor {
 		}
 		// System.out.println("words in document " + aandoc.mid + ": " +
 		// wordlist);
-		corpus.setDocContent(aandoc.mid, wordlist.toArray(new String[0]));
+		return wordlist.toArray(new String[0]);
 	}
 
 }
@@ -0,0 +1,307 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.corpus;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * CorpusCursor streams the documents of a corpus file in "pseudo-SVMlight"
+ * format (one document per line, nterms (term:freq){nterms}, possibly
+ * repeated per paragraph, cf. NumCorpus.read) without keeping more than the
+ * current document in memory. Lines are parsed directly from a byte buffer, so
+ * no String is allocated per line or term:freq pair. The term, count and
+ * paragraph arrays of the cursor are reused and valid until the next call to
+ * next(); reset() allows multiple passes over the file.
+ *
+ * @author gregor
+ */
+public class CorpusCursor {
+
+	public static void main(String[] args) throws IOException {
+		CorpusCursor cc = new CorpusCursor("corpus-example/nips.corpus");
+		int ndocs = 0;
+		long nwords = 0;
+		for (int pass = 0; pass < 2; pass++) {
+			cc.reset();
+			ndocs = 0;
+			nwords = 0;
+			while (cc.next()) {
+				ndocs++;
+				nwords += cc.getNumWords();
+			}
+		}
+		cc.close();
+		System.out.println(ndocs + " documents, " + nwords + " words");
+	}
+
+	private static final int BUFSIZE = 1 << 16;
+
+	private String filename;
+
+	private InputStream in;
+
+	private byte[] buf = new byte[BUFSIZE];
+
+	private int pos;
+
+	private int lim;
+
+	/**
+	 * index of the current document
+	 */
+	private int doc = -1;
+
+	private int[] terms = new int[64];
+
+	private int[] counts = new int[64];
+
+	private int numTerms;
+
+	private int numWords;
+
+	/**
+	 * paragraph ends (cumulative term positions)
+	 */
+	private int[] parBounds = new int[4];
+
+	private int numPars;
+
+	/**
+	 * offset subtracted from the term ids (cf. NumCorpus.OFFSET)
+	 */
+	private int offset;
+
+	/**
+	 * open a cursor before the first document of the file.
+	 *
+	 * @param filename
+	 * @throws IOException
+	 */
+	public CorpusCursor(String filename) throws IOException {
+		this(filename, 0);
+	}
+
+	/**
+	 * open a cursor before the first document of the file.
+	 *
+	 * @param filename
+	 * @param offset subtracted from each term id
+	 * @throws IOException
+	 */
+	public CorpusCursor(String filename, int offset) throws IOException {
+		this.filename = filename;
+		this.offset = offset;
+		reset();
+	}
+
+	/**
+	 * position the cursor before the first document again
+	 *
+	 * @throws IOException
+	 */
+	public void reset() throws IOException {
+		close();
+		in = new FileInputStream(filename);
+		pos = 0;
+		lim = 0;
+		doc = -1;
+	}
+
+	/**
+	 * close the file
+	 *
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		if (in != null) {
+			in.close();
+			in = null;
+		}
+	}
+
+	/**
+	 * advance to the next document. Empty lines are skipped.
+	 *
+	 * @return false if the end of the file is reached
+	 * @throws IOException
+	 */
+	public boolean next() throws IOException {
+		numTerms = 0;
+		numWords = 0;
+		numPars = 0;
+		int c;
+		// skip empty lines and leading whitespace
+		do {
+			c = read();
+		} while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+		if (c < 0) {
+			return false;
+		}
+		while (c >= 0 && c != '\n') {
+			if (c == ' ' || c == '\t' || c == '\r') {
+				c = read();
+				continue;
+			}
+			// token: either paragraph length or term:freq
+			int value = 0;
+			while (c >= '0' && c <= '9') {
+				value = value * 10 + (c - '0');
+				c = read();
+			}
+			if (c == ':') {
+				int count = 0;
+				c = read();
+				while (c >= '0' && c <= '9') {
+					count = count * 10 + (c - '0');
+					c = read();
+				}
+				// truncate fractional frequencies like (int) parseFloat
+				while (c == '.' || (c >= '0' && c <= '9')) {
+					c = read();
+				}
+				addTerm(value - offset, count);
+			} else if (c == ' ' || c == '\t' || c == '\r' || c == '\n'
+					|| c < 0) {
+				// paragraph header: close previous paragraph
+				if (numTerms > 0) {
+					addPar();
+				}
+			} else {
+				throw new NumberFormatException("unexpected character '"
+						+ (char) c + "' in document " + (doc + 1) + " of "
+						+ filename);
+			}
+		}
+		addPar();
+		doc++;
+		return true;
+	}
+
+	/**
+	 * read the next byte from the buffer, refilling it if necessary
+	 *
+	 * @return byte or -1 at the end of the file
+	 * @throws IOException
+	 */
+	private int read() throws IOException {
+		if (pos >= lim) {
+			lim = in.read(buf, 0, buf.length);
+			pos = 0;
+			if (lim <= 0) {
+				lim = 0;
+				return -1;
+			}
+		}
+		return buf[pos++] & 0xff;
+	}
+
+	private void addTerm(int term, int count) {
+		if (numTerms == terms.length) {
+			int[] t = new int[terms.length * 2];
+			System.arraycopy(terms, 0, t, 0, numTerms);
+			terms = t;
+			int[] f = new int[counts.length * 2];
+			System.arraycopy(counts, 0, f, 0, numTerms);
+			counts = f;
+		}
+		terms[numTerms] = term;
+		counts[numTerms] = count;
+		numTerms++;
+		numWords += count;
+	}
+
+	private void addPar() {
+		if (numPars == parBounds.length) {
+			int[] p = new int[parBounds.length * 2];
+			System.arraycopy(parBounds, 0, p, 0, numPars);
+			parBounds = p;
+		}
+		parBounds[numPars++] = numTerms;
+	}
+
+	/**
+	 * fill the document with the current document of the cursor, reusing its
+	 * arrays if they are large enough. Paragraph bounds are set only for
+	 * documents with more than one paragraph (as in NumCorpus.read).
+	 *
+	 * @param d
+	 */
+	public void fill(Document d) {
+		if (d.terms == null || d.terms.length < numTerms) {
+			d.terms = new int[numTerms];
+			d.counts = new int[numTerms];
+		}
+		System.arraycopy(terms, 0, d.terms, 0, numTerms);
+		System.arraycopy(counts, 0, d.counts, 0, numTerms);
+		d.numTerms = numTerms;
+		d.numWords = numWords;
+		d.parBounds = numPars > 1 ? getParBounds() : null;
+	}
+
+	/**
+	 * @return a new document with exactly sized arrays
+	 */
+	public Document getDocument() {
+		Document d = new Document(numTerms);
+		fill(d);
+		return d;
+	}
+
+	/**
+	 * @return index of the current document in the file
+	 */
+	public int getDocIndex() {
+		return doc;
+	}
+
+	/**
+	 * @return term buffer of the current document (first getNumTerms() valid)
+	 */
+	public int[] getTerms() {
+		return terms;
+	}
+
+	/**
+	 * @return count buffer of the current document (first getNumTerms() valid)
+	 */
+	public int[] getCounts() {
+		return counts;
+	}
+
+	/**
+	 * @return number of term:freq pairs of the current document
+	 */
+	public int getNumTerms() {
+		return numTerms;
+	}
+
+	/**
+	 * @return sum of the frequencies of the current document
+	 */
+	public int getNumWords() {
+		return numWords;
+	}
+
+	/**
+	 * @return number of paragraphs of the current document
+	 */
+	public int getNumPars() {
+		return numPars;
+	}
+
+	/**
+	 * @return copy of the paragraph ends of the current document
+	 */
+	public int[] getParBounds() {
+		int[] p = new int[numPars];
+		System.arraycopy(parBounds, 0, p, 0, numPars);
+		return p;
+	}
+
+	public String getFilename() {
+		return filename;
+	}
+}
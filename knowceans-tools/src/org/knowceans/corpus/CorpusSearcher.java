@@ -15,9 +15,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -106,7 +104,7 @@ public class CorpusSearcher {
 	/**
 	 * inverted index
 	 */
-	private Map<Integer, Map<Integer, Integer>> termDocFreqIndex;
+	private PostingIndex postings;
 	private int[] docFreqs;
 	private Map<Integer, Set<Integer>> authorIndex;
 	private Map<Integer, Set<Integer>> labelIndex;
@@ -144,15 +142,15 @@ public class CorpusSearcher {
 		this.resolver = corpus.getResolver();
 		sortedKeyLists = new String[CorpusResolver.keyExtensions.length][];
 		keyList2id = new int[CorpusResolver.keyExtensions.length][];
-		if (!reindex && !loadIndex()) {
+		if (reindex) {
+			// load a fresh index
+			System.out.println("indexing");
+			createIndex(null);
+		} else if (!loadIndex()) {
 			System.out.println("indexing");
-			createIndex();
+			createIndex(corpus.dataFilebase + PostingIndex.EXTENSION);
 			System.out.println("saving to " + corpus.dataFilebase + ".idx");
 			saveIndex();
-		} else {
-			// load a fresh index
-			System.out.println("indexing");
-			createIndex();
 		}
 	}
 
@@ -167,7 +165,8 @@ public class CorpusSearcher {
 
 	/**
 	 * opens the inverted index, if the corpus has file information and the
-	 * respective file exists.
+	 * respective files exist. The term index is mapped from the posting file,
+	 * the label indices are read from the .idx file.
 	 * 
 	 * @return true if index was loaded
 	 * @throws IOException
@@ -176,7 +175,10 @@ public class CorpusSearcher {
 	@SuppressWarnings("unchecked")
 	private boolean loadIndex() throws IOException, ClassNotFoundException {
 		File index = new File(corpus.dataFilebase + ".idx");
-		if (index.exists()) {
+		File terms = new File(corpus.dataFilebase + PostingIndex.EXTENSION);
+		if (index.exists() && terms.exists()) {
+			postings = new PostingIndex(terms.getPath());
+			docFreqs = postings.getDocFreqs();
 			ObjectInputStream ois = new ObjectInputStream(new GZIPInputStream(
 					new FileInputStream(index)));
 			// get directory (this may be also done by fixed sequence and null
@@ -185,15 +187,16 @@ public class CorpusSearcher {
 			String[] objects = directory.split(" ");
 			for (String object : objects) {
 				if (object.equals("terms")) {
-					termDocFreqIndex = (Map<Integer, Map<Integer, Integer>>) ois
-							.readObject();
-					docFreqs = (int[]) ois.readObject();
+					// old format with a serialised term index: skip
+					ois.readObject();
+					ois.readObject();
 				} else if (object.equals("authors")) {
 					authorIndex = (Map<Integer, Set<Integer>>) ois.readObject();
 				} else if (object.equals("labels")) {
 					labelIndex = (Map<Integer, Set<Integer>>) ois.readObject();
 				}
 			}
+			ois.close();
 			return true;
 		}
 		return false;
@@ -205,14 +208,12 @@ public class CorpusSearcher {
 	 * @throws IOException
 	 */
 	private void saveIndex() throws IOException {
+		// the term index has been written by createIndex()
 		// INFO: inefficient but avoids deps. to e.g. Prevayler
 		File index = new File(corpus.dataFilebase + ".idx");
 		ObjectOutputStream oos = new ObjectOutputStream(new GZIPOutputStream(
 				new FileOutputStream(index)));
 		String directory = "";
-		if (termDocFreqIndex != null) {
-			directory += " " + "terms";
-		}
 		if (authorIndex != null) {
 			directory += " " + "authors";
 		}
@@ -220,10 +221,6 @@ public class CorpusSearcher {
 			directory += " " + "labels";
 		}
 		oos.writeUTF(directory);
-		if (termDocFreqIndex != null) {
-			oos.writeObject(termDocFreqIndex);
-			oos.writeObject(docFreqs);
-		}
 		if (authorIndex != null) {
 			oos.writeObject(authorIndex);
 		}
@@ -518,7 +515,7 @@ public class CorpusSearcher {
 				if (termid >= 0) {
 					System.out.println(term + ", id = " + termid + ", df = "
 							+ docFreqs[termid] + ", tf = "
-							+ termDocFreqIndex.get(termid).get(id));
+							+ postings.getFreq(termid, id));
 				}
 			}
 		}
@@ -615,17 +612,24 @@ public class CorpusSearcher {
 		System.out.print("Term id = " + id + ": ");
 		System.out.println(source != null ? source
 				: sortedKeyLists[ICorpusResolver.KTERMS][pos]);
-		Map<Integer, Integer> termDocs = termDocFreqIndex.get(id);
-		// calculate sum
+		int df = docFreqs[id];
+		int[] docs = new int[df];
+		int[] freqs = new int[df];
+		postings.getPostings(id, docs, freqs);
+		// calculate sum and list (ascending doc ids)
 		int tf = 0;
-		for (int i : termDocs.values()) {
-			tf += i;
+		StringBuffer b = new StringBuffer("{");
+		for (int i = 0; i < df; i++) {
+			tf += freqs[i];
+			if (i > 0) {
+				b.append(", ");
+			}
+			b.append(docs[i]).append("=").append(freqs[i]);
 		}
-		System.out.println("Global frequencies: df = " + docFreqs[id]
-				+ ", tf = " + tf);
+		b.append("}");
+		System.out.println("Global frequencies: df = " + df + ", tf = " + tf);
 		System.out.println("Documents (id=tf):\n"
-				+ wordWrap(new TreeMap<Integer, Integer>(termDocs).toString(),
-						120));
+				+ wordWrap(b.toString(), 120));
 	}
 
 	/**
@@ -747,11 +751,18 @@ public class CorpusSearcher {
 	/**
 	 * index a set of strings
 	 * 
-	 * @param corpus
+	 * @param postingFile file the term index is written to and mapped from,
+	 *        null to build it in memory (limited to the size of an array)
+	 * @throws IOException
 	 */
-	private void createIndex() {
-		termDocFreqIndex = corpus.getTermDocMap();
-		docFreqs = corpus.calcDocFreqs();
+	private void createIndex(String postingFile) throws IOException {
+		if (postingFile != null) {
+			PostingIndex.write(corpus, postingFile);
+			postings = new PostingIndex(postingFile);
+		} else {
+			postings = PostingIndex.build(corpus);
+		}
+		docFreqs = postings.getDocFreqs();
 
 		if (corpus.hasLabels(LabelNumCorpus.LAUTHORS) == 2) {
 			authorIndex = indexLabels(LabelNumCorpus.LAUTHORS);
@@ -816,12 +827,13 @@ public class CorpusSearcher {
 	public Map<Integer, Double> findTerm(String term) {
 		int termid = resolver.getTermId(term);
 		Map<Integer, Double> results = new HashMap<Integer, Double>();
-		Map<Integer, Integer> docs2freqs = termDocFreqIndex.get(termid);
-		if (docs2freqs != null) {
-			for (Entry<Integer, Integer> doc : docs2freqs.entrySet()) {
-				// each match is scored 1
-				results.put(doc.getKey(), (double) doc.getValue());
-			}
+		int df = postings.getDocFreq(termid);
+		int[] docs = new int[df];
+		int[] freqs = new int[df];
+		postings.getPostings(termid, docs, freqs);
+		for (int i = 0; i < df; i++) {
+			// each match is scored by the term frequency
+			results.put(docs[i], (double) freqs[i]);
 		}
 		return results;
 	}
@@ -833,54 +845,54 @@ public class CorpusSearcher {
 	 * @return
 	 */
 	public List<Result> search(Query query) {
-		Map<Integer, Double> scoreMap = new HashMap<Integer, Double>();
-		// get individual results and merge scores
-		for (int i = 0; i < query.terms.length; i++) {
-			Map<Integer, Double> termRes = findTerm(query.terms[i]);
-			// intersection
-			scoreMap = (i == 0) ? termRes : mergeResults(scoreMap, termRes,
-					true);
+		List<Result> results = new ArrayList<Result>();
+		if (query.terms.length == 0) {
+			return results;
+		}
+		// intersect the sorted posting lists, shortest first
+		int[] termids = new int[query.terms.length];
+		for (int i = 0; i < termids.length; i++) {
+			termids[i] = resolver.getTermId(query.terms[i]);
+		}
+		int[] dfs = new int[termids.length];
+		for (int i = 0; i < termids.length; i++) {
+			dfs[i] = postings.getDocFreq(termids[i]);
+		}
+		int[] order = IndexQuickSort.sort(dfs);
+		int n = dfs[order[0]];
+		int[] docs = new int[n];
+		double[] scores = new double[n];
+		int[] freqs = new int[n];
+		postings.getPostings(termids[order[0]], docs, freqs);
+		for (int i = 0; i < n; i++) {
+			scores[i] = freqs[i];
+		}
+		int[] tdocs = new int[n];
+		for (int k = 1; k < order.length && n > 0; k++) {
+			int df = dfs[order[k]];
+			if (tdocs.length < df) {
+				tdocs = new int[df];
+				freqs = new int[df];
+			}
+			postings.getPostings(termids[order[k]], tdocs, freqs);
+			int j = 0, nn = 0;
+			for (int i = 0; i < n && j < df; i++) {
+				while (j < df && tdocs[j] < docs[i]) {
+					j++;
+				}
+				if (j < df && tdocs[j] == docs[i]) {
+					docs[nn] = docs[i];
+					scores[nn] = scores[i] + freqs[j];
+					nn++;
+				}
+			}
+			n = nn;
 		}
 		// create results list from merged results
-		List<Result> results = new ArrayList<Result>();
-		for (Entry<Integer, Double> result : scoreMap.entrySet()) {
-			results.add(new Result(//
-					result.getKey(), result.getValue()));
+		for (int i = 0; i < n; i++) {
+			results.add(new Result(docs[i], scores[i]));
 		}
 		Collections.sort(results);
 		return results;
 	}
-
-	/**
-	 * merge the scores the maps
-	 * 
-	 * @param map1
-	 * @param map2
-	 * @param intersection intersect (true) or unite (false)
-	 * @param result
-	 */
-	private Map<Integer, Double> mergeResults(Map<Integer, Double> map1,
-			Map<Integer, Double> map2, boolean intersection) {
-		HashMap<Integer, Double> result = new HashMap<Integer, Double>();
-		Set<Integer> mergedKeys = map1.keySet();
-		if (!intersection) {
-			mergedKeys.addAll(map2.keySet());
-		} else {
-			mergedKeys.retainAll(map2.keySet());
-		}
-		// now add the values for the merged keys
-		for (int key : mergedKeys) {
-			Double val1 = map1.get(key);
-			Double val2 = map2.get(key);
-
-			if (val1 == null) {
-				val1 = 0.;
-			}
-			if (val2 == null) {
-				val2 = 0.;
-			}
-			result.put(key, val1 + val2);
-		}
-		return result;
-	}
 }
@@ -0,0 +1,430 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.corpus;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.knowceans.util.IndexQuickSort;
+
+/**
+ * CsrCorpus stores a corpus in compressed sparse row (CSR) layout: instead of
+ * one Document object with two arrays per document, the term ids and counts of
+ * all documents are kept in one flat array each, indexed by an array of
+ * document offsets. Optionally, the documents are compressed by sorting their
+ * terms and storing term gaps and counts as variable-length integers (varint)
+ * in a single byte array.
+ * <p>
+ * Term:count pairs are addressed with int offsets (Java arrays are limited to
+ * 2^31 elements), while token (word) offsets and the total number of words
+ * are long, so corpora with more than 2^31 tokens can be represented. The
+ * ICorpus and ITermCorpus methods as well as getDoc() create their arrays from
+ * the flat storage; getDocTerms() reads a document into caller buffers without
+ * allocation. Paragraph bounds are not kept.
+ *
+ * @author gregor
+ */
+public class CsrCorpus implements ICorpus, ITermCorpus {
+
+	public static void main(String[] args) throws IOException {
+		NumCorpus nc = new NumCorpus("corpus-example/berry95");
+		CsrCorpus cc = new CsrCorpus(nc, false);
+		CsrCorpus cz = new CsrCorpus(nc, true);
+		System.out.println(nc);
+		System.out.println(cc);
+		System.out.println(cz);
+		System.out.println(Arrays.toString(cz.getDocWords(0, null)));
+	}
+
+	protected int numDocs;
+
+	protected int numTerms;
+
+	protected long numWords;
+
+	/**
+	 * [M + 1] start of each document's term:count pairs
+	 */
+	protected int[] termStarts;
+
+	/**
+	 * [M + 1] start of each document's tokens
+	 */
+	protected long[] wordStarts;
+
+	/**
+	 * term ids (uncompressed mode)
+	 */
+	protected int[] terms;
+
+	/**
+	 * term counts (uncompressed mode)
+	 */
+	protected int[] counts;
+
+	/**
+	 * varint-coded term gaps and counts (compressed mode)
+	 */
+	protected byte[] data;
+
+	/**
+	 * [M + 1] start of each document in data (compressed mode)
+	 */
+	protected int[] byteStarts;
+
+	/**
+	 * create a csr corpus from a loaded corpus
+	 *
+	 * @param corpus
+	 * @param compress whether to store documents as varint-coded term gaps
+	 */
+	public CsrCorpus(NumCorpus corpus, boolean compress) {
+		int M = corpus.getNumDocs();
+		init(M, compress);
+		for (int m = 0; m < M; m++) {
+			Document d = corpus.getDoc(m);
+			addDoc(m, d.getTerms(), d.getCounts(), d.getNumTerms());
+		}
+		finish(corpus.getNumTerms());
+	}
+
+	/**
+	 * read a csr corpus from a corpus file, streaming the documents through a
+	 * CorpusCursor (two passes: sizes, then content).
+	 *
+	 * @param dataFilename
+	 * @param compress whether to store documents as varint-coded term gaps
+	 * @throws IOException
+	 */
+	public CsrCorpus(String dataFilename, boolean compress) throws IOException {
+		CorpusCursor cursor = new CorpusCursor(dataFilename);
+		int M = 0;
+		long npairs = 0;
+		while (cursor.next()) {
+			M++;
+			npairs += cursor.getNumTerms();
+		}
+		if (npairs > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("corpus has " + npairs
+					+ " term:count pairs, max " + Integer.MAX_VALUE);
+		}
+		init(M, compress);
+		if (!compress) {
+			terms = new int[(int) npairs];
+			counts = new int[(int) npairs];
+		}
+		int V = 0;
+		cursor.reset();
+		for (int m = 0; cursor.next(); m++) {
+			int[] tt = cursor.getTerms();
+			for (int i = 0; i < cursor.getNumTerms(); i++) {
+				if (tt[i] >= V) {
+					V = tt[i] + 1;
+				}
+			}
+			addDoc(m, tt, cursor.getCounts(), cursor.getNumTerms());
+		}
+		cursor.close();
+		finish(V);
+	}
+
+	private void init(int M, boolean compress) {
+		numDocs = M;
+		termStarts = new int[M + 1];
+		wordStarts = new long[M + 1];
+		if (compress) {
+			byteStarts = new int[M + 1];
+			data = new byte[1024];
+		} else {
+			terms = new int[16];
+			counts = new int[16];
+		}
+	}
+
+	/**
+	 * append document m
+	 */
+	private void addDoc(int m, int[] tt, int[] ff, int nterms) {
+		int start = termStarts[m];
+		long nw = 0;
+		for (int i = 0; i < nterms; i++) {
+			nw += ff[i];
+		}
+		termStarts[m + 1] = start + nterms;
+		wordStarts[m + 1] = wordStarts[m] + nw;
+		if (data == null) {
+			if (start + nterms > terms.length) {
+				int size = Math.max(start + nterms, terms.length * 2);
+				terms = Arrays.copyOf(terms, size);
+				counts = Arrays.copyOf(counts, size);
+			}
+			System.arraycopy(tt, 0, terms, start, nterms);
+			System.arraycopy(ff, 0, counts, start, nterms);
+		} else {
+			// sort terms for gap coding
+			int[] idx = IndexQuickSort.sort(Arrays.copyOf(tt, nterms));
+			// max 5 bytes per varint
+			int pos = byteStarts[m];
+			if (pos + 10L * nterms > data.length) {
+				long size = Math.max(pos + 10L * nterms, data.length * 2L);
+				if (pos + 10L * nterms > Integer.MAX_VALUE - 8) {
+					throw new IllegalArgumentException("compressed corpus "
+							+ "exceeds " + (Integer.MAX_VALUE - 8) + " bytes");
+				}
+				data = Arrays.copyOf(data,
+						(int) Math.min(size, Integer.MAX_VALUE - 8));
+			}
+			int prev = 0;
+			for (int i = 0; i < nterms; i++) {
+				pos = writeVarint(tt[idx[i]] - prev, pos);
+				prev = tt[idx[i]];
+			}
+			for (int i = 0; i < nterms; i++) {
+				pos = writeVarint(ff[idx[i]], pos);
+			}
+			byteStarts[m + 1] = pos;
+		}
+	}
+
+	/**
+	 * trim the storage after the last document
+	 */
+	private void finish(int V) {
+		numTerms = V;
+		numWords = wordStarts[numDocs];
+		if (data == null) {
+			terms = Arrays.copyOf(terms, termStarts[numDocs]);
+			counts = Arrays.copyOf(counts, termStarts[numDocs]);
+		} else {
+			data = Arrays.copyOf(data, byteStarts[numDocs]);
+		}
+	}
+
+	private int writeVarint(int value, int pos) {
+		while ((value & ~0x7f) != 0) {
+			data[pos++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		data[pos++] = (byte) value;
+		return pos;
+	}
+
+	/**
+	 * read the term ids and counts of document m into the buffers, which must
+	 * be at least getNumTerms(m) long. In compressed mode, terms are in
+	 * ascending order.
+	 *
+	 * @param m
+	 * @param tbuf term ids or null
+	 * @param fbuf counts or null
+	 * @return number of terms of the document
+	 */
+	public int getDocTerms(int m, int[] tbuf, int[] fbuf) {
+		int start = termStarts[m];
+		int nterms = termStarts[m + 1] - start;
+		if (data == null) {
+			if (tbuf != null) {
+				System.arraycopy(terms, start, tbuf, 0, nterms);
+			}
+			if (fbuf != null) {
+				System.arraycopy(counts, start, fbuf, 0, nterms);
+			}
+			return nterms;
+		}
+		int pos = byteStarts[m];
+		int term = 0;
+		for (int j = 0; j < 2; j++) {
+			int[] buf = j == 0 ? tbuf : fbuf;
+			for (int i = 0; i < nterms; i++) {
+				int value = 0, shift = 0;
+				byte b;
+				do {
+					b = data[pos++];
+					value |= (b & 0x7f) << shift;
+					shift += 7;
+				} while (b < 0);
+				if (j == 0) {
+					term += value;
+					value = term;
+				}
+				if (buf != null) {
+					buf[i] = value;
+				}
+			}
+		}
+		return nterms;
+	}
+
+	/**
+	 * @param m
+	 * @return a new document with the terms and counts of document m
+	 */
+	public Document getDoc(int m) {
+		Document d = new Document(getNumTerms(m));
+		getDocTerms(m, d.terms, d.counts);
+		d.numWords = getNumWords(m);
+		return d;
+	}
+
+	/**
+	 * get array of document terms and frequencies
+	 *
+	 * @return docs[0 = terms, 1 = frequencies][m][t]
+	 */
+	public int[][][] getDocTermsFreqs() {
+		int[][][] documents = new int[2][numDocs][];
+		for (int m = 0; m < numDocs; m++) {
+			documents[0][m] = new int[getNumTerms(m)];
+			documents[1][m] = new int[getNumTerms(m)];
+			getDocTerms(m, documents[0][m], documents[1][m]);
+		}
+		return documents;
+	}
+
+	/**
+	 * Get the documents as vectors of bag of words, i.e., per document, a
+	 * scrambled array of term indices is generated.
+	 *
+	 * @param rand random number generator or null to omit shuffling
+	 * @return
+	 */
+	public int[][] getDocWords(Random rand) {
+		int[][] documents = new int[numDocs][];
+		int[][] buf = new int[2][getMaxDocTerms()];
+		for (int m = 0; m < numDocs; m++) {
+			documents[m] = getDocWords(m, rand, buf[0], buf[1]);
+		}
+		return documents;
+	}
+
+	/**
+	 * Get the words of document m as a scrambled sequence. In uncompressed
+	 * mode, this is the same permutation as NumCorpus.getDocWords for the same
+	 * random state; in compressed mode, the terms are expanded in ascending
+	 * order, so the sequence differs.
+	 *
+	 * @param m
+	 * @param rand random number generator or null to omit shuffling
+	 * @return
+	 */
+	public int[] getDocWords(int m, Random rand) {
+		int nterms = getNumTerms(m);
+		return getDocWords(m, rand, new int[nterms], new int[nterms]);
+	}
+
+	private int[] getDocWords(int m, Random rand, int[] tbuf, int[] fbuf) {
+		int nterms = getDocTerms(m, tbuf, fbuf);
+		return expandWords(tbuf, fbuf, nterms, getNumWords(m), rand);
+	}
+
+	/**
+	 * expand term:count pairs to a word sequence, shuffled like
+	 * Collections.shuffle(list, rand)
+	 *
+	 * @param tbuf terms
+	 * @param fbuf counts
+	 * @param nterms number of pairs
+	 * @param nwords sum of counts
+	 * @param rand random number generator or null to omit shuffling
+	 * @return
+	 */
+	static int[] expandWords(int[] tbuf, int[] fbuf, int nterms, int nwords,
+			Random rand) {
+		int[] words = new int[nwords];
+		int n = 0;
+		for (int i = 0; i < nterms; i++) {
+			for (int j = 0; j < fbuf[i]; j++) {
+				words[n++] = tbuf[i];
+			}
+		}
+		// permute words so duplicates aren't juxtaposed
+		if (rand != null) {
+			for (int i = words.length; i > 1; i--) {
+				int j = rand.nextInt(i);
+				int a = words[i - 1];
+				words[i - 1] = words[j];
+				words[j] = a;
+			}
+		}
+		return words;
+	}
+
+	public int getNumDocs() {
+		return numDocs;
+	}
+
+	public int getNumTerms() {
+		return numTerms;
+	}
+
+	/**
+	 * @return number of words, or Integer.MAX_VALUE if more (see
+	 *         getNumWordsLong())
+	 */
+	public int getNumWords() {
+		return (int) Math.min(numWords, Integer.MAX_VALUE);
+	}
+
+	public long getNumWordsLong() {
+		return numWords;
+	}
+
+	/**
+	 * @param m
+	 * @return number of unique terms in document m
+	 */
+	public int getNumTerms(int m) {
+		return termStarts[m + 1] - termStarts[m];
+	}
+
+	/**
+	 * @param m
+	 * @return number of words in document m
+	 */
+	public int getNumWords(int m) {
+		return (int) (wordStarts[m + 1] - wordStarts[m]);
+	}
+
+	/**
+	 * @param m
+	 * @return position of the first token of document m in the corpus
+	 */
+	public long getWordStart(int m) {
+		return wordStarts[m];
+	}
+
+	public int getMaxDocTerms() {
+		int max = 0;
+		for (int m = 0; m < numDocs; m++) {
+			max = Math.max(max, getNumTerms(m));
+		}
+		return max;
+	}
+
+	public boolean isCompressed() {
+		return data != null;
+	}
+
+	/**
+	 * @return approximate size of the corpus storage in bytes
+	 */
+	public long getStorageSize() {
+		long size = 4L * termStarts.length + 8L * wordStarts.length;
+		if (data == null) {
+			size += 4L * terms.length + 4L * counts.length;
+		} else {
+			size += data.length + 4L * byteStarts.length;
+		}
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return "CsrCorpus instance:\ndocs: M = " + numDocs + ", V = "
+				+ numTerms + ", W = " + numWords + ", compressed = "
+				+ isCompressed() + ", storage = " + getStorageSize()
+				+ " bytes\n";
+	}
+}
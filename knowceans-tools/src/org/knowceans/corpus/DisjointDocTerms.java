@@ -15,6 +15,13 @@ import org.knowceans.util.Vectors;
  * exclusive document subsets and term subsets. Based on these, index sets can
  * be retrieved into the original corpus for paralle access to mutually
  * exclusive documents and terms.
+ * <p>
+ * The partitions balance the number of tokens in the P x P cells (document
+ * block, term block), which determines the time of a diagonal schedule where
+ * every epoch waits for its largest cell: terms are assigned to term blocks by
+ * longest processing time first (LPT, most frequent term to the lightest
+ * block), then documents, longest first, to the document block whose largest
+ * cell grows least. getImbalance() reports the resulting load imbalance.
  * 
  * @author gregor
  */
@@ -36,6 +43,7 @@ public class DisjointDocTerms {
 		for (int p = 0; p < P; p++) {
 			System.out.println(Vectors.print(tt[p]));
 		}
+		System.out.println("imbalance = " + dj.getImbalance(P));
 		System.out.println("disjoint token sequences");
 		int[][][] ww = dj.getDisjointTokens(P);
 		for (int p = 0; p < P; p++) {
@@ -56,6 +64,26 @@ public class DisjointDocTerms {
 	 */
 	private int V;
 
+	/**
+	 * number of blocks of the current partition
+	 */
+	private int partP;
+
+	/**
+	 * term association int pt[V] -> [0, P)
+	 */
+	private int[] pt;
+
+	/**
+	 * document association int pm[M] -> [0, P)
+	 */
+	private int[] pm;
+
+	/**
+	 * tokens per cell, long[p][q]
+	 */
+	private long[][] cells;
+
 	// //////////////////////
 
 	public DisjointDocTerms(int[][] w, int V) {
@@ -70,21 +98,8 @@ public class DisjointDocTerms {
 	 * @return m = int[p][i]
 	 */
 	public int[][] getDisjointDocuments(int P) {
-		int[][] pm = new int[P][];
-		int[] dd = alignDocs(P);
-		int M = w.length;
-		int size = M / P;
-		int plus = M % P;
-		for (int p = 0; p < P; p++) {
-			pm[p] = new int[size + (p < plus ? 1 : 0)];
-		}
-		int[] ii = new int[P];
-		for (int m = 0; m < M; m++) {
-			int p = dd[m];
-			pm[p][ii[p]] = m;
-			ii[p]++;
-		}
-		return pm;
+		partition(P);
+		return invert(pm, P);
 	}
 
 	/**
@@ -94,16 +109,86 @@ public class DisjointDocTerms {
 	 * @return int[q][i] -> t
 	 */
 	public int[][] getDisjointTerms(int P) {
-		int[][] qt = new int[P][];
-		int size = V / P;
-		int plus = V % P;
-		for (int q = 0; q < P; q++) {
-			qt[q] = new int[size + (q < plus ? 1 : 0)];
-			for (int i = 0; i < qt[q].length; i++) {
-				qt[q][i] = q + i * P;
+		partition(P);
+		return invert(pt, P);
+	}
+
+	/**
+	 * @param assoc association of items with blocks
+	 * @param P
+	 * @return items of each block in ascending order, int[p][i]
+	 */
+	private int[][] invert(int[] assoc, int P) {
+		int[] size = new int[P];
+		for (int i = 0; i < assoc.length; i++) {
+			size[assoc[i]]++;
+		}
+		int[][] blocks = new int[P][];
+		for (int p = 0; p < P; p++) {
+			blocks[p] = new int[size[p]];
+			size[p] = 0;
+		}
+		for (int i = 0; i < assoc.length; i++) {
+			int p = assoc[i];
+			blocks[p][size[p]++] = i;
+		}
+		return blocks;
+	}
+
+	/**
+	 * get the number of tokens in each cell of document block p and term
+	 * block q
+	 * 
+	 * @param P
+	 * @return long[p][q]
+	 */
+	public long[][] getCellLoads(int P) {
+		partition(P);
+		long[][] c = new long[P][];
+		for (int p = 0; p < P; p++) {
+			c[p] = cells[p].clone();
+		}
+		return c;
+	}
+
+	/**
+	 * get the load imbalance of a diagonal schedule of the P x P cells, in
+	 * which epoch e processes the cells (p, (p + e) mod P) in parallel: the
+	 * sum over the epochs of the largest cell, divided by the time with
+	 * perfect balance, W / P. A value of 1 means perfect balance, P means no
+	 * parallelism.
+	 * 
+	 * @param P
+	 * @return imbalance >= 1
+	 */
+	public double getImbalance(int P) {
+		partition(P);
+		long W = 0, critical = 0;
+		for (int e = 0; e < P; e++) {
+			long max = 0;
+			for (int p = 0; p < P; p++) {
+				long c = cells[p][(p + e) % P];
+				W += c;
+				max = Math.max(max, c);
 			}
+			critical += max;
 		}
-		return qt;
+		return W == 0 ? 1 : critical * P / (double) W;
+	}
+
+	/**
+	 * compute the term and document partitions for P blocks (if not done for
+	 * this P already).
+	 * 
+	 * @param P
+	 */
+	private void partition(int P) {
+		if (P == partP) {
+			return;
+		}
+		pt = alignTerms(P);
+		pm = alignDocs(P, pt);
+		partP = P;
 	}
 
 	/**
@@ -115,7 +200,7 @@ public class DisjointDocTerms {
 	@SuppressWarnings("unchecked")
 	public int[][][] getDisjointTokens(int P) {
 		int M = w.length;
-		int[] pt = alignTerms(P);
+		partition(P);
 		// processor-specific sampling sequences
 		ArrayList[][] wpm = new ArrayList[P][M];
 
@@ -143,32 +228,53 @@ public class DisjointDocTerms {
 	}
 
 	/**
-	 * partition corpus into sets that with mutually exclusive words and topics
+	 * partition the terms into P blocks with balanced token counts (LPT:
+	 * terms in descending frequency, each to the block with the fewest
+	 * tokens).
 	 * 
 	 * @param P
+	 * @return term association int pt[V] -> [0, P)
 	 */
 	private int[] alignTerms(int P) {
 		int[] pt = new int[V];
-		// sorted term frequencies: use ids from NumCorpus
-		for (int t = 0; t < pt.length; t++) {
-			pt[t] = t % P;
+		// term frequencies
+		int[] nt = new int[V];
+		for (int m = 0; m < w.length; m++) {
+			for (int n = 0; n < w[m].length; n++) {
+				nt[w[m][n]]++;
+			}
+		}
+		int[] idxt = IndexQuickSort.sort(nt);
+		IndexQuickSort.reverse(idxt);
+		long[] load = new long[P];
+		for (int i = 0; i < V; i++) {
+			int t = idxt[i];
+			int q = 0;
+			for (int j = 1; j < P; j++) {
+				if (load[j] < load[q]) {
+					q = j;
+				}
+			}
+			pt[t] = q;
+			load[q] += nt[t];
 		}
 		return pt;
 	}
 
 	/**
-	 * partition corpus into sets that with mutually exclusive words and topics
+	 * partition the documents into P blocks, given the term partition:
+	 * documents in descending length, each to the block whose largest cell
+	 * is smallest after adding the document (ties: smallest block). Sets the
+	 * cell loads.
 	 * 
-	 * @param nc corpus
-	 * @param pt term association int pt[V] -> [0, P)
-	 * @param pm document association int pm[M] -> [0, P)
 	 * @param P
-	 * @return
+	 * @param pt term association int pt[V] -> [0, P)
+	 * @return document association int pm[M] -> [0, P)
 	 */
-	private int[] alignDocs(int P) {
+	private int[] alignDocs(int P, int[] pt) {
 		int M = w.length;
 		int[] pm = new int[M];
-		// calculate term frequencies document lengths
+		// document lengths
 		int[] nm = new int[M];
 		for (int m = 0; m < M; m++) {
 			nm[m] = w[m].length;
@@ -176,9 +282,35 @@ public class DisjointDocTerms {
 		// sort document lengths
 		int[] idxm = IndexQuickSort.sort(nm);
 		IndexQuickSort.reverse(idxm);
-		// associate documents with p
-		for (int m = 0; m < M; m++) {
-			pm[idxm[m]] = m % P;
+		cells = new long[P][P];
+		long[] rows = new long[P];
+		int[] nq = new int[P];
+		for (int i = 0; i < M; i++) {
+			int m = idxm[i];
+			// tokens of the document per term block
+			for (int q = 0; q < P; q++) {
+				nq[q] = 0;
+			}
+			for (int n = 0; n < w[m].length; n++) {
+				nq[pt[w[m][n]]]++;
+			}
+			int best = 0;
+			long bestMax = Long.MAX_VALUE;
+			for (int p = 0; p < P; p++) {
+				long max = 0;
+				for (int q = 0; q < P; q++) {
+					max = Math.max(max, cells[p][q] + nq[q]);
+				}
+				if (max < bestMax || (max == bestMax && rows[p] < rows[best])) {
+					best = p;
+					bestMax = max;
+				}
+			}
+			pm[m] = best;
+			rows[best] += nm[m];
+			for (int q = 0; q < P; q++) {
+				cells[best][q] += nq[q];
+			}
 		}
 		return pm;
 	}
@@ -7,6 +7,7 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -32,6 +33,7 @@ import org.knowceans.map.BijectiveTreeMap;
 import org.knowceans.map.IMultiMap;
 import org.knowceans.map.InvertibleHashMultiMap;
 import org.knowceans.util.Conf;
+import org.knowceans.util.OrderedPipeline;
 import org.knowceans.util.StopWatch;
 import org.knowceans.util.UnHtml;
 
@@ -96,6 +98,13 @@ public class LuceneCorpusExtractor {
 	private SimpleFSDirectory indexDirectory;
 	private int docSize;
 	private IndexWriter indexWriter;
+	/**
+	 * threads that read documents (0 = virtual threads if available) and
+	 * maximum number of documents in flight, set via corpus.reader.threads and
+	 * corpus.reader.window
+	 */
+	private int readThreads;
+	private int readWindow;
 
 	public LuceneCorpusExtractor() {
 		srcbase = Conf.get("source.filebase");
@@ -104,6 +113,11 @@ public class LuceneCorpusExtractor {
 		contentDir = Conf.get("source.fulltext.dir");
 		citationFile = Conf.get("source.citation.file");
 		docSize = Conf.getInt("corpus.abstract.text.chars");
+		String threads = Conf.get("corpus.reader.threads");
+		readThreads = threads != null ? Integer.parseInt(threads) : 0;
+		String window = Conf.get("corpus.reader.window");
+		readWindow = window != null ? Integer.parseInt(window)
+				: OrderedPipeline.WINDOW;
 
 		corpus = new CreateLabelNumCorpus(destbase);
 		resolver = new CreateCorpusResolver(destbase);
@@ -300,11 +314,11 @@ public class LuceneCorpusExtractor {
 	 * @throws IOException
 	 */
 	private void readAndIndexContent(
-			BijectiveHashMap<String, Integer> aanid2mid, boolean index)
-			throws Exception {
+			final BijectiveHashMap<String, Integer> aanid2mid,
+			final boolean index) throws Exception {
 
 		// read and index documents
-		File docdir = new File(srcbase + contentDir);
+		final File docdir = new File(srcbase + contentDir);
 		String[] ls = docdir.list();
 
 		// open Lucene
@@ -312,11 +326,18 @@ public class LuceneCorpusExtractor {
 			startIndex();
 		StopWatch.lap();
 
-		int m = 0;
-		Set<Integer> indexed = new HashSet<Integer>();
-		for (String filename : ls) {
-			// W09-3334
-			if (filename.matches("[A-Z][0-9]+\\-[0-9]+.*\\.txt")) {
+		final Set<Integer> indexed = new HashSet<Integer>();
+		final int[] nread = { 0 };
+		// files are read by readThreads threads, documents are indexed in the
+		// order of the file list on this thread
+		OrderedPipeline<String, String> reader = new OrderedPipeline<String, String>(
+				readThreads, readWindow) {
+			@Override
+			public String process(String filename) throws Exception {
+				// W09-3334
+				if (!filename.matches("[A-Z][0-9]+\\-[0-9]+.*\\.txt")) {
+					return null;
+				}
 				// read content from corpus file
 				BufferedReader br = new BufferedReader(new FileReader(
 						docdir.getAbsoluteFile() + "/" + filename));
@@ -328,7 +349,17 @@ public class LuceneCorpusExtractor {
 					line = line.replaceAll("^.+\t", "").trim();
 					sb.append(" " + line);
 				}
+				br.close();
+				return sb.toString();
+			}
 
+			@Override
+			public void consume(int i, String filename, String sb)
+					throws Exception {
+				if (sb == null) {
+					debug("invalid file name: " + filename);
+					return;
+				}
 				// get id
 				String aanid = filename.substring(0, filename.lastIndexOf('.'))
 						.trim();
@@ -340,7 +371,7 @@ public class LuceneCorpusExtractor {
 					// debug(m + " skipping content without metadata: " +
 					// aanid);
 					// we don't accept content without metadata
-					continue;
+					return;
 				}
 
 				AanDocument doc = mid2doc.get(mid);
@@ -349,7 +380,7 @@ public class LuceneCorpusExtractor {
 					debug("this shouldn't happen: content + metadata with mid but no document: "
 							+ aanid);
 					// we don't accept content without metadata
-					continue;
+					return;
 				}
 
 				indexed.add(mid);
@@ -358,21 +389,23 @@ public class LuceneCorpusExtractor {
 				if (sb.length() > docSize) {
 					doc.content = sb.substring(0, docSize).trim() + "...";
 				} else {
-					doc.content = sb.toString().trim();
+					doc.content = sb.trim();
 				}
 				if (index)
-					indexDocument(doc, sb.toString());
-				br.close();
-				if (m % 500 == 0) {
-					debug("lap time = " + StopWatch.lap() + ", m = " + m);
+					indexDocument(doc, sb);
+				if (nread[0] % 500 == 0) {
+					debug("lap time = " + StopWatch.lap() + ", m = " + nread[0]);
 				}
-				m++;
-			} else {
-				debug("invalid file name: " + filename);
+				nread[0]++;
 			}
-		} // for
-		debug("documents with content and metadata: " + m);
-		m = 0;
+		};
+		try {
+			reader.run(Arrays.asList(ls));
+		} finally {
+			reader.shutdown();
+		}
+		debug("documents with content and metadata: " + nread[0]);
+		int m = 0;
 		debug("add documents with only metadata...");
 		// now index the documents that have only metadata
 		for (int mid = 0; mid < mid2doc.size(); mid++) {
@@ -0,0 +1,482 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.corpus;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+/**
+ * MappedCorpus is a read-only corpus backed by a memory-mapped binary file in
+ * the CSR layout of CsrCorpus. Opening the corpus only maps the file, so
+ * loading time is independent of the corpus size, the pages are read by the
+ * operating system on first access, and several processes that open the same
+ * file share one copy in the page cache.
+ * <p>
+ * The file format (big endian) is:
+ *
+ * <pre>
+ * header    int magic (KCRP), int version, int M, int V, long W, long P
+ * termStarts long[M + 1]   start of each document's term:count pairs
+ * wordStarts long[M + 1]   start of each document's tokens
+ * terms      int[P]        term ids
+ * counts     int[P]        term counts
+ * </pre>
+ *
+ * Because a MappedByteBuffer is limited to 2^31 bytes, the file is mapped in
+ * chunks of 2^30 bytes. Every section starts at a multiple of its element
+ * size, so no value crosses a chunk boundary. All reads are absolute, so the
+ * corpus can be accessed by several threads concurrently.
+ * <p>
+ * Binary files are created from a loaded corpus with write(NumCorpus, String)
+ * or NumCorpus.writeBinary(), or converted from a text corpus file without
+ * loading it with convert(String, String).
+ *
+ * @author gregor
+ */
+public class MappedCorpus implements ICorpus, ITermCorpus {
+
+	public static void main(String[] args) throws IOException {
+		String base = "corpus-example/berry95";
+		convert(base + ".corpus", base + EXTENSION);
+		MappedCorpus mc = new MappedCorpus(base + EXTENSION);
+		System.out.println(new NumCorpus(base));
+		System.out.println(mc);
+		System.out.println(mc.getDoc(0));
+		mc.close();
+	}
+
+	/**
+	 * file extension of binary corpus files
+	 */
+	public static final String EXTENSION = ".corpus.bin";
+
+	/**
+	 * "KCRP"
+	 */
+	public static final int MAGIC = 0x4b435250;
+
+	public static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 32;
+
+	private static final int CHUNK_BITS = 30;
+
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+	private String filename;
+
+	private MappedByteBuffer[] chunks;
+
+	private int numDocs;
+
+	private int numTerms;
+
+	private long numWords;
+
+	private long numPairs;
+
+	private long termStartsPos;
+
+	private long wordStartsPos;
+
+	private long termsPos;
+
+	private long countsPos;
+
+	/**
+	 * map the binary corpus file
+	 *
+	 * @param filename
+	 * @throws IOException if the file is not a binary corpus of a supported
+	 *         version
+	 */
+	public MappedCorpus(String filename) throws IOException {
+		this.filename = filename;
+		RandomAccessFile raf = new RandomAccessFile(filename, "r");
+		try {
+			FileChannel fc = raf.getChannel();
+			long size = fc.size();
+			if (size < HEADER_SIZE) {
+				throw new IOException(filename + " is not a binary corpus");
+			}
+			int nchunks = (int) ((size + CHUNK_MASK) >>> CHUNK_BITS);
+			chunks = new MappedByteBuffer[nchunks];
+			for (int i = 0; i < nchunks; i++) {
+				long start = (long) i << CHUNK_BITS;
+				chunks[i] = fc.map(FileChannel.MapMode.READ_ONLY, start,
+						Math.min(size - start, 1L << CHUNK_BITS));
+			}
+			// the mapping stays valid after the channel is closed
+		} finally {
+			raf.close();
+		}
+		if (getInt(0) != MAGIC) {
+			throw new IOException(filename + " is not a binary corpus");
+		}
+		if (getInt(4) != VERSION) {
+			throw new IOException(filename + ": unsupported version "
+					+ getInt(4));
+		}
+		numDocs = getInt(8);
+		numTerms = getInt(12);
+		numWords = getLong(16);
+		numPairs = getLong(24);
+		termStartsPos = HEADER_SIZE;
+		wordStartsPos = termStartsPos + 8L * (numDocs + 1);
+		termsPos = wordStartsPos + 8L * (numDocs + 1);
+		countsPos = termsPos + 4L * numPairs;
+	}
+
+	private int getInt(long pos) {
+		return chunks[(int) (pos >>> CHUNK_BITS)].getInt((int) (pos & CHUNK_MASK));
+	}
+
+	private long getLong(long pos) {
+		return chunks[(int) (pos >>> CHUNK_BITS)]
+				.getLong((int) (pos & CHUNK_MASK));
+	}
+
+	/**
+	 * release the mapping (the buffers are unmapped when garbage-collected)
+	 */
+	public void close() {
+		chunks = null;
+	}
+
+	/**
+	 * read the term ids and counts of document m into the buffers, which must
+	 * be at least getNumTerms(m) long.
+	 *
+	 * @param m
+	 * @param tbuf term ids or null
+	 * @param fbuf counts or null
+	 * @return number of terms of the document
+	 */
+	public int getDocTerms(int m, int[] tbuf, int[] fbuf) {
+		long start = getTermStart(m);
+		int nterms = (int) (getTermStart(m + 1) - start);
+		if (tbuf != null) {
+			long pos = termsPos + 4 * start;
+			for (int i = 0; i < nterms; i++, pos += 4) {
+				tbuf[i] = getInt(pos);
+			}
+		}
+		if (fbuf != null) {
+			long pos = countsPos + 4 * start;
+			for (int i = 0; i < nterms; i++, pos += 4) {
+				fbuf[i] = getInt(pos);
+			}
+		}
+		return nterms;
+	}
+
+	/**
+	 * @param m
+	 * @return a new document with the terms and counts of document m
+	 */
+	public Document getDoc(int m) {
+		Document d = new Document(getNumTerms(m));
+		getDocTerms(m, d.terms, d.counts);
+		d.numWords = getNumWords(m);
+		return d;
+	}
+
+	/**
+	 * get array of document terms and frequencies
+	 *
+	 * @return docs[0 = terms, 1 = frequencies][m][t]
+	 */
+	public int[][][] getDocTermsFreqs() {
+		int[][][] documents = new int[2][numDocs][];
+		for (int m = 0; m < numDocs; m++) {
+			documents[0][m] = new int[getNumTerms(m)];
+			documents[1][m] = new int[getNumTerms(m)];
+			getDocTerms(m, documents[0][m], documents[1][m]);
+		}
+		return documents;
+	}
+
+	/**
+	 * Get the documents as vectors of bag of words, i.e., per document, a
+	 * scrambled array of term indices is generated.
+	 *
+	 * @param rand random number generator or null to omit shuffling
+	 * @return
+	 */
+	public int[][] getDocWords(Random rand) {
+		int[][] documents = new int[numDocs][];
+		int[][] buf = new int[2][getMaxDocTerms()];
+		for (int m = 0; m < numDocs; m++) {
+			int nterms = getDocTerms(m, buf[0], buf[1]);
+			documents[m] = CsrCorpus.expandWords(buf[0], buf[1], nterms,
+					getNumWords(m), rand);
+		}
+		return documents;
+	}
+
+	/**
+	 * Get the words of document m as a scrambled sequence (with the same
+	 * permutation as NumCorpus.getDocWords for the same random state).
+	 *
+	 * @param m
+	 * @param rand random number generator or null to omit shuffling
+	 * @return
+	 */
+	public int[] getDocWords(int m, Random rand) {
+		int nterms = getNumTerms(m);
+		int[] tbuf = new int[nterms];
+		int[] fbuf = new int[nterms];
+		getDocTerms(m, tbuf, fbuf);
+		return CsrCorpus.expandWords(tbuf, fbuf, nterms, getNumWords(m), rand);
+	}
+
+	public int getNumDocs() {
+		return numDocs;
+	}
+
+	public int getNumTerms() {
+		return numTerms;
+	}
+
+	/**
+	 * @return number of words, or Integer.MAX_VALUE if more (see
+	 *         getNumWordsLong())
+	 */
+	public int getNumWords() {
+		return (int) Math.min(numWords, Integer.MAX_VALUE);
+	}
+
+	public long getNumWordsLong() {
+		return numWords;
+	}
+
+	/**
+	 * @return number of term:count pairs in the corpus
+	 */
+	public long getNumPairs() {
+		return numPairs;
+	}
+
+	/**
+	 * @param m
+	 * @return position of the first term:count pair of document m
+	 */
+	public long getTermStart(int m) {
+		return getLong(termStartsPos + 8L * m);
+	}
+
+	/**
+	 * @param m
+	 * @return position of the first token of document m in the corpus
+	 */
+	public long getWordStart(int m) {
+		return getLong(wordStartsPos + 8L * m);
+	}
+
+	/**
+	 * @param m
+	 * @return number of unique terms in document m
+	 */
+	public int getNumTerms(int m) {
+		return (int) (getTermStart(m + 1) - getTermStart(m));
+	}
+
+	/**
+	 * @param m
+	 * @return number of words in document m
+	 */
+	public int getNumWords(int m) {
+		return (int) (getWordStart(m + 1) - getWordStart(m));
+	}
+
+	public int getMaxDocTerms() {
+		int max = 0;
+		for (int m = 0; m < numDocs; m++) {
+			max = Math.max(max, getNumTerms(m));
+		}
+		return max;
+	}
+
+	public String getFilename() {
+		return filename;
+	}
+
+	@Override
+	public String toString() {
+		return "MappedCorpus instance:\nfile: " + filename + "\ndocs: M = "
+				+ numDocs + ", V = " + numTerms + ", W = " + numWords
+				+ ", chunks = " + chunks.length + "\n";
+	}
+
+	// writing
+
+	/**
+	 * write a loaded corpus to a binary corpus file. Paragraph bounds are not
+	 * kept.
+	 *
+	 * @param corpus
+	 * @param filename
+	 * @throws IOException
+	 */
+	public static void write(NumCorpus corpus, String filename)
+			throws IOException {
+		int M = corpus.getNumDocs();
+		long P = 0;
+		for (int m = 0; m < M; m++) {
+			P += corpus.getDoc(m).getNumTerms();
+		}
+		Writer w = new Writer(filename, M, P);
+		for (int m = 0; m < M; m++) {
+			Document d = corpus.getDoc(m);
+			w.add(d.getTerms(), d.getCounts(), d.getNumTerms());
+		}
+		w.close(corpus.getNumTerms());
+	}
+
+	/**
+	 * convert a corpus file in text format (cf. NumCorpus.read) to a binary
+	 * corpus file, streaming the documents through a CorpusCursor (two passes:
+	 * sizes, then content). Paragraph bounds are not kept.
+	 *
+	 * @param corpusFilename
+	 * @param filename
+	 * @throws IOException
+	 */
+	public static void convert(String corpusFilename, String filename)
+			throws IOException {
+		CorpusCursor cursor = new CorpusCursor(corpusFilename);
+		int M = 0;
+		long P = 0;
+		while (cursor.next()) {
+			M++;
+			P += cursor.getNumTerms();
+		}
+		Writer w = new Writer(filename, M, P);
+		int V = 0;
+		cursor.reset();
+		while (cursor.next()) {
+			int[] tt = cursor.getTerms();
+			for (int i = 0; i < cursor.getNumTerms(); i++) {
+				if (tt[i] >= V) {
+					V = tt[i] + 1;
+				}
+			}
+			w.add(tt, cursor.getCounts(), cursor.getNumTerms());
+		}
+		cursor.close();
+		w.close(V);
+	}
+
+	/**
+	 * Writer fills the four sections of a binary corpus file in one pass over
+	 * the documents, each section through its own buffer. The header is
+	 * written last.
+	 */
+	private static class Writer {
+
+		private static final int BUFSIZE = 1 << 16;
+
+		private RandomAccessFile raf;
+
+		private FileChannel fc;
+
+		private ByteBuffer[] bufs = new ByteBuffer[4];
+
+		/**
+		 * file position of the next flush per section
+		 */
+		private long[] pos = new long[4];
+
+		private int numDocs;
+
+		private long numPairs;
+
+		private long termStart;
+
+		private long wordStart;
+
+		Writer(String filename, int M, long P) throws IOException {
+			File f = new File(filename);
+			if (f.exists() && !f.delete()) {
+				throw new IOException("cannot overwrite " + filename);
+			}
+			raf = new RandomAccessFile(f, "rw");
+			fc = raf.getChannel();
+			numDocs = M;
+			numPairs = P;
+			pos[0] = HEADER_SIZE;
+			pos[1] = pos[0] + 8L * (M + 1);
+			pos[2] = pos[1] + 8L * (M + 1);
+			pos[3] = pos[2] + 4L * P;
+			for (int i = 0; i < 4; i++) {
+				bufs[i] = ByteBuffer.allocate(BUFSIZE);
+			}
+			bufs[0].putLong(0);
+			bufs[1].putLong(0);
+		}
+
+		/**
+		 * append the next document
+		 */
+		void add(int[] tt, int[] ff, int nterms) throws IOException {
+			for (int i = 0; i < nterms; i++) {
+				putInt(2, tt[i]);
+				putInt(3, ff[i]);
+				wordStart += ff[i];
+			}
+			termStart += nterms;
+			putLong(0, termStart);
+			putLong(1, wordStart);
+		}
+
+		private void putInt(int section, int value) throws IOException {
+			if (bufs[section].remaining() < 4) {
+				flush(section);
+			}
+			bufs[section].putInt(value);
+		}
+
+		private void putLong(int section, long value) throws IOException {
+			if (bufs[section].remaining() < 8) {
+				flush(section);
+			}
+			bufs[section].putLong(value);
+		}
+
+		private void flush(int section) throws IOException {
+			ByteBuffer b = bufs[section];
+			b.flip();
+			while (b.hasRemaining()) {
+				pos[section] += fc.write(b, pos[section]);
+			}
+			b.clear();
+		}
+
+		/**
+		 * flush the sections and write the header
+		 *
+		 * @param V number of terms
+		 */
+		void close(int V) throws IOException {
+			if (termStart != numPairs) {
+				throw new IllegalStateException("expected " + numPairs
+						+ " term:count pairs, got " + termStart);
+			}
+			for (int i = 0; i < 4; i++) {
+				flush(i);
+			}
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putInt(numDocs).putInt(V)
+					.putLong(wordStart).putLong(numPairs);
+			header.flip();
+			fc.write(header, 0);
+			raf.close();
+		}
+	}
+}
@@ -24,10 +24,8 @@
  */
 package org.knowceans.corpus;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -221,86 +219,30 @@ public class NumCorpus implements ICorpus, ITermCorpus, ISplitCorpus {
 	 * @param dataFilename
 	 */
 	public void read(String dataFilename) {
-		int length, count = 0, word, n, nd, nt, ns, nw = 0;
+		int n, nd, nt, nw = 0;
 
 		if (debug)
 			System.out.println("reading data from " + dataFilename);
 
 		try {
 			ArrayList<Document> cdocs = new ArrayList<Document>();
-			BufferedReader br = new BufferedReader(new FileReader(dataFilename));
+			// byte-level parsing, see CorpusCursor for streaming access
+			CorpusCursor cursor = new CorpusCursor(dataFilename, OFFSET);
 			nd = 0;
 			nt = 0;
-			String line = "";
 			parbounds = null;
 			boolean parmode = false;
-			while ((line = br.readLine()) != null) {
-				// one document per line
-				String[] fields = line.trim().split("\\s+");
-				// empty documents start with a 0 but are used in corpus
-				if (fields[0].equals(""))
-					continue;
-				length = Integer.parseInt(fields[0]);
-				// if single paragraph
-				if (length == fields.length - 1) {
-
-					Document d = new Document();
-					cdocs.add(d);
-					d.setNumTerms(length);
-					d.setNumWords(0);
-					d.setTerms(new int[length]);
-					d.setCounts(new int[length]);
-
-					for (n = 0; n < length; n++) {
-						// fscanf(fileptr, "%10d:%10d", &word, &count);
-						String[] numbers = fields[n + 1].split(":");
-						if (numbers[0].equals("") || numbers[0].equals(""))
-							continue;
-						word = Integer.parseInt(numbers[0]);
-						count = (int) Float.parseFloat(numbers[1]);
-						nw += count;
-						word = word - OFFSET;
-						d.setTerm(n, word);
-						d.setCount(n, count);
-						d.setNumWords(d.getNumWords() + count);
-						if (word >= nt) {
-							nt = word + 1;
-						}
-					}
-				} else {
-					// more than one paragraph
-					// TODO: merge with other case
+			while (cursor.next()) {
+				// one document per line, with one or more paragraphs
+				Document d = cursor.getDocument();
+				cdocs.add(d);
+				if (d.getParBounds() != null) {
 					parmode = true;
-					int nextpar = 0;
-					int token = 0;
-					Document pd = new Document();
-					cdocs.add(pd);
-					while (nextpar < fields.length) {
-						length = Integer.parseInt(fields[nextpar]);
-						nextpar += length + 1;
-						token++;
-						Document d = new Document();
-						d.setNumTerms(length);
-						d.setNumWords(0);
-						d.setTerms(new int[length]);
-						d.setCounts(new int[length]);
-
-						for (n = 0; n < length; n++, token++) {
-							String[] numbers = fields[token].split(":");
-							if (numbers[0].equals("") || numbers[0].equals(""))
-								continue;
-							word = Integer.parseInt(numbers[0]);
-							count = (int) Float.parseFloat(numbers[1]);
-							nw += count;
-							word = word - OFFSET;
-							d.setTerm(n, word);
-							d.setCount(n, count);
-							d.setNumWords(d.getNumWords() + count);
-							if (word >= nt) {
-								nt = word + 1;
-							}
-						}
-						pd.addDocument(d);
+				}
+				nw += d.getNumWords();
+				for (n = 0; n < d.getNumTerms(); n++) {
+					if (d.getTerm(n) >= nt) {
+						nt = d.getTerm(n) + 1;
 					}
 				}
 				// if (nd % 1000 == 0) {
@@ -312,6 +254,7 @@ public class NumCorpus implements ICorpus, ITermCorpus, ISplitCorpus {
 					break;
 				}
 			}
+			cursor.close();
 			numDocs = nd;
 
 			numTerms = nt;
@@ -339,6 +282,18 @@ public class NumCorpus implements ICorpus, ITermCorpus, ISplitCorpus {
 		}
 	}
 
+	/**
+	 * open a cursor that streams the documents of a corpus file without
+	 * loading the corpus. The cursor can be reset for multiple passes.
+	 * 
+	 * @param dataFilebase (without .corpus)
+	 * @return
+	 * @throws IOException
+	 */
+	public static CorpusCursor stream(String dataFilebase) throws IOException {
+		return new CorpusCursor(dataFilebase + ".corpus", OFFSET);
+	}
+
 	/**
 	 * @return
 	 */
@@ -1042,6 +997,17 @@ public class NumCorpus implements ICorpus, ITermCorpus, ISplitCorpus {
 		}
 	}
 
+	/**
+	 * write the corpus to a binary file pathbase + MappedCorpus.EXTENSION that
+	 * can be opened by MappedCorpus without parsing.
+	 * 
+	 * @param pathbase
+	 * @throws IOException
+	 */
+	public void writeBinary(String pathbase) throws IOException {
+		MappedCorpus.write(this, pathbase + MappedCorpus.EXTENSION);
+	}
+
 	/**
 	 * get a resolver that acts on this corpus. For this, dataFilebase needs to
 	 * be known.
@@ -0,0 +1,490 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.corpus;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * PostingIndex is an inverted index of a corpus with compressed posting
+ * lists: for each term, the ids of the documents that contain it in
+ * ascending order, stored as variable-byte encoded gaps (7 bits per byte,
+ * high bit set on all but the last byte), followed by the term frequencies in
+ * these documents, also variable-byte encoded. A posting mostly takes 2 bytes
+ * instead of the two boxed Integers and hash map entry of
+ * NumCorpus.getTermDocMap(), and the posting lists are located via a flat
+ * array of offsets.
+ * <p>
+ * The file format (big endian) is:
+ *
+ * <pre>
+ * header    int magic (KPIX), int version, int V, int M, long P, long D
+ * offsets   long[V + 1]   start of each term's posting list in data
+ * df        int[V]        document frequency of each term
+ * data      byte[D]       per term: df doc id gaps, df frequencies
+ * </pre>
+ *
+ * An index file is memory-mapped (in chunks of 2^30 bytes like MappedCorpus),
+ * so opening it takes constant time and memory; an index built from a corpus
+ * in memory has the same layout in a byte array. All reads are absolute, so
+ * the index can be queried by several threads concurrently.
+ *
+ * @author gregor
+ */
+public class PostingIndex {
+
+	public static void main(String[] args) throws IOException {
+		String base = "corpus-example/berry95";
+		NumCorpus corpus = new NumCorpus(base);
+		write(corpus, base + EXTENSION);
+		PostingIndex pi = new PostingIndex(base + EXTENSION);
+		System.out.println(pi);
+		int[] docs = new int[pi.getNumDocs()];
+		int[] freqs = new int[pi.getNumDocs()];
+		for (int t = 0; t < Math.min(5, pi.getNumTerms()); t++) {
+			int df = pi.getPostings(t, docs, freqs);
+			StringBuffer b = new StringBuffer("term " + t + ":");
+			for (int i = 0; i < df; i++) {
+				b.append(" ").append(docs[i]).append("=").append(freqs[i]);
+			}
+			System.out.println(b);
+		}
+	}
+
+	/**
+	 * file extension of posting index files
+	 */
+	public static final String EXTENSION = ".pidx";
+
+	/**
+	 * "KPIX"
+	 */
+	public static final int MAGIC = 0x4b504958;
+
+	public static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 32;
+
+	private static final int CHUNK_BITS = 30;
+
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+	private String filename;
+
+	private ByteBuffer[] chunks;
+
+	private int numTerms;
+
+	private int numDocs;
+
+	private long numPostings;
+
+	private long dataSize;
+
+	private long offsetsPos;
+
+	private long dfPos;
+
+	private long dataPos;
+
+	/**
+	 * map the index file
+	 *
+	 * @param filename
+	 * @throws IOException if the file is not a posting index of a supported
+	 *         version
+	 */
+	public PostingIndex(String filename) throws IOException {
+		this.filename = filename;
+		RandomAccessFile raf = new RandomAccessFile(filename, "r");
+		try {
+			FileChannel fc = raf.getChannel();
+			long size = fc.size();
+			if (size < HEADER_SIZE) {
+				throw new IOException(filename + " is not a posting index");
+			}
+			int nchunks = (int) ((size + CHUNK_MASK) >>> CHUNK_BITS);
+			chunks = new ByteBuffer[nchunks];
+			for (int i = 0; i < nchunks; i++) {
+				long start = (long) i << CHUNK_BITS;
+				chunks[i] = fc.map(FileChannel.MapMode.READ_ONLY, start,
+						Math.min(size - start, 1L << CHUNK_BITS));
+			}
+		} finally {
+			raf.close();
+		}
+		init();
+	}
+
+	/**
+	 * index in the given file image
+	 *
+	 * @param image
+	 * @throws IOException
+	 */
+	private PostingIndex(byte[] image) throws IOException {
+		int nchunks = (int) ((image.length + CHUNK_MASK) >>> CHUNK_BITS);
+		chunks = new ByteBuffer[Math.max(1, nchunks)];
+		for (int i = 0; i < chunks.length; i++) {
+			int start = i << CHUNK_BITS;
+			chunks[i] = ByteBuffer.wrap(image, start,
+					Math.min(image.length - start, 1 << CHUNK_BITS)).slice();
+		}
+		init();
+	}
+
+	private void init() throws IOException {
+		if (getInt(0) != MAGIC) {
+			throw new IOException(filename + " is not a posting index");
+		}
+		if (getInt(4) != VERSION) {
+			throw new IOException(filename + ": unsupported version "
+					+ getInt(4));
+		}
+		numTerms = getInt(8);
+		numDocs = getInt(12);
+		numPostings = getLong(16);
+		dataSize = getLong(24);
+		offsetsPos = HEADER_SIZE;
+		dfPos = offsetsPos + 8L * (numTerms + 1);
+		dataPos = dfPos + 4L * numTerms;
+	}
+
+	/**
+	 * build the index of a corpus in memory, encoded once into an array of
+	 * the exact size. An index file can be larger than an array, so for large
+	 * corpora, write(corpus, filename) and map the file instead.
+	 *
+	 * @param corpus
+	 * @return
+	 * @throws IllegalArgumentException if the index exceeds the size of an
+	 *         array
+	 */
+	public static PostingIndex build(NumCorpus corpus) {
+		Encoder enc = new Encoder(corpus);
+		long size = enc.size();
+		if (size > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("posting index of " + size
+					+ " bytes exceeds an array, write to a file and map it");
+		}
+		final byte[] image = new byte[(int) size];
+		try {
+			enc.write(new OutputStream() {
+				int pos = 0;
+
+				@Override
+				public void write(int b) {
+					image[pos++] = (byte) b;
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) {
+					System.arraycopy(b, off, image, pos, len);
+					pos += len;
+				}
+			});
+			return new PostingIndex(image);
+		} catch (IOException e) {
+			// no i/o in memory
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private int getInt(long pos) {
+		return chunks[(int) (pos >>> CHUNK_BITS)].getInt((int) (pos & CHUNK_MASK));
+	}
+
+	private long getLong(long pos) {
+		return chunks[(int) (pos >>> CHUNK_BITS)]
+				.getLong((int) (pos & CHUNK_MASK));
+	}
+
+	private byte getByte(long pos) {
+		return chunks[(int) (pos >>> CHUNK_BITS)].get((int) (pos & CHUNK_MASK));
+	}
+
+	/**
+	 * release the mapping (the buffers are unmapped when garbage-collected)
+	 */
+	public void close() {
+		chunks = null;
+	}
+
+	/**
+	 * @param term
+	 * @return number of documents that contain the term, 0 for unknown terms
+	 */
+	public int getDocFreq(int term) {
+		if (term < 0 || term >= numTerms) {
+			return 0;
+		}
+		return getInt(dfPos + 4L * term);
+	}
+
+	/**
+	 * @return document frequencies of all terms
+	 */
+	public int[] getDocFreqs() {
+		int[] df = new int[numTerms];
+		for (int t = 0; t < numTerms; t++) {
+			df[t] = getInt(dfPos + 4L * t);
+		}
+		return df;
+	}
+
+	/**
+	 * decode the posting list of the term into the buffers, which must be at
+	 * least getDocFreq(term) long.
+	 *
+	 * @param term
+	 * @param docs ascending document ids
+	 * @param freqs term frequencies in the documents or null
+	 * @return number of documents
+	 */
+	public int getPostings(int term, int[] docs, int[] freqs) {
+		int df = getDocFreq(term);
+		if (df == 0) {
+			return 0;
+		}
+		long pos = dataPos + getLong(offsetsPos + 8L * term);
+		int doc = 0;
+		for (int i = 0; i < df; i++) {
+			int gap = 0;
+			byte b;
+			int shift = 0;
+			do {
+				b = getByte(pos++);
+				gap |= (b & 0x7f) << shift;
+				shift += 7;
+			} while (b < 0);
+			doc += gap;
+			docs[i] = doc;
+		}
+		if (freqs != null) {
+			for (int i = 0; i < df; i++) {
+				int f = 0;
+				byte b;
+				int shift = 0;
+				do {
+					b = getByte(pos++);
+					f |= (b & 0x7f) << shift;
+					shift += 7;
+				} while (b < 0);
+				freqs[i] = f;
+			}
+		}
+		return df;
+	}
+
+	/**
+	 * @param term
+	 * @param doc
+	 * @return frequency of the term in the document, 0 if it doesn't occur
+	 */
+	public int getFreq(int term, int doc) {
+		int df = getDocFreq(term);
+		int[] docs = new int[df];
+		int[] freqs = new int[df];
+		getPostings(term, docs, freqs);
+		int i = java.util.Arrays.binarySearch(docs, doc);
+		return i >= 0 ? freqs[i] : 0;
+	}
+
+	/**
+	 * @param term
+	 * @return total frequency of the term in the corpus
+	 */
+	public long getTermFreq(int term) {
+		int df = getDocFreq(term);
+		int[] docs = new int[df];
+		int[] freqs = new int[df];
+		getPostings(term, docs, freqs);
+		long tf = 0;
+		for (int i = 0; i < df; i++) {
+			tf += freqs[i];
+		}
+		return tf;
+	}
+
+	public int getNumTerms() {
+		return numTerms;
+	}
+
+	public int getNumDocs() {
+		return numDocs;
+	}
+
+	/**
+	 * @return number of (term, document) postings
+	 */
+	public long getNumPostings() {
+		return numPostings;
+	}
+
+	/**
+	 * @return size of the compressed posting lists in bytes
+	 */
+	public long getDataSize() {
+		return dataSize;
+	}
+
+	public String getFilename() {
+		return filename;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("PostingIndex: V = %d, M = %d, postings = %d, "
+				+ "%d bytes (%.2f per posting)", numTerms, numDocs,
+				numPostings, dataSize, dataSize / (double) Math.max(1,
+						numPostings));
+	}
+
+	// writing
+
+	/**
+	 * write the index of a corpus to a file
+	 *
+	 * @param corpus
+	 * @param filename
+	 * @throws IOException
+	 */
+	public static void write(NumCorpus corpus, String filename)
+			throws IOException {
+		File f = new File(filename);
+		OutputStream os = new BufferedOutputStream(new FileOutputStream(f),
+				1 << 16);
+		try {
+			write(corpus, os);
+		} finally {
+			os.close();
+		}
+	}
+
+	/**
+	 * write the index of a corpus to the stream
+	 *
+	 * @param corpus
+	 * @param os
+	 * @throws IOException
+	 */
+	public static void write(NumCorpus corpus, OutputStream os)
+			throws IOException {
+		new Encoder(corpus).write(os);
+	}
+
+	/**
+	 * Encoder collects the postings of a corpus per term in flat arrays (in
+	 * document order, i.e., sorted) and determines the offsets of the posting
+	 * lists from their encoded sizes, so the size of the index is known before
+	 * it is written.
+	 */
+	private static class Encoder {
+
+		int M, V, P;
+
+		/** posting lists in CSR layout, start[V + 1] */
+		int[] start, docs, freqs;
+
+		long[] offsets;
+
+		Encoder(NumCorpus corpus) {
+			M = corpus.getNumDocs();
+			V = corpus.getNumTerms();
+			start = new int[V + 1];
+			for (int m = 0; m < M; m++) {
+				Document d = corpus.getDoc(m);
+				for (int i = 0; i < d.getNumTerms(); i++) {
+					start[d.getTerm(i) + 1]++;
+				}
+			}
+			for (int t = 0; t < V; t++) {
+				start[t + 1] += start[t];
+			}
+			P = start[V];
+			docs = new int[P];
+			freqs = new int[P];
+			int[] fill = new int[V];
+			System.arraycopy(start, 0, fill, 0, V);
+			for (int m = 0; m < M; m++) {
+				Document d = corpus.getDoc(m);
+				for (int i = 0; i < d.getNumTerms(); i++) {
+					int p = fill[d.getTerm(i)]++;
+					docs[p] = m;
+					freqs[p] = d.getCount(i);
+				}
+			}
+
+			// offsets from the encoded sizes
+			offsets = new long[V + 1];
+			for (int t = 0; t < V; t++) {
+				long size = 0;
+				int prev = 0;
+				for (int p = start[t]; p < start[t + 1]; p++) {
+					size += varintSize(docs[p] - prev) + varintSize(freqs[p]);
+					prev = docs[p];
+				}
+				offsets[t + 1] = offsets[t] + size;
+			}
+		}
+
+		/**
+		 * @return size of the index file in bytes
+		 */
+		long size() {
+			return HEADER_SIZE + 8L * (V + 1) + 4L * V + offsets[V];
+		}
+
+		void write(OutputStream os) throws IOException {
+			DataOutputStream out = new DataOutputStream(os);
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(V);
+			out.writeInt(M);
+			out.writeLong(P);
+			out.writeLong(offsets[V]);
+			for (int t = 0; t <= V; t++) {
+				out.writeLong(offsets[t]);
+			}
+			for (int t = 0; t < V; t++) {
+				out.writeInt(start[t + 1] - start[t]);
+			}
+			for (int t = 0; t < V; t++) {
+				int prev = 0;
+				for (int p = start[t]; p < start[t + 1]; p++) {
+					writeVarint(out, docs[p] - prev);
+					prev = docs[p];
+				}
+				for (int p = start[t]; p < start[t + 1]; p++) {
+					writeVarint(out, freqs[p]);
+				}
+			}
+			out.flush();
+		}
+	}
+
+	private static int varintSize(int x) {
+		int n = 1;
+		while ((x >>>= 7) != 0) {
+			n++;
+		}
+		return n;
+	}
+
+	private static void writeVarint(OutputStream out, int x)
+			throws IOException {
+		while ((x & ~0x7f) != 0) {
+			out.write((x & 0x7f) | 0x80);
+			x >>>= 7;
+		}
+		out.write(x);
+	}
+}
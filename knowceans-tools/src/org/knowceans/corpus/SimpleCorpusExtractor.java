@@ -14,6 +14,7 @@ import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -22,6 +23,7 @@ import org.knowceans.map.IMultiMap;
 import org.knowceans.map.InvertibleHashMultiMap;
 import org.knowceans.util.AccentRemover;
 import org.knowceans.util.Conf;
+import org.knowceans.util.OrderedPipeline;
 import org.knowceans.util.StopWatch;
 import org.knowceans.util.UnHtml;
 
@@ -73,6 +75,17 @@ public class SimpleCorpusExtractor {
 		int[] citations;
 	}
 
+	/**
+	 * Content is a document file read and tokenised by the reader threads.
+	 */
+	class Content {
+		String aanid;
+		Integer mid;
+		AanDocument doc;
+		String text;
+		String[] words;
+	}
+
 	/**
 	 * AAN has string indices, thus additional mapping is needed
 	 */
@@ -89,7 +102,22 @@ public class SimpleCorpusExtractor {
 	protected CreateCorpusResolver resolver;
 	protected int docSize;
 	protected CorpusStemmer stemmer;
+	/**
+	 * pool of stemmers for the reader threads (snowball stemmers have state
+	 * and are created by reflection), borrowed per token: at most as many
+	 * are created as tokens are stemmed concurrently, also with a virtual
+	 * thread per document
+	 */
+	protected AtomicReferenceArray<CorpusStemmer> stemmers;
+	protected String stemmerLanguage;
 	protected HashSet<String> stoplist;
+	/**
+	 * threads that read and tokenise documents (0 = virtual threads if
+	 * available) and maximum number of documents in flight, set via
+	 * corpus.reader.threads and corpus.reader.window
+	 */
+	protected int readThreads;
+	protected int readWindow;
 
 	public SimpleCorpusExtractor() {
 		srcbase = Conf.get("source.filebase");
@@ -98,6 +126,11 @@ public class SimpleCorpusExtractor {
 		contentDir = Conf.get("source.fulltext.dir");
 		citationFile = Conf.get("source.citation.file");
 		docSize = Conf.getInt("corpus.abstract.text.chars");
+		String threads = Conf.get("corpus.reader.threads");
+		readThreads = threads != null ? Integer.parseInt(threads) : 0;
+		String window = Conf.get("corpus.reader.window");
+		readWindow = window != null ? Integer.parseInt(window)
+				: OrderedPipeline.WINDOW;
 
 		corpus = new CreateLabelNumCorpus(destbase);
 		resolver = new CreateCorpusResolver(destbase);
@@ -275,84 +308,72 @@ public class SimpleCorpusExtractor {
 	/**
 	 * reads the full-text information from the raw files and writes it to a
 	 * .text file for further processing, as well as a .docs.key file for the
-	 * ids
+	 * ids. Files are read and tokenised by readThreads threads, the corpus is
+	 * filled in the order of the file list on this thread.
 	 * 
 	 * @param aanid2mid used to enforce the order of function calls, this one
 	 *        after the metadata
 	 * 
 	 * @throws IOException
 	 */
-	protected void readAndIndexContent(BijectiveHashMap<String, Integer> aanid2mid)
-			throws Exception {
+	protected void readAndIndexContent(
+			final BijectiveHashMap<String, Integer> aanid2mid) throws Exception {
 
 		// read and index documents
-		File docdir = new File(srcbase + contentDir);
+		final File docdir = new File(srcbase + contentDir);
 		String[] ls = docdir.list();
 
 		// open Lucene
 		startIndex();
 		StopWatch.lap();
 
-		int m = 0;
-		Set<Integer> indexed = new HashSet<Integer>();
-		for (String filename : ls) {
-			// W09-3334
-			if (filename.matches("[A-Z][0-9]+\\-[0-9]+.*\\.txt")) {
-				// read content from corpus file
-				BufferedReader br = new BufferedReader(new FileReader(
-						docdir.getAbsoluteFile() + "/" + filename));
-				String line = null;
-				StringBuffer sb = new StringBuffer();
-				// write content to .text file
-				while ((line = br.readLine()) != null) {
-					// line format is (\d+:\d+)\s+(.+); we need only content
-					line = line.replaceAll("^.+\t", "").trim();
-					sb.append(" " + line);
-				}
+		final Set<Integer> indexed = new HashSet<Integer>();
+		final int[] nread = { 0 };
+		OrderedPipeline<String, Content> reader = new OrderedPipeline<String, Content>(
+				readThreads, readWindow) {
+			@Override
+			public Content process(String filename) throws Exception {
+				return readContent(docdir, filename);
+			}
 
-				// get id
-				String aanid = filename.substring(0, filename.lastIndexOf('.'))
-						.trim();
-				if (aanid == null) {
-					debug("filename broken? " + filename);
+			@Override
+			public void consume(int i, String filename, Content c)
+					throws Exception {
+				if (c == null) {
+					debug("invalid file name: " + filename);
+					return;
 				}
-				Integer mid = aanid2mid.get(aanid);
-				if (mid == null) {
-					// debug(m + " skipping content without metadata: " +
-					// aanid);
+				if (c.mid == null) {
 					// we don't accept content without metadata
-					continue;
+					return;
 				}
-
-				AanDocument doc = mid2doc.get(mid);
-
-				if (doc == null) {
+				if (c.doc == null) {
 					debug("this shouldn't happen: content + metadata with mid but no document: "
-							+ aanid);
-					// we don't accept content without metadata
-					continue;
+							+ c.aanid);
+					return;
 				}
-
-				indexed.add(mid);
+				indexed.add(c.doc.mid);
 
 				// don't add full text to document representation to preserve
-				if (sb.length() > docSize) {
-					doc.content = sb.substring(0, docSize).trim() + "...";
+				if (c.text.length() > docSize) {
+					c.doc.content = c.text.substring(0, docSize).trim() + "...";
 				} else {
-					doc.content = sb.toString().trim();
+					c.doc.content = c.text.trim();
 				}
-				indexDocument(doc, sb.toString());
-				br.close();
-				if (m % 500 == 0) {
-					debug("lap time = " + StopWatch.lap() + ", m = " + m);
+				corpus.setDocContent(c.doc.mid, c.words);
+				if (nread[0] % 500 == 0) {
+					debug("lap time = " + StopWatch.lap() + ", m = " + nread[0]);
 				}
-				m++;
-			} else {
-				debug("invalid file name: " + filename);
+				nread[0]++;
 			}
-		} // for
-		debug("documents with content and metadata: " + m);
-		m = 0;
+		};
+		try {
+			reader.run(Arrays.asList(ls));
+		} finally {
+			reader.shutdown();
+		}
+		debug("documents with content and metadata: " + nread[0]);
+		int m = 0;
 		debug("add documents with only metadata...");
 		// now index the documents that have only metadata
 		for (int mid = 0; mid < mid2doc.size(); mid++) {
@@ -375,6 +396,49 @@ public class SimpleCorpusExtractor {
 		finishIndex();
 	}
 
+	/**
+	 * read and tokenise a content file, called concurrently by the reader
+	 * threads, which only read the metadata maps
+	 * 
+	 * @param docdir
+	 * @param filename
+	 * @return content, whose doc is null if there is no metadata, or null for
+	 *         an invalid file name
+	 * @throws IOException
+	 */
+	protected Content readContent(File docdir, String filename)
+			throws Exception {
+		// W09-3334
+		if (!filename.matches("[A-Z][0-9]+\\-[0-9]+.*\\.txt")) {
+			return null;
+		}
+		Content c = new Content();
+		// get id
+		c.aanid = filename.substring(0, filename.lastIndexOf('.')).trim();
+		c.mid = aanid2mid.get(c.aanid);
+		if (c.mid == null) {
+			return c;
+		}
+		c.doc = mid2doc.get(c.mid);
+		if (c.doc == null) {
+			return c;
+		}
+		// read content from corpus file
+		BufferedReader br = new BufferedReader(new FileReader(
+				docdir.getAbsoluteFile() + "/" + filename));
+		String line = null;
+		StringBuffer sb = new StringBuffer();
+		while ((line = br.readLine()) != null) {
+			// line format is (\d+:\d+)\s+(.+); we need only content
+			line = line.replaceAll("^.+\t", "").trim();
+			sb.append(" " + line);
+		}
+		br.close();
+		c.text = sb.toString();
+		c.words = tokenise(c.doc, c.text);
+		return c;
+	}
+
 	// indexing routines
 
 	/**
@@ -394,7 +458,12 @@ public class SimpleCorpusExtractor {
 			br.close();
 		}
 		String lang = Conf.get("indexer.stemming.language");
-		stemmer = new CorpusStemmer(lang != null ? lang : "english");
+		stemmerLanguage = lang != null ? lang : "english";
+		stemmer = new CorpusStemmer(stemmerLanguage);
+		stemmers = new AtomicReferenceArray<CorpusStemmer>(Math.max(1,
+				readThreads > 0 ? Math.min(readThreads, readWindow)
+						: readWindow));
+		stemmers.set(0, stemmer);
 		// allocate map to resolve keys
 		resolver.initMapForKeyType(ICorpusResolver.KTERMS);
 		// allocate space for all documents in corpus
@@ -410,6 +479,18 @@ public class SimpleCorpusExtractor {
 	 */
 	public void indexDocument(AanDocument aandoc, String content)
 			throws Exception {
+		corpus.setDocContent(aandoc.mid, tokenise(aandoc, content));
+	}
+
+	/**
+	 * tokenise the content and title of the document (may be called
+	 * concurrently)
+	 * 
+	 * @param aandoc document with all metadata
+	 * @param content additional content for the document
+	 * @return normalised words
+	 */
+	protected String[] tokenise(AanDocument aandoc, String content) {
 		// TODO: That's somewhat overkill because in readWriteContent we could
 		// just save the file names. However, this is more flexible for other
 		// corpora.
@@ -433,7 +514,7 @@ public class SimpleCorpusExtractor {
 				wordlist.add(word);
 			}
 		}
-		corpus.setDocContent(aandoc.mid, wordlist.toArray(new String[0]));
+		return wordlist.toArray(new String[0]);
 	}
 
 	String[][] termReplacements = new String[][] { { "3dim", "^3d$" },
@@ -477,10 +558,44 @@ public class SimpleCorpusExtractor {
 		// remove punctuation
 		token = token.replaceAll("[^a-z0-9\\-]", "");
 		// perform stemming
-		token = stemmer.stem(token);
+		CorpusStemmer s = borrowStemmer();
+		token = s.stem(token);
+		releaseStemmer(s);
 		return token;
 	}
 
+	/**
+	 * take a stemmer from the pool or create one if the pool is empty
+	 * 
+	 * @return
+	 */
+	protected CorpusStemmer borrowStemmer() {
+		for (int i = 0; i < stemmers.length(); i++) {
+			CorpusStemmer s = stemmers.get(i);
+			if (s != null && stemmers.compareAndSet(i, s, null)) {
+				return s;
+			}
+		}
+		try {
+			return new CorpusStemmer(stemmerLanguage);
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * return a stemmer to the pool, which drops it if full
+	 * 
+	 * @param s
+	 */
+	protected void releaseStemmer(CorpusStemmer s) {
+		for (int i = 0; i < stemmers.length(); i++) {
+			if (stemmers.get(i) == null && stemmers.compareAndSet(i, null, s)) {
+				return;
+			}
+		}
+	}
+
 	/**
 	 * close and optimise lucene index
 	 */
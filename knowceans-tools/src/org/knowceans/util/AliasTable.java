@@ -0,0 +1,167 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.util;
+
+import java.util.Random;
+
+/**
+ * Walker's alias table for sampling from a discrete distribution over K
+ * categories in O(1) per draw after an O(K) build (Vose's construction). All
+ * arrays are allocated with the table, so building and sampling do not
+ * allocate, and a table can be rebuilt with new weights any number of times.
+ * <p>
+ * The table keeps the weights it was built from, so getWeight(k) gives the
+ * (unnormalised) proposal mass of k, which Metropolis-Hastings samplers need
+ * to correct for stale tables. Tables are not thread-safe while being built;
+ * sampling only reads them.
+ *
+ * @author heinrich
+ */
+public class AliasTable {
+
+	public static void main(String[] args) {
+		double[] w = { 1, 2, 3, 4, 0, 10 };
+		AliasTable at = new AliasTable(w.length);
+		at.build(w);
+		Random rand = new CokusRandom();
+		int[] freqs = new int[w.length];
+		int n = 1000000;
+		for (int i = 0; i < n; i++) {
+			freqs[at.sample(rand)]++;
+		}
+		for (int k = 0; k < w.length; k++) {
+			System.out.println(k + " " + w[k] / at.getSum() + " "
+					+ (double) freqs[k] / n);
+		}
+	}
+
+	private int K;
+
+	/**
+	 * probability to keep the column k rather than taking its alias
+	 */
+	private double[] prob;
+
+	/**
+	 * alias of each column
+	 */
+	private int[] alias;
+
+	/**
+	 * weights the table was built from
+	 */
+	private double[] weights;
+
+	private double sum;
+
+	/**
+	 * work list of the construction: small columns from the front, large ones
+	 * from the back
+	 */
+	private int[] work;
+
+	/**
+	 * number of draws since the last build
+	 */
+	private int draws;
+
+	/**
+	 * create an empty table for up to K categories
+	 *
+	 * @param K
+	 */
+	public AliasTable(int K) {
+		this.K = K;
+		prob = new double[K];
+		alias = new int[K];
+		weights = new double[K];
+		work = new int[K];
+	}
+
+	/**
+	 * build the table from the unnormalised weights w[0..K-1]
+	 *
+	 * @param w non-negative weights, at least one positive (copied)
+	 */
+	public void build(double[] w) {
+		System.arraycopy(w, 0, weights, 0, K);
+		sum = 0;
+		for (int k = 0; k < K; k++) {
+			sum += weights[k];
+		}
+		// small columns in work[0, ns), large ones in work[nl, K)
+		int ns = 0, nl = K;
+		double scale = K / sum;
+		for (int k = 0; k < K; k++) {
+			prob[k] = weights[k] * scale;
+			alias[k] = k;
+			if (prob[k] < 1) {
+				work[ns++] = k;
+			} else {
+				work[--nl] = k;
+			}
+		}
+		while (ns > 0 && nl < K) {
+			int s = work[--ns];
+			int l = work[nl];
+			alias[s] = l;
+			prob[l] -= 1 - prob[s];
+			if (prob[l] < 1) {
+				nl++;
+				work[ns++] = l;
+			}
+		}
+		// remaining columns are full up to rounding
+		while (nl < K) {
+			prob[work[nl++]] = 1;
+		}
+		while (ns > 0) {
+			prob[work[--ns]] = 1;
+		}
+		draws = 0;
+	}
+
+	/**
+	 * draw a category
+	 *
+	 * @param rand
+	 * @return k with probability getWeight(k) / getSum()
+	 */
+	public int sample(Random rand) {
+		draws++;
+		double u = rand.nextDouble() * K;
+		int k = (int) u;
+		if (k == K) {
+			k--;
+		}
+		return u - k < prob[k] ? k : alias[k];
+	}
+
+	/**
+	 * @param k
+	 * @return weight of k when the table was built
+	 */
+	public double getWeight(int k) {
+		return weights[k];
+	}
+
+	/**
+	 * @return sum of the weights when the table was built
+	 */
+	public double getSum() {
+		return sum;
+	}
+
+	/**
+	 * @return number of draws since the last build, which samplers can use to
+	 *         amortise rebuilds of stale tables
+	 */
+	public int getDraws() {
+		return draws;
+	}
+
+	public int size() {
+		return K;
+	}
+}
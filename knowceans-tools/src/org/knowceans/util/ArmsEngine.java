@@ -0,0 +1,322 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * ArmsEngine is an adaptive rejection Metropolis sampler for repeated draws
+ * from changing univariate densities, such as hyperparameters resampled in
+ * every Gibbs sweep. The density is a LogDensity instead of a parameter
+ * object, and all buffers of ArmSampler and of the call are allocated once,
+ * so a draw does not allocate.
+ * <p>
+ * The envelope of a draw can be warm-started from abscissae evaluated in the
+ * previous draw for the same target: they concentrate where the density had
+ * its mass, so the initial envelope is tighter than from a grid over the
+ * bounds and fewer rejections, i.e., evaluations, follow. The starting values
+ * are kept by the engine or, for many targets, by the caller (one array per
+ * target, see sample(..., start)). A Batch samples many independent targets in
+ * parallel with one engine per thread.
+ * <p>
+ * The warm start is restricted to log-concave targets (dometrop = false):
+ * with the Metropolis step, ARMS leaves the target invariant only if the
+ * initial abscissae are independent of the current state, while those of the
+ * previous draw depend on it. Draws with dometrop = true therefore always
+ * start from the grid over the bounds and leave the starting values untouched.
+ * <p>
+ * An engine is not thread-safe.
+ *
+ * @author heinrich
+ */
+public class ArmsEngine extends ArmSampler {
+
+    public static void main(String[] args) throws Exception {
+        // posterior of a Gamma shape a, slowly drifting over the sweeps
+        // (log-concave for a >= 1, so no Metropolis step and warm starts)
+        ArmsEngine cold = new ArmsEngine(8, 100);
+        ArmsEngine warm = new ArmsEngine(8, 100);
+        cold.setWarmStart(false);
+        double xc = 1, xw = 1;
+        for (int i = 0; i < 10000; i++) {
+            final double a = 2 + Math.sin(i * 0.001);
+            LogDensity f = new LogDensity() {
+                public double logpdf(double x) {
+                    return (a - 1) * Math.log(x) - x;
+                }
+            };
+            xc = cold.sample(f, 0, 100, xc, false);
+            xw = warm.sample(f, 0, 100, xw, false);
+        }
+        System.out.println("evaluations per draw cold "
+            + (double) cold.getTotalEvaluations() / cold.getDraws()
+            + " warm " + (double) warm.getTotalEvaluations() / warm.getDraws());
+    }
+
+    /**
+     * Batch samples many independent targets in parallel, with one engine and
+     * random stream per thread and a warm start per target (only without
+     * Metropolis step, see ArmsEngine).
+     */
+    public static class Batch {
+
+        private ArmsEngine[] engines;
+
+        private ParallelFor pf;
+
+        private int ninit;
+
+        /** starting values per target */
+        private double[][] starts;
+
+        /* arguments of the current call */
+        private LogDensity[] f;
+
+        private double[] xl, xr, x;
+
+        private boolean dometrop;
+
+        private Exception error;
+
+        /**
+         * @param ninit number of starting values
+         * @param npoint maximum number of envelope points
+         * @param nthreads
+         * @param seed for the random streams of the threads
+         */
+        public Batch(int ninit, int npoint, int nthreads, long seed) {
+            this.ninit = ninit;
+            engines = new ArmsEngine[nthreads];
+            Random[] rands = Xoshiro256.streams(seed, nthreads);
+            for (int i = 0; i < nthreads; i++) {
+                engines[i] = new ArmsEngine(ninit, npoint);
+                engines[i].setRandom(rands[i]);
+            }
+            pf = new ParallelFor(nthreads) {
+                @Override
+                public void process(int i, int thread) {
+                    try {
+                        x[i] = engines[thread].sample(f[i], xl[i], xr[i],
+                            x[i], dometrop, starts[i]);
+                    } catch (Exception e) {
+                        error = e;
+                        stop();
+                    }
+                }
+            };
+        }
+
+        /**
+         * draw one sample for each target
+         *
+         * @param f log densities of the targets
+         * @param xl left bounds
+         * @param xr right bounds
+         * @param x [in] previous values (used with Metropolis) [out] samples
+         * @param dometrop whether a Metropolis step is required (disables the
+         *        warm start)
+         * @throws Exception
+         */
+        public void sample(LogDensity[] f, double[] xl, double[] xr,
+            double[] x, boolean dometrop) throws Exception {
+            if (starts == null || starts.length != f.length) {
+                starts = new double[f.length][ninit];
+                for (double[] s : starts) {
+                    Arrays.fill(s, Double.NaN);
+                }
+            }
+            this.f = f;
+            this.xl = xl;
+            this.xr = xr;
+            this.x = x;
+            this.dometrop = dometrop;
+            error = null;
+            pf.loop(f.length);
+            this.f = null;
+            if (error != null) {
+                throw error;
+            }
+        }
+
+        /**
+         * forget the starting values of the targets
+         */
+        public void reset() {
+            starts = null;
+        }
+
+        /**
+         * @return log density evaluations of all threads so far
+         */
+        public long getTotalEvaluations() {
+            long n = 0;
+            for (ArmsEngine e : engines) {
+                n += e.getTotalEvaluations();
+            }
+            return n;
+        }
+
+        public void shutdown() {
+            pf.shutdown();
+        }
+    }
+
+    private int ninit;
+
+    private int npoint;
+
+    private boolean warmStart = true;
+
+    private LogDensity density;
+
+    /** starting values for the own target */
+    private double[] start;
+
+    /* reused arguments of ArmSampler.arms() */
+    private double[] xinit;
+
+    private double[] xl = new double[1];
+
+    private double[] xr = new double[1];
+
+    private double[] xprev = new double[1];
+
+    private double[] xsamp = new double[1];
+
+    private double[] convex = new double[] {1.0};
+
+    private int[] neval = new int[1];
+
+    private long totalEvals;
+
+    private long draws;
+
+    /**
+     * engine with 4 starting values and 100 envelope points
+     */
+    public ArmsEngine() {
+        this(4, 100);
+    }
+
+    /**
+     * @param ninit number of starting values (>= 3)
+     * @param npoint maximum number of envelope points (>= 2 ninit + 1)
+     */
+    public ArmsEngine(int ninit, int npoint) {
+        this.ninit = ninit;
+        this.npoint = npoint;
+        xinit = new double[ninit];
+        start = new double[ninit];
+        Arrays.fill(start, Double.NaN);
+    }
+
+    /**
+     * draw from f, warm-started from the previous draw of this engine if
+     * dometrop is false
+     *
+     * @param f log density
+     * @param xl left bound
+     * @param xr right bound
+     * @param xprev previous value of the Markov chain (used with Metropolis)
+     * @param dometrop whether a Metropolis step is required
+     * @return sample
+     * @throws Exception
+     */
+    public double sample(LogDensity f, double xl, double xr, double xprev,
+        boolean dometrop) throws Exception {
+        return sample(f, xl, xr, xprev, dometrop, start);
+    }
+
+    /**
+     * draw from f, warm-started from the abscissae in start, which on exit
+     * hold the abscissae for the next draw of the same target. Unused entries
+     * are NaN; with fewer than 3 usable values (initially all NaN), the
+     * envelope starts from a grid of ninit points between the bounds. With
+     * dometrop, start is neither used nor updated (see class description).
+     *
+     * @param f log density
+     * @param xl left bound
+     * @param xr right bound
+     * @param xprev previous value of the Markov chain (used with Metropolis)
+     * @param dometrop whether a Metropolis step is required
+     * @param start [in/out] starting values, length ninit
+     * @return sample
+     * @throws Exception
+     */
+    public double sample(LogDensity f, double xl, double xr, double xprev,
+        boolean dometrop, double[] start) throws Exception {
+        int n = 0;
+        // the Metropolis step needs state-independent starting values
+        boolean warm = warmStart && !dometrop;
+
+        if (warm) {
+            // usable values: ascending and within the current bounds
+            for (int i = 0; i < ninit && !Double.isNaN(start[i]); i++) {
+                if (start[i] > xl && start[i] < xr
+                    && (n == 0 || start[i] > xinit[n - 1])) {
+                    xinit[n++] = start[i];
+                }
+            }
+        }
+        if (n < 3) {
+            for (n = 0; n < ninit; n++) {
+                xinit[n] = xl + (n + 1.0) * (xr - xl) / (ninit + 1.0);
+            }
+        }
+        density = f;
+        this.xl[DEREF] = xl;
+        this.xr[DEREF] = xr;
+        this.xprev[DEREF] = xprev;
+        arms(null, xinit, n, this.xl, this.xr, convex, npoint, dometrop,
+            this.xprev, xsamp, 1, null, null, 0, neval);
+        density = null;
+        totalEvals += neval[DEREF];
+        draws++;
+
+        if (warm) {
+            n = getAbscissae(start, ninit);
+            for (int i = n; i < ninit; i++) {
+                start[i] = Double.NaN;
+            }
+        }
+        return xsamp[DEREF];
+    }
+
+    @Override
+    public double logpdf(double x, Object params) {
+        return density.logpdf(x);
+    }
+
+    /**
+     * @param warmStart whether to start the envelope from the abscissae of
+     *        the previous draw (default, only for draws without Metropolis
+     *        step) or always from a grid
+     */
+    public void setWarmStart(boolean warmStart) {
+        this.warmStart = warmStart;
+    }
+
+    /**
+     * forget the starting values of the own target
+     */
+    public void reset() {
+        Arrays.fill(start, Double.NaN);
+    }
+
+    /**
+     * @return log density evaluations in the last draw
+     */
+    public int getEvaluations() {
+        return neval[DEREF];
+    }
+
+    public long getTotalEvaluations() {
+        return totalEvals;
+    }
+
+    public long getDraws() {
+        return draws;
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.util;
+
+/**
+ * CountHistogram is the "count of counts" representation of a count matrix
+ * nmk (Minka 2003, Sec. 4; Wallach 2008): for each column k the number of
+ * rows with count n, hist[k][n], and the same for the row totals nm. Sums
+ * over rows of functions of the counts, such as sum_m [digamma(nmk + a) -
+ * digamma(a)], then only depend on the histogram and can be computed in
+ * O(maxcount) per column, independent of the number of rows; with
+ * cumulative histograms even without digamma calls, because digamma(a + n) -
+ * digamma(a) = sum_j=1..n 1 / (a + j - 1).
+ * <p>
+ * A histogram can be built in parallel over blocks of rows (build()), merged
+ * from partial histograms (add(CountHistogram)) or kept up to date while a
+ * sampler changes single counts (update(), updateLength()). Zero counts are
+ * not stored because they contribute nothing to the estimators. Instances
+ * are not thread-safe; threads use their own histograms and merge them.
+ *
+ * @author heinrich
+ */
+public class CountHistogram {
+
+	/**
+	 * hist[k][n] = number of rows with count n in column k (n > 0)
+	 */
+	private int[][] hist;
+
+	/**
+	 * lengths[n] = number of rows with total n (n > 0)
+	 */
+	private int[] lengths;
+
+	/**
+	 * largest count per column and largest row total
+	 */
+	private int[] maxCount;
+
+	private int maxLength;
+
+	/**
+	 * number of rows
+	 */
+	private int M;
+
+	private int K;
+
+	/**
+	 * empty histogram for K columns
+	 *
+	 * @param K
+	 */
+	public CountHistogram(int K) {
+		this.K = K;
+		hist = new int[K][16];
+		lengths = new int[16];
+		maxCount = new int[K];
+	}
+
+	/**
+	 * histogram of the count matrix
+	 *
+	 * @param nmk
+	 *            counts [M][K]
+	 * @param nm
+	 *            row totals [M]
+	 */
+	public CountHistogram(int[][] nmk, int[] nm) {
+		this(nmk[0].length);
+		add(nmk, nm, 0, nmk.length);
+	}
+
+	/**
+	 * build the histogram of a count matrix with nthreads threads, each on a
+	 * block of rows, and merge the partial histograms in block order.
+	 *
+	 * @param nmk
+	 * @param nm
+	 * @param nthreads
+	 * @return
+	 */
+	public static CountHistogram build(final int[][] nmk, final int[] nm,
+			final int nthreads) {
+		final int K = nmk[0].length;
+		final CountHistogram[] parts = new CountHistogram[nthreads];
+		ParallelFor pf = new ParallelFor(nthreads) {
+			@Override
+			public void process(int block, int thread) {
+				CountHistogram h = new CountHistogram(K);
+				h.add(nmk, nm, (int) ((long) nmk.length * block / nthreads),
+						(int) ((long) nmk.length * (block + 1) / nthreads));
+				parts[block] = h;
+			}
+		};
+		pf.loop(nthreads);
+		pf.shutdown();
+		for (int i = 1; i < nthreads; i++) {
+			parts[0].add(parts[i]);
+		}
+		return parts[0];
+	}
+
+	/**
+	 * add rows [start, end) of the count matrix
+	 */
+	public void add(int[][] nmk, int[] nm, int start, int end) {
+		for (int m = start; m < end; m++) {
+			addRow(nmk[m], nm[m]);
+		}
+	}
+
+	/**
+	 * add a row of counts
+	 *
+	 * @param nk
+	 *            counts [K]
+	 * @param n
+	 *            total of the row
+	 */
+	public void addRow(int[] nk, int n) {
+		for (int k = 0; k < K; k++) {
+			inc(k, nk[k], 1);
+		}
+		incLength(n, 1);
+		M++;
+	}
+
+	/**
+	 * merge another histogram into this one
+	 *
+	 * @param other
+	 */
+	public void add(CountHistogram other) {
+		for (int k = 0; k < K; k++) {
+			for (int n = 1; n <= other.maxCount[k]; n++) {
+				inc(k, n, other.hist[k][n]);
+			}
+		}
+		for (int n = 1; n <= other.maxLength; n++) {
+			incLength(n, other.lengths[n]);
+		}
+		M += other.M;
+	}
+
+	/**
+	 * a count of column k in some row changed from oldCount to newCount
+	 *
+	 * @param k
+	 * @param oldCount
+	 * @param newCount
+	 */
+	public void update(int k, int oldCount, int newCount) {
+		inc(k, oldCount, -1);
+		inc(k, newCount, 1);
+	}
+
+	/**
+	 * the total of some row changed from oldLength to newLength
+	 *
+	 * @param oldLength
+	 * @param newLength
+	 */
+	public void updateLength(int oldLength, int newLength) {
+		incLength(oldLength, -1);
+		incLength(newLength, 1);
+	}
+
+	private void inc(int k, int n, int d) {
+		if (n == 0 || d == 0) {
+			return;
+		}
+		if (n >= hist[k].length) {
+			hist[k] = grow(hist[k], n);
+		}
+		hist[k][n] += d;
+		if (n > maxCount[k]) {
+			maxCount[k] = n;
+		}
+	}
+
+	private void incLength(int n, int d) {
+		if (n == 0 || d == 0) {
+			return;
+		}
+		if (n >= lengths.length) {
+			lengths = grow(lengths, n);
+		}
+		lengths[n] += d;
+		if (n > maxLength) {
+			maxLength = n;
+		}
+	}
+
+	private static int[] grow(int[] a, int n) {
+		int[] b = new int[Math.max(n + 1, 2 * a.length)];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+
+	/**
+	 * @param k
+	 * @return number of rows with count >= j in column k, at index j, [0,
+	 *         maxcount]
+	 */
+	public int[] atLeast(int k) {
+		return atLeast(hist[k], maxCount[k]);
+	}
+
+	/**
+	 * @return number of rows with total >= j, at index j
+	 */
+	public int[] lengthsAtLeast() {
+		return atLeast(lengths, maxLength);
+	}
+
+	/**
+	 * @return number of rows with count >= j in any column, summed over the
+	 *         columns, at index j (for a symmetric parameter)
+	 */
+	public int[] pooledAtLeast() {
+		int max = 0;
+		for (int k = 0; k < K; k++) {
+			max = Math.max(max, maxCount[k]);
+		}
+		int[] pooled = new int[max + 1];
+		for (int k = 0; k < K; k++) {
+			for (int n = 1; n <= maxCount[k]; n++) {
+				pooled[n] += hist[k][n];
+			}
+		}
+		return atLeast(pooled, max);
+	}
+
+	private static int[] atLeast(int[] h, int max) {
+		int[] c = new int[max + 1];
+		int sum = 0;
+		for (int n = max; n > 0; n--) {
+			sum += h[n];
+			c[n] = sum;
+		}
+		return c;
+	}
+
+	/**
+	 * sum over rows of digamma(nmk + a) - digamma(a), given the cumulative
+	 * histogram of the column
+	 *
+	 * @param atLeast
+	 *            see atLeast()
+	 * @param a
+	 * @return
+	 */
+	public static double sumDigammaDiff(int[] atLeast, double a) {
+		double sum = 0;
+		for (int j = 1; j < atLeast.length; j++) {
+			sum += atLeast[j] / (a + j - 1);
+		}
+		return sum;
+	}
+
+	/**
+	 * @param k
+	 * @param n
+	 * @return number of rows with count n in column k
+	 */
+	public int get(int k, int n) {
+		return n <= maxCount[k] ? hist[k][n] : 0;
+	}
+
+	/**
+	 * @param n
+	 * @return number of rows with total n
+	 */
+	public int getLength(int n) {
+		return n <= maxLength ? lengths[n] : 0;
+	}
+
+	public int getMaxCount(int k) {
+		return maxCount[k];
+	}
+
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	public int getNumRows() {
+		return M;
+	}
+
+	public int getNumColumns() {
+		return K;
+	}
+}
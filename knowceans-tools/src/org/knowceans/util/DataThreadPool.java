@@ -1,9 +1,13 @@
 package org.knowceans.util;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * DataThreadPool is a thread queue that keeps data that can be associated with
@@ -11,31 +15,92 @@ import java.util.LinkedList;
  * runnables (tasks) that implement the DataTask interface. <br/>
  * To use this, allocate an array of the data required in the workers,
  * instantiate the pool and add tasks which are executed from an internal queue.
- * Using the notifyCompletion() method allows the caller to wait for completion
- * of all tasks in the queue.
- * 
+ * The awaitCompletion() method allows the caller to wait for completion of all
+ * tasks added so far.
+ * <p>
+ * The queue is a bounded lock-free ring buffer for multiple producers and
+ * consumers (after D. Vyukov): each slot has a sequence number that tells
+ * producers and workers whether it is free or filled for their position, and
+ * positions are claimed by compare-and-set on the head and tail counters.
+ * Producers block (yield) while the queue is full. add(Collection) claims the
+ * slots of a batch with one compare-and-set. Workers spin shortly on an empty
+ * queue and then park until a producer wakes them, and the completion latch
+ * counts the tasks that have been added but not finished.
+ *
  * @author gregor
  */
 public class DataThreadPool implements Serializable {
     private static final long serialVersionUID = 8039512463872181728L;
+    /**
+     * default queue capacity
+     */
+    public static final int CAPACITY = 1 << 16;
+    /**
+     * polls of an empty queue before a worker parks
+     */
+    private static final int SPINS = 64;
     public int nThreads;
-    private int active = 0;
-    private boolean stopping = false;
+    private volatile boolean stopping = false;
     private final WorkerThread[] threads;
-    private LinkedList<DataTask> queue;
     private Object[] data;
     private Object completionMonitor;
 
+    /**
+     * ring buffer of size capacity = mask + 1
+     */
+    private final DataTask[] tasks;
+    /**
+     * sequence of each slot: pos if free for the producer of position pos,
+     * pos + 1 if filled for the worker of position pos
+     */
+    private final AtomicLongArray sequence;
+    private final int capacity;
+    private final int mask;
+    /**
+     * next position to take and to fill
+     */
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * tasks added and not finished
+     */
+    private final AtomicLong pending = new AtomicLong();
+    /**
+     * parked workers, and the flag of each
+     */
+    private final AtomicInteger idle = new AtomicInteger();
+    private final AtomicIntegerArray parked;
+    private final Object completion = new Object();
+
     /**
      * create a thread pool of size nThreads which are assigned data (an array
      * of nThreads objects)
-     * 
+     *
      * @param nThreads
      * @param data may be null
      */
     public DataThreadPool(int nThreads, Object[] data) {
+        this(nThreads, data, CAPACITY);
+    }
+
+    /**
+     * create a thread pool with a queue of the given capacity
+     *
+     * @param nThreads
+     * @param data may be null
+     * @param capacity maximum number of waiting tasks, rounded up to a power
+     *        of 2
+     */
+    public DataThreadPool(int nThreads, Object[] data, int capacity) {
         this.nThreads = nThreads;
-        queue = new LinkedList<DataTask>();
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        mask = this.capacity - 1;
+        tasks = new DataTask[this.capacity];
+        sequence = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequence.set(i, i);
+        }
+        parked = new AtomicIntegerArray(nThreads);
         threads = new WorkerThread[nThreads];
         this.data = data;
         start();
@@ -43,7 +108,7 @@ public class DataThreadPool implements Serializable {
 
     /**
      * same as other constructor, with an initial
-     * 
+     *
      * @param nThreads
      * @param data
      * @param queue
@@ -51,7 +116,7 @@ public class DataThreadPool implements Serializable {
     public DataThreadPool(int nThreads, Object[] data,
         Collection<DataTask> queue) {
         this(nThreads, data);
-        add(new ArrayList<DataTask>());
+        add(queue);
     }
 
     /**
@@ -65,31 +130,61 @@ public class DataThreadPool implements Serializable {
     }
 
     public void add(DataTask task) {
-        synchronized (queue) {
-            queue.addLast(task);
-            queue.notify();
-        }
+        pending.incrementAndGet();
+        put(reserve(1), task);
+        wake(1);
     }
 
     public void add(Collection< ? extends DataTask> tasks) {
-        // add the jobs atomically to prevent active count 
-        // to become 0 (fast tasks, long queue) and
-        // and thus the queue to exit prematurely
-        synchronized (queue) {
-            for (DataTask r : tasks) {
-                queue.addLast(r);
-                queue.notify();
+        // count the whole batch before the first task can complete, which
+        // prevents the completion latch from opening prematurely (fast tasks,
+        // long queue)
+        int n = tasks.size();
+        pending.addAndGet(n);
+        Iterator< ? extends DataTask> it = tasks.iterator();
+        while (n > 0) {
+            int k = Math.min(n, capacity);
+            long pos = reserve(k);
+            for (int i = 0; i < k; i++) {
+                put(pos + i, it.next());
             }
+            wake(k);
+            n -= k;
         }
     }
 
+    /**
+     * @return number of tasks currently running (approximate)
+     */
     public int getActive() {
-        return active;
+        return (int) Math.max(0, pending.get() - size());
+    }
+
+    /**
+     * @return number of tasks waiting in the queue (approximate)
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    /**
+     * wait until all tasks added so far have completed
+     *
+     * @throws InterruptedException
+     */
+    public void awaitCompletion() throws InterruptedException {
+        synchronized (completion) {
+            while (pending.get() > 0) {
+                completion.wait();
+            }
+        }
     }
 
     /**
      * called this before monitor.wait() to wait for completion of all tasks in
-     * the pool's queue.
+     * the pool's queue. The monitor is notified whenever the pool runs empty,
+     * so the caller should check getActive() and size() in the wait loop, or
+     * use awaitCompletion() instead.
      */
     public void notifyCompletion(Object monitor) {
         completionMonitor = monitor;
@@ -100,20 +195,108 @@ public class DataThreadPool implements Serializable {
      */
     public void finish() {
         this.stopping = true;
+        for (int i = 0; i < nThreads; i++) {
+            LockSupport.unpark(threads[i]);
+        }
     }
 
     /**
      * whether this queue is stopping
-     * 
+     *
      * @return
      */
     public boolean isStopping() {
         return stopping;
     }
 
+    /**
+     * claim k consecutive positions, yielding while the queue is full
+     *
+     * @param k
+     * @return first position
+     */
+    private long reserve(int k) {
+        while (true) {
+            long t = tail.get();
+            if (t + k - head.get() <= capacity) {
+                if (tail.compareAndSet(t, t + k)) {
+                    return t;
+                }
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * fill a claimed position as soon as the worker of the previous round has
+     * released the slot
+     *
+     * @param pos
+     * @param task
+     */
+    private void put(long pos, DataTask task) {
+        int i = (int) (pos & mask);
+        while (sequence.get(i) != pos) {
+            Thread.yield();
+        }
+        tasks[i] = task;
+        sequence.set(i, pos + 1);
+    }
+
+    /**
+     * take the next task
+     *
+     * @return task or null if the queue is empty (or the next task not yet
+     *         filled in)
+     */
+    private DataTask poll() {
+        while (true) {
+            long h = head.get();
+            int i = (int) (h & mask);
+            long s = sequence.get(i);
+            if (s == h + 1) {
+                if (head.compareAndSet(h, h + 1)) {
+                    DataTask task = tasks[i];
+                    tasks[i] = null;
+                    sequence.set(i, h + capacity);
+                    return task;
+                }
+            } else if (s < h + 1) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * unpark up to k parked workers
+     *
+     * @param k
+     */
+    private void wake(int k) {
+        for (int i = 0; i < nThreads && k > 0 && idle.get() > 0; i++) {
+            if (parked.get(i) == 1 && parked.compareAndSet(i, 1, 0)) {
+                LockSupport.unpark(threads[i]);
+                k--;
+            }
+        }
+    }
+
+    private void complete() {
+        synchronized (completion) {
+            completion.notifyAll();
+        }
+        Object monitor = completionMonitor;
+        if (monitor != null) {
+            synchronized (monitor) {
+                monitor.notifyAll();
+            }
+        }
+    }
+
     /**
      * WorkerThread is a thread that runs data runnables.
-     * 
+     *
      * @author gregor
      */
     private class WorkerThread extends Thread implements Serializable {
@@ -128,31 +311,37 @@ public class DataThreadPool implements Serializable {
             DataTask task;
 
             while (!isStopping()) {
-                synchronized (queue) {
-                    while (queue.isEmpty()) {
-                        try {
-                            queue.wait();
-                        } catch (InterruptedException e) {
-                            // ignore
-                        }
+                task = poll();
+                for (int i = 0; task == null && i < SPINS; i++) {
+                    Thread.yield();
+                    task = poll();
+                }
+                if (task == null) {
+                    // announce before the last check so a producer that
+                    // adds a task after it sees this worker as parked
+                    parked.set(channel, 1);
+                    idle.incrementAndGet();
+                    task = poll();
+                    if (task == null && !isStopping()) {
+                        LockSupport.park(this);
+                    }
+                    parked.set(channel, 0);
+                    idle.decrementAndGet();
+                    if (task == null) {
+                        continue;
                     }
-                    // get next task
-                    task = queue.removeFirst();
-                    // assign data
-                    task.assignData(data[channel]);
-                    active++;
                 }
+                // assign data
+                task.assignData(data != null ? data[channel] : null);
                 try {
                     task.run();
                 } catch (RuntimeException e) {
                     e.printStackTrace();
-                }
-                synchronized (queue) {
-                    active--;
-                }
-                if (completionMonitor != null && active == 0 && queue.isEmpty()) {
-                    synchronized (completionMonitor) {
-                        completionMonitor.notify();
+                } finally {
+                    // also if an Error ends the worker, so awaitCompletion()
+                    // doesn't block forever
+                    if (pending.decrementAndGet() == 0) {
+                        complete();
                     }
                 }
             }
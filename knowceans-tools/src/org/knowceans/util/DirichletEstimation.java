@@ -122,7 +122,23 @@ public class DirichletEstimation {
 	 */
 	public static int estimateAlphaLoo(double[] alpha, int[][] nmk) {
 		int[] nm = new int[nmk.length];
-		// int[] nk = new int[alpha.length];
+		// calculate sum
+		for (int m = 0; m < nm.length; m++) {
+			nm[m] = Vectors.sum(nmk[m]);
+		}
+		return estimateAlphaLoo(alpha, new CountHistogram(nmk, nm));
+	}
+
+	/**
+	 * Polya estimation using the fixed point iteration of the leave-one-out
+	 * likelihood, after Minka 2003, on the histogram of the counts. An
+	 * iteration costs O(K maxcount) instead of O(K M).
+	 * 
+	 * @param alpha [in/out] Dirichlet parameter with element for each k
+	 * @param hist count histogram of the observations
+	 * @return number of iterations
+	 */
+	public static int estimateAlphaLoo(double[] alpha, CountHistogram hist) {
 		double limdist = 0.000000001;
 		int iter = 20000;
 		double[] alphanew = new double[alpha.length];
@@ -130,33 +146,30 @@ public class DirichletEstimation {
 		double diffalpha;
 		double sumalpha;
 
-		// calculate sum
-		for (int m = 0; m < nm.length; m++) {
-			nm[m] = Vectors.sum(nmk[m]);
-		}
 		// Eq. 65: ak_new =
 		// ak sum_m (nmk / (nmk - 1 + ak))
 		// / sum_m (nm / (nm - 1 + sum_k ak))
+		// with the sums over m taken over the counts n in the histogram
 		for (int i = 0; i < iter; i++) {
 			sumalpha = Vectors.sum(alpha);
 			diffalpha = 0;
 			double den = 0;
-			for (int m = 0; m < nm.length; m++) {
-				den += nm[m] / (nm[m] - 1 + sumalpha);
+			for (int n = 1; n <= hist.getMaxLength(); n++) {
+				den += hist.getLength(n) * n / (n - 1 + sumalpha);
 			}
 			for (int k = 0; k < alpha.length; k++) {
 				double num = 0;
-				for (int m = 0; m < nm.length; m++) {
-					num += nmk[m][k] / (nmk[m][k] - 1 + alpha[k]);
+				for (int n = 1; n <= hist.getMaxCount(k); n++) {
+					num += hist.get(k, n) * n / (n - 1 + alpha[k]);
 				}
 				alphanew[k] = alpha[k] * num / den;
 				diffalpha += Math.abs(alpha[k] - alphanew[k]);
 			}
-			// System.out.println(Vectors.print(aa));
+			// write back into the caller's alpha (in/out)
+			System.arraycopy(alphanew, 0, alpha, 0, alpha.length);
 			if (diffalpha < limdist) {
 				return i;
 			}
-			alpha = Vectors.copy(alphanew);
 		}
 		return iter;
 	}
@@ -577,28 +590,37 @@ public class DirichletEstimation {
 	 */
 	public static double estimateAlphaMap(int[][] nmk, int[] nm, double alpha,
 			double a, double b) {
-		int i, m, k, iter = 200;
+		return estimateAlphaMap(new CountHistogram(nmk, nm), alpha, a, b);
+	}
+
+	/**
+	 * fixpoint iteration on alpha using counts as input and estimating by Polya
+	 * distribution directly. Eq. 55 in Minka (2003), with the digamma
+	 * differences summed over the count histogram, so an iteration costs
+	 * O(maxcount) instead of O(M K) digamma calls.
+	 * 
+	 * @param hist count histogram (documents in rows, topics in columns)
+	 * @param alpha
+	 * @param a
+	 * @param b
+	 */
+	public static double estimateAlphaMap(CountHistogram hist, double alpha,
+			double a, double b) {
+		int i, iter = 200;
 		double summk, summ;
-		int M = nmk.length;
-		int K = nmk[0].length;
+		int K = hist.getNumColumns();
 		double alpha0 = 0;
 		double prec = 1e-5;
+		int[] pooled = hist.pooledAtLeast();
+		int[] lengths = hist.lengthsAtLeast();
 
 		// alpha = ( a - 1 + alpha * [sum_m sum_k digamma(alpha + mnk) -
 		// digamma(alpha)] ) /
 		// ( b + K * [sum_m digamma(K * alpha + nm) - digamma(K * alpha)] )
 
 		for (i = 0; i < iter; i++) {
-			summk = 0;
-			summ = 0;
-			for (m = 0; m < M; m++) {
-				summ += digamma(K * alpha + nm[m]);
-				for (k = 0; k < K; k++) {
-					summk += digamma(alpha + nmk[m][k]);
-				}
-			}
-			summ -= M * digamma(K * alpha);
-			summk -= M * K * digamma(alpha);
+			summk = CountHistogram.sumDigammaDiff(pooled, alpha);
+			summ = CountHistogram.sumDigammaDiff(lengths, K * alpha);
 			alpha = (a - 1 + alpha * summk) / (b + K * summ);
 			// System.out.println(alpha);
 			// System.out.println(Math.abs(alpha - alpha0));
@@ -769,16 +791,36 @@ public class DirichletEstimation {
 	 */
 	public static double[] estimateAlphaMap(int[][] nmk, int[] nm,
 			double[] alpha, double a, double b) {
+		return estimateAlphaMap(new CountHistogram(nmk, nm), alpha, a, b);
+	}
+
+	/**
+	 * fixpoint iteration on alpha using counts as input and estimating by Polya
+	 * distribution directly. Eq. 55 in Minka (2003), with the digamma
+	 * differences summed over the count histogram, so an iteration costs
+	 * O(K maxcount) instead of O(M K) digamma calls.
+	 * 
+	 * @param hist count histogram (documents in rows, topics in columns)
+	 * @param alpha [in/out]
+	 * @param a
+	 * @param b
+	 */
+	public static double[] estimateAlphaMap(CountHistogram hist,
+			double[] alpha, double a, double b) {
 
 		double[] alphanew;
 		double sumalpha, summk, summ;
-		int i, m, M, k, K, iter = 200;
+		int i, k, K, iter = 200;
 		double prec = 1e-5;
 
-		M = nmk.length;
 		K = alpha.length;
 
 		alphanew = new double[K];
+		int[][] counts = new int[K][];
+		for (k = 0; k < K; k++) {
+			counts[k] = hist.atLeast(k);
+		}
+		int[] lengths = hist.lengthsAtLeast();
 
 		// alpha_k = alpha_k * ( [sum_m digamma(nmk + alpha_k) -
 		// digamma(alpha_k)] ) /
@@ -786,15 +828,9 @@ public class DirichletEstimation {
 
 		for (i = 0; i < iter; i++) {
 			sumalpha = Vectors.sum(alpha);
+			summ = CountHistogram.sumDigammaDiff(lengths, sumalpha);
 			for (k = 0; k < K; k++) {
-				summk = 0;
-				summ = 0;
-				for (m = 0; m < M; m++) {
-					summk += digamma(nmk[m][k] + alpha[k]);
-					summ += digamma(nm[m] + sumalpha);
-				}
-				summk -= M * digamma(alpha[k]);
-				summ -= M * digamma(sumalpha);
+				summk = CountHistogram.sumDigammaDiff(counts[k], alpha[k]);
 				// MAP version
 				alphanew[k] = alpha[k] * (a + summk) / (b / K + summ);
 				// ML version
@@ -132,6 +132,16 @@ public abstract class FastMultinomial {
      */
     private Random rand;
 
+    /**
+     * buffers of sampleIdx() (weights [I], cumulative masses [K], remaining
+     * norms [I]), allocated once per instance
+     */
+    private double[] weights;
+
+    private double[] pcum;
+
+    private double[] remainNorms;
+
     /**
      * sorting index into abc to the norm
      */
@@ -150,6 +160,18 @@ public abstract class FastMultinomial {
         this.rand = rand;
         this.I = I;
         this.K = K;
+        weights = new double[I];
+        pcum = new double[K];
+        remainNorms = new double[I];
+    }
+
+    /**
+     * set the cube norms of the factors used by sampleIdx()
+     * 
+     * @param pownorm [I], not copied
+     */
+    public void setNorms(double[] pownorm) {
+        this.pownorm = pownorm;
     }
 
     /**
@@ -168,13 +190,12 @@ public abstract class FastMultinomial {
      *         of abc
      */
     public int sampleIdx() {
-        double[] weights = new double[I];
         int korig;
         double Zlprev;
         double Zl = Double.POSITIVE_INFINITY;
-        double[] pcum = new double[K];
-        // see static version for implementation info
-        double[] remainNorms = Vectors.copy(pownorm);
+        // see static version for implementation info; the buffers are reused
+        // between draws, which makes an instance single-threaded
+        System.arraycopy(pownorm, 0, remainNorms, 0, I);
         double u = rand.nextDouble();
         for (int l = 0, lprev = -1; l < K; l++, lprev++) {
             pcum[l] = l == 0 ? 0 : pcum[lprev];
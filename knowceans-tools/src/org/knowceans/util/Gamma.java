@@ -279,6 +279,11 @@ public class Gamma {
 	private static final double C_LIMIT = 49;
 	/** S limit */
 	private static final double S_LIMIT = 1e-5;
+	/**
+	 * arguments are shifted up to this value before the asymptotic series of
+	 * digamma and trigamma are used
+	 */
+	private static final double SHIFT_LIMIT = 10;
 
 	/**
 	 * <p>
@@ -317,22 +322,14 @@ public class Gamma {
 	 * @since 2.0
 	 */
 	// from Apache Commons Math
-	public static double digamma(double x) {
-		// double y = digamma(x, 0);
-		// System.out.println(y + " " + x);
-		// return y;
-		// }
-		//
-		// private static double digamma(double x, int level) {
+	public static double digamma1(double x) {
 		if (x >= 0 && x < GAMMA_MINX) {
 			x = GAMMA_MINX;
 		}
 		if (x < DIGAMMA_MINNEGX) {
-			// System.out.println("UNDERFLOW: level " + level + " x " + x);
-			return digamma(DIGAMMA_MINNEGX + GAMMA_MINX);
+			return digamma1(DIGAMMA_MINNEGX + GAMMA_MINX);
 		}
 		if (x > 0 && x <= S_LIMIT) {
-			// System.out.println("S_LIMIT: level " + level + " x " + x);
 			// use method 5 from Bernardo AS103
 			// accurate to O(x)
 			return -GAMMA - 1 / x;
@@ -346,13 +343,111 @@ public class Gamma {
 			// log(x) - --- - ------ + ------- - -------
 			// 2 x 12 x^2 120 x^4 252 x^6
 			return Math.log(x) - 0.5 / x - inv
-					* ((1.0 / 12) + inv * (1.0 / 120 - inv / 252));
+					* ((1.0 / 12) - inv * (1.0 / 120 - inv / 252));
 		}
-		// if (level > 12000) {
-		// System.out.println("recursion level " + level + " x " + x);
-		// }
-		// return digamma(x + 1, level + 1) - 1 / x;
-		return digamma(x + 1) - 1 / x;
+		return digamma1(x + 1) - 1 / x;
+	}
+
+	/**
+	 * Computes the digamma function of x, iteratively: the argument is shifted
+	 * up to SHIFT_LIMIT using digamma(x) = digamma(x + 1) - 1 / x, and the
+	 * asymptotic series is taken to the term O(1/x^12), which is accurate to
+	 * about 1e-15 relative. Small and negative arguments are treated like in
+	 * the recursive reference implementation digamma1(), which this method
+	 * replaces.
+	 * 
+	 * @param x
+	 *            the argument
+	 * @return digamma(x)
+	 */
+	public static double digamma(double x) {
+		if (x >= 0 && x < GAMMA_MINX) {
+			x = GAMMA_MINX;
+		}
+		if (x < DIGAMMA_MINNEGX) {
+			x = DIGAMMA_MINNEGX + GAMMA_MINX;
+		}
+		if (x > 0 && x <= S_LIMIT) {
+			return -GAMMA - 1 / x;
+		}
+		double shift = 0;
+		while (x < SHIFT_LIMIT) {
+			shift += 1 / x;
+			x += 1;
+			// negative arguments pass zero
+			if (x >= 0 && x < GAMMA_MINX) {
+				x = GAMMA_MINX;
+			}
+			if (x > 0 && x <= S_LIMIT) {
+				return -GAMMA - 1 / x - shift;
+			}
+		}
+		double inv = 1 / (x * x);
+		// log(x) - 1/2x - sum_k B_2k / (2k x^2k)
+		return Math.log(x)
+				- 0.5
+				/ x
+				- inv
+				* (1. / 12 - inv
+						* (1. / 120 - inv
+								* (1. / 252 - inv
+										* (1. / 240 - inv
+												* (1. / 132 - inv * 691. / 32760)))))
+				- shift;
+	}
+
+	/**
+	 * digamma of each element of x
+	 * 
+	 * @param x
+	 * @param out
+	 *            [out] digamma(x), may be x
+	 */
+	public static void digamma(double[] x, double[] out) {
+		for (int i = 0; i < x.length; i++) {
+			out[i] = digamma(x[i]);
+		}
+	}
+
+	/**
+	 * lgamma of each element of x
+	 * 
+	 * @param x
+	 * @param out
+	 *            [out] lgamma(x), may be x
+	 */
+	public static void lgamma(double[] x, double[] out) {
+		for (int i = 0; i < x.length; i++) {
+			out[i] = lgamma(x[i]);
+		}
+	}
+
+	/**
+	 * trigamma of each element of x
+	 * 
+	 * @param x
+	 * @param out
+	 *            [out] trigamma(x), may be x
+	 */
+	public static void trigamma(double[] x, double[] out) {
+		for (int i = 0; i < x.length; i++) {
+			out[i] = trigamma(x[i]);
+		}
+	}
+
+	/**
+	 * sum_i digamma(x_i + a)
+	 * 
+	 * @param x
+	 * @param a
+	 * @return
+	 */
+	public static double sumDigamma(double[] x, double a) {
+		double sum = 0;
+		for (int i = 0; i < x.length; i++) {
+			sum += digamma(x[i] + a);
+		}
+		return sum;
 	}
 
 	/**
@@ -411,7 +506,7 @@ public class Gamma {
 	 * @since 2.0
 	 */
 	// from Apache Commons Math
-	public static double trigamma(double x) {
+	public static double trigamma1(double x) {
 		if (x > 0 && x <= S_LIMIT) {
 			return 1 / (x * x);
 		}
@@ -426,7 +521,45 @@ public class Gamma {
 					* (1.0 / 6 - inv * (1.0 / 30 + inv / 42));
 		}
 
-		return trigamma(x + 1) + 1 / (x * x);
+		return trigamma1(x + 1) + 1 / (x * x);
+	}
+
+	/**
+	 * Computes the trigamma function of x iteratively, shifting the argument
+	 * up to SHIFT_LIMIT and taking the asymptotic series to O(1/x^15). This
+	 * replaces the recursive reference implementation trigamma1().
+	 * 
+	 * @param x
+	 *            the argument
+	 * @return trigamma(x)
+	 */
+	public static double trigamma(double x) {
+		if (x > 0 && x <= S_LIMIT) {
+			return 1 / (x * x);
+		}
+		double shift = 0;
+		while (x < SHIFT_LIMIT) {
+			shift += 1 / (x * x);
+			x += 1;
+			if (x > 0 && x <= S_LIMIT) {
+				return 1 / (x * x) + shift;
+			}
+		}
+		double inv = 1 / (x * x);
+		// 1/x + 1/2x^2 + sum_k B_2k / x^(2k+1)
+		return 1
+				/ x
+				+ inv
+				/ 2
+				+ inv
+				/ x
+				* (1. / 6 - inv
+						* (1. / 30 - inv
+								* (1. / 42 - inv
+										* (1. / 30 - inv
+												* (5. / 66 - inv
+														* (691. / 2730 - inv * 7. / 6))))))
+				+ shift;
 	}
 
 	/**
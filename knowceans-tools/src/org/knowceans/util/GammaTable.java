@@ -0,0 +1,111 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.util;
+
+/**
+ * GammaTable caches lgamma(n + a), digamma(n + a) and trigamma(n + a) for a
+ * fixed offset a and integer counts n = 0..size-1, the common arguments in
+ * collapsed samplers and in Dirichlet estimation from counts. Counts beyond
+ * the table are computed with Gamma. A table is immutable after
+ * construction and can be shared between threads.
+ *
+ * @author heinrich
+ */
+public class GammaTable {
+
+	public static void main(String[] args) {
+		GammaTable gt = new GammaTable(0.1, 1000);
+		double err = 0;
+		for (int n = 0; n < 2000; n++) {
+			err = Math.max(err, Math.abs(gt.digamma(n)
+					- Gamma.digamma1(n + 0.1)));
+		}
+		System.out.println("max abs error to recursive digamma " + err);
+	}
+
+	private double a;
+
+	private double[] lgamma;
+
+	private double[] digamma;
+
+	private double[] trigamma;
+
+	/**
+	 * @param a
+	 *            offset (e.g., a Dirichlet hyperparameter)
+	 * @param size
+	 *            number of counts cached
+	 */
+	public GammaTable(double a, int size) {
+		this.a = a;
+		lgamma = new double[size];
+		digamma = new double[size];
+		trigamma = new double[size];
+		for (int n = 0; n < size; n++) {
+			lgamma[n] = Gamma.lgamma(n + a);
+			digamma[n] = Gamma.digamma(n + a);
+			trigamma[n] = Gamma.trigamma(n + a);
+		}
+	}
+
+	/**
+	 * @param n
+	 * @return lgamma(n + a)
+	 */
+	public double lgamma(int n) {
+		return n < lgamma.length ? lgamma[n] : Gamma.lgamma(n + a);
+	}
+
+	/**
+	 * @param n
+	 * @return digamma(n + a)
+	 */
+	public double digamma(int n) {
+		return n < digamma.length ? digamma[n] : Gamma.digamma(n + a);
+	}
+
+	/**
+	 * @param n
+	 * @return trigamma(n + a)
+	 */
+	public double trigamma(int n) {
+		return n < trigamma.length ? trigamma[n] : Gamma.trigamma(n + a);
+	}
+
+	/**
+	 * digamma(n_i + a) for all counts
+	 *
+	 * @param n
+	 * @param out
+	 *            [out]
+	 */
+	public void digamma(int[] n, double[] out) {
+		for (int i = 0; i < n.length; i++) {
+			out[i] = digamma(n[i]);
+		}
+	}
+
+	/**
+	 * sum_i lgamma(n_i + a), e.g., for the likelihood of a count vector
+	 *
+	 * @param n
+	 * @return
+	 */
+	public double sumLgamma(int[] n) {
+		double sum = 0;
+		for (int i = 0; i < n.length; i++) {
+			sum += lgamma(n[i]);
+		}
+		return sum;
+	}
+
+	public double getOffset() {
+		return a;
+	}
+
+	public int size() {
+		return digamma.length;
+	}
+}
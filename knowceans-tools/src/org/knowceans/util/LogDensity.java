@@ -0,0 +1,21 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.util;
+
+/**
+ * LogDensity is an unnormalised univariate log density with its parameters
+ * bound by the implementation, e.g., an anonymous class over the count
+ * statistics of a hyperparameter. It replaces the untyped parameter object of
+ * ArmSampler.logpdf(double, Object) for ArmsEngine.
+ *
+ * @author heinrich
+ */
+public interface LogDensity {
+
+    /**
+     * @param x
+     * @return log density at x up to a constant
+     */
+    public double logpdf(double x);
+}
@@ -0,0 +1,207 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.util;
+
+import java.util.Random;
+
+/**
+ * MT19937 Mersenne Twister (Matsumoto and Nishimura 1998) with the state in
+ * an int[] and the reference seeding routines init_genrand and init_by_array,
+ * so sequences agree with the reference C code. Unlike Cokus, whose state is
+ * static, each instance has its own state and is meant to be used by one
+ * thread; methods are not synchronized.
+ * <p>
+ * Independent streams for parallel workers are seeded with init_by_array
+ * from (seed, stream), so stream i only depends on the seed and i, not on
+ * the order in which threads are started. For streams with guaranteed
+ * non-overlapping sequences, use Xoshiro256.
+ *
+ * @author heinrich
+ */
+public class MersenneTwister extends Random {
+
+    private static final long serialVersionUID = -2409282435893720135L;
+
+    public static void main(String[] args) {
+        // reference output: 1067595299 955945823 477289528 4107218783
+        // 4228976476
+        MersenneTwister mt = new MersenneTwister(new int[] {0x123, 0x234,
+            0x345, 0x456});
+        for (int i = 0; i < 5; i++) {
+            System.out.print(mt.nextUnsignedInt() + " ");
+        }
+        System.out.println();
+    }
+
+    private static final int N = 624;
+
+    private static final int M = 397;
+
+    private static final int MATRIX_A = 0x9908b0df;
+
+    private static final int UPPER_MASK = 0x80000000;
+
+    private static final int LOWER_MASK = 0x7fffffff;
+
+    private int[] mt;
+
+    private int mti;
+
+    /**
+     * seed with the default seed 5489 of the reference code
+     */
+    public MersenneTwister() {
+        this(5489);
+    }
+
+    /**
+     * seed with the lower 32 bits of seed (init_genrand)
+     *
+     * @param seed
+     */
+    public MersenneTwister(long seed) {
+        mt = new int[N];
+        setSeed(seed);
+    }
+
+    /**
+     * seed with an array (init_by_array)
+     *
+     * @param key
+     */
+    public MersenneTwister(int[] key) {
+        mt = new int[N];
+        setSeed(key);
+    }
+
+    /**
+     * seed stream i of a family of generators from one seed
+     *
+     * @param seed common seed
+     * @param stream index of the stream
+     */
+    public MersenneTwister(long seed, int stream) {
+        this(new int[] {(int) seed, (int) (seed >>> 32), stream});
+    }
+
+    /**
+     * @param seed common seed
+     * @param n number of streams
+     * @return generators 0..n-1 seeded from (seed, i)
+     */
+    public static MersenneTwister[] streams(long seed, int n) {
+        MersenneTwister[] mts = new MersenneTwister[n];
+        for (int i = 0; i < n; i++) {
+            mts[i] = new MersenneTwister(seed, i);
+        }
+        return mts;
+    }
+
+    /**
+     * init_genrand with the lower 32 bits of the seed
+     */
+    @Override
+    public void setSeed(long seed) {
+        // called by the constructor of Random before the state exists
+        if (mt == null) {
+            return;
+        }
+        mt[0] = (int) seed;
+        for (mti = 1; mti < N; mti++) {
+            mt[mti] = 1812433253 * (mt[mti - 1] ^ (mt[mti - 1] >>> 30)) + mti;
+        }
+    }
+
+    /**
+     * init_by_array
+     *
+     * @param key
+     */
+    public void setSeed(int[] key) {
+        setSeed(19650218);
+        int i = 1, j = 0;
+        for (int k = Math.max(N, key.length); k > 0; k--) {
+            mt[i] = (mt[i] ^ ((mt[i - 1] ^ (mt[i - 1] >>> 30)) * 1664525))
+                + key[j] + j;
+            i++;
+            j++;
+            if (i >= N) {
+                mt[0] = mt[N - 1];
+                i = 1;
+            }
+            if (j >= key.length) {
+                j = 0;
+            }
+        }
+        for (int k = N - 1; k > 0; k--) {
+            mt[i] = (mt[i] ^ ((mt[i - 1] ^ (mt[i - 1] >>> 30)) * 1566083941))
+                - i;
+            i++;
+            if (i >= N) {
+                mt[0] = mt[N - 1];
+                i = 1;
+            }
+        }
+        mt[0] = 0x80000000;
+    }
+
+    /**
+     * regenerate the N words of the state
+     */
+    private void reload() {
+        int kk, y;
+        for (kk = 0; kk < N - M; kk++) {
+            y = (mt[kk] & UPPER_MASK) | (mt[kk + 1] & LOWER_MASK);
+            mt[kk] = mt[kk + M] ^ (y >>> 1) ^ ((y & 1) * MATRIX_A);
+        }
+        for (; kk < N - 1; kk++) {
+            y = (mt[kk] & UPPER_MASK) | (mt[kk + 1] & LOWER_MASK);
+            mt[kk] = mt[kk + (M - N)] ^ (y >>> 1) ^ ((y & 1) * MATRIX_A);
+        }
+        y = (mt[N - 1] & UPPER_MASK) | (mt[0] & LOWER_MASK);
+        mt[N - 1] = mt[M - 1] ^ (y >>> 1) ^ ((y & 1) * MATRIX_A);
+        mti = 0;
+    }
+
+    /**
+     * @return next 32 bits (genrand_int32)
+     */
+    @Override
+    public int nextInt() {
+        if (mti >= N) {
+            reload();
+        }
+        int y = mt[mti++];
+        y ^= (y >>> 11);
+        y ^= (y << 7) & 0x9d2c5680;
+        y ^= (y << 15) & 0xefc60000;
+        return y ^ (y >>> 18);
+    }
+
+    /**
+     * @return next 32 bits as unsigned value
+     */
+    public long nextUnsignedInt() {
+        return nextInt() & 0xffffffffL;
+    }
+
+    @Override
+    protected int next(int bits) {
+        return nextInt() >>> (32 - bits);
+    }
+
+    @Override
+    public long nextLong() {
+        return ((long) nextInt() << 32) + nextInt();
+    }
+
+    /**
+     * @return double in [0,1) with 53 bits (genrand_res53)
+     */
+    @Override
+    public double nextDouble() {
+        int a = nextInt() >>> 5, b = nextInt() >>> 6;
+        return (a * 67108864.0 + b) * (1.0 / 9007199254740992.0);
+    }
+}
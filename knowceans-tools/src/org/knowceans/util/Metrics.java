@@ -0,0 +1,559 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics is a registry of named counters, histograms and timers for
+ * instrumenting hot paths of multi-threaded code with little overhead. A
+ * metric is looked up once by name (e.g., in a static field or the
+ * constructor of a sampler) and then updated without locks: counters and
+ * histograms are striped over several padded cells that threads update with
+ * atomic adds depending on their id, and the stripes are only summed when
+ * read. Histograms have log-linear buckets in the manner of HdrHistogram,
+ * i.e., 32 linear sub-buckets per power of 2, which bounds the relative error
+ * of percentiles by about 3% over the whole range of long values with constant
+ * memory. Timers are histograms of nanosecond durations.
+ * <p>
+ * The registry can be exported as JSON or in the Prometheus text format. The
+ * StopWatch channels record their intervals into timers of the same name.
+ *
+ * @author heinrich
+ */
+public class Metrics {
+
+	public static void main(String[] args) throws Exception {
+		Counter docs = counter("docs");
+		Timer t = timer("sleep");
+		for (int i = 0; i < 20; i++) {
+			long start = t.start();
+			Thread.sleep(i % 5);
+			t.stop(start);
+			docs.increment();
+		}
+		System.out.println(toJson());
+		System.out.println(toPrometheus());
+	}
+
+	/**
+	 * number of stripes, power of 2
+	 */
+	static final int STRIPES;
+
+	/**
+	 * stride between cells of a counter (64 bytes)
+	 */
+	private static final int PAD = 8;
+
+	static {
+		int n = Runtime.getRuntime().availableProcessors();
+		STRIPES = Math.min(16, Integer.highestOneBit(Math.max(1, n) * 2 - 1));
+	}
+
+	/**
+	 * @return stripe of the current thread
+	 */
+	static int stripe() {
+		long id = Thread.currentThread().getId();
+		return (int) ((id * 0x9E3779B97F4A7C15L) >>> 40) & (STRIPES - 1);
+	}
+
+	/**
+	 * Metric is a named measurement.
+	 */
+	public static abstract class Metric {
+
+		protected final String name;
+
+		protected Metric(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * set to zero
+		 */
+		public abstract void reset();
+
+		abstract void writeJson(Writer w) throws IOException;
+
+		abstract void writePrometheus(Writer w) throws IOException;
+	}
+
+	/**
+	 * Counter is a striped sum of longs.
+	 */
+	public static class Counter extends Metric {
+
+		private final AtomicLongArray cells = new AtomicLongArray(STRIPES
+				* PAD);
+
+		Counter(String name) {
+			super(name);
+		}
+
+		public void increment() {
+			cells.getAndIncrement(stripe() * PAD);
+		}
+
+		public void add(long x) {
+			cells.getAndAdd(stripe() * PAD, x);
+		}
+
+		public long get() {
+			long sum = 0;
+			for (int i = 0; i < STRIPES; i++) {
+				sum += cells.get(i * PAD);
+			}
+			return sum;
+		}
+
+		@Override
+		public void reset() {
+			for (int i = 0; i < STRIPES; i++) {
+				cells.set(i * PAD, 0);
+			}
+		}
+
+		@Override
+		void writeJson(Writer w) throws IOException {
+			w.write("{\"type\": \"counter\", \"value\": " + get() + "}");
+		}
+
+		@Override
+		void writePrometheus(Writer w) throws IOException {
+			String n = promName(name) + "_total";
+			w.write("# TYPE " + n + " counter\n" + n + " " + get() + "\n");
+		}
+	}
+
+	/**
+	 * Histogram counts values in log-linear buckets.
+	 */
+	public static class Histogram extends Metric {
+
+		/**
+		 * log2 of the number of sub-buckets per power of 2
+		 */
+		static final int SUB_BITS = 5;
+
+		static final int SUB = 1 << SUB_BITS;
+
+		/**
+		 * linear buckets 0..SUB-1, then SUB per octave 2^SUB_BITS..2^62 (the
+		 * highest of non-negative long values)
+		 */
+		static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+		private final AtomicLongArray counts = new AtomicLongArray(STRIPES
+				* BUCKETS);
+
+		private final Counter sum;
+
+		private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+		Histogram(String name) {
+			super(name);
+			sum = new Counter(name);
+		}
+
+		/**
+		 * @param value non-negative value (negative values count as 0)
+		 */
+		public void record(long value) {
+			if (value < 0) {
+				value = 0;
+			}
+			counts.getAndIncrement(stripe() * BUCKETS + bucket(value));
+			sum.add(value);
+			long m = max.get();
+			while (value > m && !max.compareAndSet(m, value)) {
+				m = max.get();
+			}
+		}
+
+		/**
+		 * @return copy of the merged counts (updates during the copy may be
+		 *         partly included)
+		 */
+		public Snapshot snapshot() {
+			long[] c = new long[BUCKETS];
+			for (int s = 0; s < STRIPES; s++) {
+				for (int i = 0; i < BUCKETS; i++) {
+					c[i] += counts.get(s * BUCKETS + i);
+				}
+			}
+			long m = max.get();
+			return new Snapshot(c, sum.get(), m == Long.MIN_VALUE ? 0 : m);
+		}
+
+		@Override
+		public void reset() {
+			for (int i = 0; i < counts.length(); i++) {
+				counts.set(i, 0);
+			}
+			sum.reset();
+			max.set(Long.MIN_VALUE);
+		}
+
+		/**
+		 * @param value >= 0
+		 * @return bucket index
+		 */
+		static int bucket(long value) {
+			if (value < SUB) {
+				return (int) value;
+			}
+			int e = 63 - Long.numberOfLeadingZeros(value);
+			int m = (int) (value >>> (e - SUB_BITS));
+			// values >= 2^62 are in the top octave, clamped for safety
+			return Math.min((e - SUB_BITS + 1) * SUB + m - SUB, BUCKETS - 1);
+		}
+
+		/**
+		 * @param bucket
+		 * @return lowest value of the bucket
+		 */
+		static long lowest(int bucket) {
+			if (bucket < SUB) {
+				return bucket;
+			}
+			int k = bucket / SUB;
+			return (long) (SUB + bucket % SUB) << (k - 1);
+		}
+
+		/**
+		 * @param bucket
+		 * @return midpoint of the values of the bucket
+		 */
+		static long middle(int bucket) {
+			if (bucket < SUB) {
+				return bucket;
+			}
+			long width = 1L << (bucket / SUB - 1);
+			return lowest(bucket) + (width - 1) / 2;
+		}
+
+		/**
+		 * scale of the values in exports, e.g., 1e-9 to report nanoseconds as
+		 * seconds
+		 */
+		double scale() {
+			return 1;
+		}
+
+		String unit() {
+			return "";
+		}
+
+		@Override
+		void writeJson(Writer w) throws IOException {
+			Snapshot s = snapshot();
+			double f = scale();
+			w.write(String.format(Locale.US, "{\"type\": \"%s\", "
+					+ "\"count\": %d, \"sum%s\": %s, \"mean%s\": %s, "
+					+ "\"p50%s\": %s, \"p90%s\": %s, \"p99%s\": %s, "
+					+ "\"max%s\": %s}", this instanceof Timer ? "timer"
+					: "histogram", s.count(), unit(), num(s.sum() * f), unit(),
+					num(s.mean() * f), unit(), num(s.percentile(.5) * f),
+					unit(), num(s.percentile(.9) * f), unit(),
+					num(s.percentile(.99) * f), unit(), num(s.max() * f)));
+		}
+
+		@Override
+		void writePrometheus(Writer w) throws IOException {
+			Snapshot s = snapshot();
+			double f = scale();
+			String n = promName(name) + unit();
+			w.write("# TYPE " + n + " summary\n");
+			double[] qq = { .5, .9, .99 };
+			for (double q : qq) {
+				w.write(String.format(Locale.US, "%s{quantile=\"%s\"} %s\n", n,
+						num(q), num(s.percentile(q) * f)));
+			}
+			w.write(n + "_sum " + num(s.sum() * f) + "\n");
+			w.write(n + "_count " + s.count() + "\n");
+		}
+	}
+
+	/**
+	 * Snapshot holds the merged counts of a histogram.
+	 */
+	public static class Snapshot {
+
+		private final long[] counts;
+
+		private final long sum;
+
+		private final long max;
+
+		private final long count;
+
+		Snapshot(long[] counts, long sum, long max) {
+			this.counts = counts;
+			this.sum = sum;
+			this.max = max;
+			long n = 0;
+			for (long c : counts) {
+				n += c;
+			}
+			count = n;
+		}
+
+		public long count() {
+			return count;
+		}
+
+		public long sum() {
+			return sum;
+		}
+
+		public long max() {
+			return max;
+		}
+
+		public double mean() {
+			return count > 0 ? sum / (double) count : 0;
+		}
+
+		/**
+		 * @param q quantile in [0, 1]
+		 * @return value of the quantile, up to the bucket resolution
+		 */
+		public long percentile(double q) {
+			if (count == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(q * count));
+			long n = 0;
+			for (int i = 0; i < counts.length; i++) {
+				n += counts[i];
+				if (n >= rank) {
+					return Math.min(Histogram.middle(i), max);
+				}
+			}
+			return max;
+		}
+	}
+
+	/**
+	 * Timer is a histogram of durations in ns, exported in seconds.
+	 */
+	public static class Timer extends Histogram {
+
+		Timer(String name) {
+			super(name);
+		}
+
+		/**
+		 * @return start time for stop()
+		 */
+		public long start() {
+			return System.nanoTime();
+		}
+
+		/**
+		 * record the time since start
+		 *
+		 * @param start value of start()
+		 * @return duration in ns
+		 */
+		public long stop(long start) {
+			long t = System.nanoTime() - start;
+			record(t);
+			return t;
+		}
+
+		@Override
+		double scale() {
+			return 1e-9;
+		}
+
+		@Override
+		String unit() {
+			return "_seconds";
+		}
+	}
+
+	private static final ConcurrentMap<String, Metric> metrics = new ConcurrentHashMap<String, Metric>();
+
+	/**
+	 * @param name
+	 * @return counter registered under the name, created if new
+	 */
+	public static Counter counter(String name) {
+		Metric m = metrics.get(name);
+		if (m == null) {
+			m = register(new Counter(name));
+		}
+		return (Counter) m;
+	}
+
+	/**
+	 * @param name
+	 * @return histogram registered under the name, created if new
+	 */
+	public static Histogram histogram(String name) {
+		Metric m = metrics.get(name);
+		if (m == null) {
+			m = register(new Histogram(name));
+		}
+		return (Histogram) m;
+	}
+
+	/**
+	 * @param name
+	 * @return timer registered under the name, created if new
+	 */
+	public static Timer timer(String name) {
+		Metric m = metrics.get(name);
+		if (m == null) {
+			m = register(new Timer(name));
+		}
+		return (Timer) m;
+	}
+
+	private static Metric register(Metric m) {
+		Metric old = metrics.putIfAbsent(m.name, m);
+		return old != null ? old : m;
+	}
+
+	/**
+	 * @param name
+	 * @return metric or null
+	 */
+	public static Metric get(String name) {
+		return metrics.get(name);
+	}
+
+	/**
+	 * remove the metric from the registry (references held by callers keep
+	 * working but are no longer exported)
+	 *
+	 * @param name
+	 * @return removed metric or null
+	 */
+	public static Metric remove(String name) {
+		return metrics.remove(name);
+	}
+
+	/**
+	 * reset all metrics to zero
+	 */
+	public static void reset() {
+		for (Metric m : metrics.values()) {
+			m.reset();
+		}
+	}
+
+	/**
+	 * @return registered metrics sorted by name
+	 */
+	public static Map<String, Metric> getMetrics() {
+		return new TreeMap<String, Metric>(metrics);
+	}
+
+	/**
+	 * write all metrics as one JSON object with a member per metric
+	 *
+	 * @param w
+	 * @throws IOException
+	 */
+	public static void writeJson(Writer w) throws IOException {
+		w.write("{");
+		int i = 0;
+		for (Metric m : getMetrics().values()) {
+			w.write(i++ > 0 ? ",\n  " : "\n  ");
+			w.write(quote(m.name) + ": ");
+			m.writeJson(w);
+		}
+		w.write("\n}\n");
+	}
+
+	/**
+	 * write all metrics in the Prometheus text exposition format; names are
+	 * reduced to [a-zA-Z0-9_:], timers are summaries in seconds
+	 *
+	 * @param w
+	 * @throws IOException
+	 */
+	public static void writePrometheus(Writer w) throws IOException {
+		for (Metric m : getMetrics().values()) {
+			m.writePrometheus(w);
+		}
+	}
+
+	public static String toJson() {
+		StringWriter w = new StringWriter();
+		try {
+			writeJson(w);
+		} catch (IOException e) {
+			// no i/o on a StringWriter
+		}
+		return w.toString();
+	}
+
+	public static String toPrometheus() {
+		StringWriter w = new StringWriter();
+		try {
+			writePrometheus(w);
+		} catch (IOException e) {
+			// no i/o on a StringWriter
+		}
+		return w.toString();
+	}
+
+	static String promName(String name) {
+		StringBuffer b = new StringBuffer();
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			boolean ok = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z'
+					|| c == '_' || c == ':' || c >= '0' && c <= '9' && i > 0;
+			b.append(ok ? c : '_');
+		}
+		return b.toString();
+	}
+
+	static String num(double x) {
+		if (x == Math.rint(x) && Math.abs(x) < 1e15) {
+			return Long.toString((long) x);
+		}
+		if (Double.isNaN(x) || Double.isInfinite(x)) {
+			return "0";
+		}
+		// 6 significant digits
+		return new BigDecimal(x).round(new MathContext(6)).stripTrailingZeros()
+				.toPlainString();
+	}
+
+	static String quote(String s) {
+		StringBuffer b = new StringBuffer("\"");
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				b.append('\\').append(c);
+			} else if (c < ' ') {
+				b.append(String.format("\\u%04x", (int) c));
+			} else {
+				b.append(c);
+			}
+		}
+		return b.append('"').toString();
+	}
+}
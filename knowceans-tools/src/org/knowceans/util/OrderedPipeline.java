@@ -0,0 +1,159 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.util;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * OrderedPipeline runs a two-stage pipeline over a sequence of sources: the
+ * process() stage (e.g., reading a file, stripping HTML and tokenising) runs
+ * concurrently on a pool of threads with at most window sources in flight,
+ * and the consume() stage runs on the calling thread in the order of the
+ * sources, so a single writer can assign ids deterministically and doesn't
+ * need to synchronise. This suits I/O-latency bound work like reading
+ * document dumps from a network file system, where many outstanding reads
+ * hide the latency.
+ * <p>
+ * With nthreads = 0, the process() stage runs on virtual threads if the
+ * runtime provides them (Java 21+, looked up by reflection so the class still
+ * runs on older runtimes) and on window platform threads otherwise.
+ *
+ * @author heinrich
+ */
+public abstract class OrderedPipeline<S, R> {
+
+    /**
+     * default number of sources in flight
+     */
+    public static final int WINDOW = 64;
+
+    protected final ExecutorService executor;
+
+    protected final int window;
+
+    private final boolean virtual;
+
+    /**
+     * pipeline on virtual threads if available with the default window
+     */
+    public OrderedPipeline() {
+        this(0, WINDOW);
+    }
+
+    /**
+     * @param nthreads threads of the process() stage, 0 for virtual threads
+     *        (if available, otherwise window threads)
+     * @param window maximum number of sources processed but not consumed
+     */
+    public OrderedPipeline(int nthreads, int window) {
+        this.window = Math.max(1, window);
+        ExecutorService ex = nthreads <= 0 ? newVirtualExecutor() : null;
+        virtual = ex != null;
+        if (ex == null) {
+            ex = Executors.newFixedThreadPool(nthreads > 0 ? nthreads
+                : this.window);
+        }
+        executor = ex;
+    }
+
+    /**
+     * process a source, called concurrently
+     *
+     * @param source
+     * @return result for consume()
+     * @throws Exception
+     */
+    public abstract R process(S source) throws Exception;
+
+    /**
+     * consume the result of a source, called on the thread of run() in the
+     * order of the sources
+     *
+     * @param index of the source
+     * @param source
+     * @param result
+     * @throws Exception
+     */
+    public abstract void consume(int index, S source, R result)
+        throws Exception;
+
+    /**
+     * run the pipeline over the sources
+     *
+     * @param sources
+     * @return number of sources consumed
+     * @throws Exception the first exception of process() or consume(), after
+     *         which the remaining sources are not consumed
+     */
+    public int run(Iterable< ? extends S> sources) throws Exception {
+        ArrayDeque<S> pending = new ArrayDeque<S>(window);
+        ArrayDeque<Future<R>> results = new ArrayDeque<Future<R>>(window);
+        Iterator< ? extends S> it = sources.iterator();
+        int index = 0;
+        try {
+            while (true) {
+                while (results.size() < window && it.hasNext()) {
+                    final S source = it.next();
+                    pending.add(source);
+                    results.add(executor.submit(new Callable<R>() {
+                        public R call() throws Exception {
+                            return process(source);
+                        }
+                    }));
+                }
+                if (results.isEmpty()) {
+                    return index;
+                }
+                R result;
+                try {
+                    result = results.poll().get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Exception) {
+                        throw (Exception) cause;
+                    }
+                    throw (Error) cause;
+                }
+                consume(index++, pending.poll(), result);
+            }
+        } finally {
+            for (Future<R> f : results) {
+                f.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * @return whether the process() stage runs on virtual threads
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * shut down the threads after final usage
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return executor with a new virtual thread per task or null if the
+     *         runtime has no virtual threads
+     */
+    public static ExecutorService newVirtualExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod(
+                "newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
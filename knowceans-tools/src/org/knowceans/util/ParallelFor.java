@@ -5,7 +5,9 @@ package org.knowceans.util;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * ParallelFor implements what in OpenMP is called a parallel for loop, i.e., a
@@ -16,11 +18,29 @@ import java.util.concurrent.TimeUnit;
  * iterations currently running. After the last usage of the class, it should be
  * shut down properly using function shutdown() or the hard way using
  * System.exit();
- * 
+ * <p>
+ * Scheduling is by work stealing: the iterations are split into one contiguous
+ * range per thread, each thread claims chunks from the front of its own range
+ * (chunk size shrinking with the remaining range, see setChunk()) and, when
+ * its range is exhausted, steals the back half of the range of another
+ * thread. Ranges are claimed with compare-and-set on one padded atomic per
+ * thread, so fine-grained loops don't contend on a lock, and loop() waits on
+ * a reusable barrier (Phaser) instead of polling. For reductions, each thread
+ * has an accumulator slot that process() adds to via add(thread, value) and
+ * loopSum() sums after the barrier; other per-thread state is kept in arrays
+ * indexed by the thread argument of process(). A loop with a single thread
+ * runs on the calling thread.
+ *
  * @author gregor
  */
 public abstract class ParallelFor {
 
+    /**
+     * stride between the slots of two threads in the padded arrays (64 bytes
+     * of longs / doubles) to avoid false sharing
+     */
+    private static final int PAD = 8;
+
     /**
      * Worker is one pooled thread
      */
@@ -33,19 +53,13 @@ public abstract class ParallelFor {
         }
 
         public void run() {
-            while (!isStopping) {
-                int i = 0;
-                synchronized (ParallelFor.this) {
-                    i = iter++;
-                }
-                if (i >= niter) {
-                    break;
-                }
-                process(i, id);
-            }
-            synchronized (ParallelFor.this) {
-                ParallelFor.this.activeWorkers--;
-                ParallelFor.this.notifyAll();
+            try {
+                work(id);
+            } catch (Throwable t) {
+                error = t;
+                isStopping = true;
+            } finally {
+                barrier.arrive();
             }
         }
     }
@@ -60,22 +74,15 @@ public abstract class ParallelFor {
      */
     protected ExecutorService threadpool;
 
-    /**
-     * current iteration (synchronized access)
-     */
-    protected int iter = 0;
-
     /**
      * worker threads
      */
-    // this also works with a single worker instead of one instance per thread. 
-    //protected final Worker worker;
     protected final Worker[] workers;
 
     /**
      * stop flag
      */
-    protected boolean isStopping;
+    protected volatile boolean isStopping;
 
     /**
      * loop iterations
@@ -83,9 +90,30 @@ public abstract class ParallelFor {
     protected int niter = 0;
 
     /**
-     * active workers (for the barrier)
+     * remaining range [lo, hi) of each thread at index thread * PAD, packed
+     * as lo << 32 | hi
      */
-    protected int activeWorkers = 0;
+    private final AtomicLongArray ranges;
+
+    /**
+     * accumulator of each thread at index thread * PAD
+     */
+    private final double[] sums;
+
+    /**
+     * join of the workers with the calling thread, one phase per loop
+     */
+    private final Phaser barrier;
+
+    /**
+     * maximum chunk size, 0 for adaptive
+     */
+    private int chunk = 0;
+
+    /**
+     * exception thrown by process() in the current loop
+     */
+    private volatile Throwable error;
 
     /**
      * instantiate with as many threads as there are processors
@@ -102,47 +130,65 @@ public abstract class ParallelFor {
         if (threadpool == null) {
             threadpool = Executors.newFixedThreadPool(nthreads);
         }
-        //worker = new Worker();
         workers = new Worker[nthreads];
         for (int i = 0; i < nthreads; i++) {
             workers[i] = new Worker(i);
         }
+        ranges = new AtomicLongArray(nthreads * PAD);
+        sums = new double[nthreads * PAD];
+        barrier = new Phaser(nthreads + 1);
     }
 
     /**
      * Start worker threads and loop through the iterations. Should never be
      * called while the loop instance is still running.
-     * 
+     *
      * @param N
      */
     public void loop(int N) {
         isStopping = false;
+        error = null;
         niter = N;
-        iter = 0;
+        for (int t = 0; t < nthreads; t++) {
+            ranges.set(t * PAD, pack((int) ((long) N * t / nthreads),
+                (int) ((long) N * (t + 1) / nthreads)));
+            sums[t * PAD] = 0;
+        }
 
+        if (nthreads == 1) {
+            work(0);
+            return;
+        }
         // start worker threads
         for (int i = 0; i < nthreads; i++) {
             threadpool.execute(workers[i]);
-            synchronized (this) {
-                activeWorkers++;
-            }
         }
-
         // wait until all worker threads are done
-        while (activeWorkers > 0) {
-            synchronized (this) {
-                try {
-                    wait(1000);
-                } catch (InterruptedException ex) {
-                    ex.printStackTrace();
-                }
+        barrier.arriveAndAwaitAdvance();
+        if (error != null) {
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error instanceof Error) {
+                throw (Error) error;
             }
+            throw new RuntimeException(error);
         }
     }
 
+    /**
+     * loop and sum the values added by process() via add()
+     *
+     * @param N
+     * @return sum over the accumulators of all threads
+     */
+    public double loopSum(int N) {
+        loop(N);
+        return getSum();
+    }
+
     /**
      * loops once, then shuts down
-     * 
+     *
      * @param N
      */
     public void loopOnce(int N) {
@@ -152,12 +198,46 @@ public abstract class ParallelFor {
 
     /**
      * payload for the for loop
-     * 
+     *
      * @param iteration in the for loop
      * @param thread on the machine
      */
     abstract public void process(int iteration, int thread);
 
+    /**
+     * add to the accumulator of the thread, to be called from process()
+     *
+     * @param thread
+     * @param value
+     */
+    protected final void add(int thread, double value) {
+        sums[thread * PAD] += value;
+    }
+
+    /**
+     * @return sum over the accumulators of all threads after the last loop
+     */
+    public double getSum() {
+        double sum = 0;
+        for (int t = 0; t < nthreads; t++) {
+            sum += sums[t * PAD];
+        }
+        return sum;
+    }
+
+    /**
+     * set the maximum number of iterations a thread claims at once from its
+     * range. By default (0), chunks are an eighth of the remaining range, down
+     * to single iterations, which suits loops with iterations of uneven cost;
+     * larger fixed chunks reduce the atomic operations for very cheap
+     * iterations.
+     *
+     * @param chunk
+     */
+    public void setChunk(int chunk) {
+        this.chunk = chunk;
+    }
+
     /**
      * stop loop execution
      */
@@ -178,6 +258,75 @@ public abstract class ParallelFor {
         }
     }
 
+    /**
+     * process chunks of the own range, then steal from the other threads
+     * until all ranges are empty
+     *
+     * @param id
+     */
+    private void work(int id) {
+        int slot = id * PAD;
+        while (!isStopping) {
+            long r = ranges.get(slot);
+            int lo = lo(r), hi = hi(r);
+            if (lo >= hi) {
+                if (!steal(id)) {
+                    break;
+                }
+                continue;
+            }
+            int n = chunk > 0 ? Math.min(chunk, hi - lo) : Math.max(1,
+                (hi - lo) >> 3);
+            if (!ranges.compareAndSet(slot, r, pack(lo + n, hi))) {
+                // a thief has taken the back of the range
+                continue;
+            }
+            for (int i = lo; i < lo + n && !isStopping; i++) {
+                process(i, id);
+            }
+        }
+    }
+
+    /**
+     * move the back half of the range of another thread into the (empty)
+     * range of thread id
+     *
+     * @param id
+     * @return false if all ranges are empty
+     */
+    private boolean steal(int id) {
+        for (int v = 1; v < nthreads; v++) {
+            int victim = ((id + v) % nthreads) * PAD;
+            while (true) {
+                long r = ranges.get(victim);
+                int lo = lo(r), hi = hi(r);
+                if (lo >= hi) {
+                    break;
+                }
+                int mid = lo + (hi - lo) / 2;
+                if (ranges.compareAndSet(victim, r, pack(lo, mid))) {
+                    // only the owner takes from the front, and thieves skip
+                    // empty ranges, so the own slot can be set directly
+                    ranges.set(id * PAD, pack(mid, hi));
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static long pack(int lo, int hi) {
+        return (long) lo << 32 | (hi & 0xffffffffL);
+    }
+
+    private static int lo(long range) {
+        return (int) (range >>> 32);
+    }
+
+    private static int hi(long range) {
+        return (int) range;
+    }
+
     public static void main(String[] args) {
         int niter = 10;
         ParallelFor x = new ParallelFor() {
@@ -60,6 +60,28 @@ public class RandomSamplers {
         this.rand = rand;
     }
 
+    /**
+     * create samplers for parallel workers on non-overlapping Xoshiro256
+     * streams. Sampler i only depends on seed and i, so results are
+     * reproducible as long as each worker uses its own sampler.
+     * 
+     * @param seed
+     * @param n number of workers
+     * @return samplers [n]
+     */
+    public static RandomSamplers[] streams(long seed, int n) {
+        Xoshiro256[] xs = Xoshiro256.streams(seed, n);
+        RandomSamplers[] rs = new RandomSamplers[n];
+        for (int i = 0; i < n; i++) {
+            rs[i] = new RandomSamplers(xs[i]);
+        }
+        return rs;
+    }
+
+    public Random getRandom() {
+        return rand;
+    }
+
     protected boolean haveNextNextGaussian = false;
 
     protected double nextNextGaussian;
@@ -551,6 +573,204 @@ public class RandomSamplers {
         return ww;
     }
 
+    // batch sampling into caller arrays: the methods below do not allocate
+    // per draw, and the arithmetic runs in separate loops over primitive
+    // arrays that the JIT can unroll and vectorise.
+
+    /**
+     * scratch buffer for cumulative weights
+     */
+    private double[] cumBuf = new double[0];
+
+    /**
+     * fill out[off..off+n) with gamma(shape, 1) variates (Marsaglia and Tsang
+     * 2000; for shape < 1, gamma(shape + 1) * U^(1 / shape)).
+     * 
+     * @param shape
+     * @param out
+     * @param off
+     * @param n
+     */
+    public void randGamma(double shape, double[] out, int off, int n) {
+        if (shape <= 0) {
+            Arrays.fill(out, off, off + n, 0);
+            return;
+        }
+        double d = (shape < 1 ? shape + 1 : shape) - 1. / 3;
+        double c = 1. / Math.sqrt(9 * d);
+        for (int i = off; i < off + n; i++) {
+            out[i] = gammaMt(d, c);
+        }
+        if (shape < 1) {
+            double ia = 1. / shape;
+            for (int i = off; i < off + n; i++) {
+                out[i] *= Math.pow(drand(), ia);
+            }
+        }
+    }
+
+    /**
+     * fill out[k] with gamma(shapes[k], 1) variates
+     * 
+     * @param shapes
+     * @param out same length as shapes
+     */
+    public void randGamma(double[] shapes, double[] out) {
+        for (int k = 0; k < shapes.length; k++) {
+            randGamma(shapes[k], out, k, 1);
+        }
+    }
+
+    /**
+     * Marsaglia-Tsang step for shape d + 1/3 >= 1
+     * 
+     * @param d shape - 1/3
+     * @param c 1 / sqrt(9 d)
+     * @return gamma variate
+     */
+    private double gammaMt(double d, double c) {
+        while (true) {
+            double x = randNorm(0, 1);
+            double v = 1 + c * x;
+            if (v <= 0) {
+                continue;
+            }
+            v = v * v * v;
+            double u = drand();
+            double x2 = x * x;
+            if (u < 1 - 0.0331 * x2 * x2
+                || Math.log(u) < 0.5 * x2 + d * (1 - v + Math.log(v))) {
+                return d * v;
+            }
+        }
+    }
+
+    /**
+     * draw one Dirichlet sample into out[off..off+K). Parameters below 1 are
+     * sampled in log space and normalised relative to the largest component,
+     * so small alphas do not underflow to a zero sum.
+     * 
+     * @param aa parameters [K]
+     * @param out
+     * @param off
+     */
+    public void randDir(double[] aa, double[] out, int off) {
+        int K = aa.length;
+        boolean small = false;
+        for (int k = 0; k < K; k++) {
+            if (aa[k] < 1) {
+                small = true;
+                break;
+            }
+        }
+        if (!small) {
+            for (int k = 0; k < K; k++) {
+                double d = aa[k] - 1. / 3;
+                out[off + k] = gammaMt(d, 1. / Math.sqrt(9 * d));
+            }
+            normalise(out, off, K);
+            return;
+        }
+        double max = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < K; k++) {
+            double a = aa[k];
+            double lg;
+            if (a <= 0) {
+                lg = Double.NEGATIVE_INFINITY;
+            } else if (a < 1) {
+                double d = a + 2. / 3;
+                lg = Math.log(gammaMt(d, 1. / Math.sqrt(9 * d)))
+                    + Math.log(drand()) / a;
+            } else {
+                double d = a - 1. / 3;
+                lg = Math.log(gammaMt(d, 1. / Math.sqrt(9 * d)));
+            }
+            out[off + k] = lg;
+            if (lg > max) {
+                max = lg;
+            }
+        }
+        for (int k = off; k < off + K; k++) {
+            out[k] = Math.exp(out[k] - max);
+        }
+        normalise(out, off, K);
+    }
+
+    /**
+     * draw n Dirichlet samples into the flat array out[n * K], sample i in
+     * out[i * K .. (i + 1) * K)
+     * 
+     * @param aa parameters [K]
+     * @param n
+     * @param out [n * K]
+     */
+    public void randDir(double[] aa, int n, double[] out) {
+        for (int i = 0, off = 0; i < n; i++, off += aa.length) {
+            randDir(aa, out, off);
+        }
+    }
+
+    /**
+     * scale x[off..off+n) to sum 1
+     */
+    private static void normalise(double[] x, int off, int n) {
+        double sum = 0;
+        for (int i = off; i < off + n; i++) {
+            sum += x[i];
+        }
+        double inv = 1 / sum;
+        for (int i = off; i < off + n; i++) {
+            x[i] *= inv;
+        }
+    }
+
+    /**
+     * multinomial counts of N draws from pp by sequential conditional
+     * binomials n_k ~ Bin(N - sum_j<k n_j, p_k / sum_j>=k p_j), which costs
+     * O(K log N) instead of O(N log K).
+     * 
+     * @param pp unnormalised probabilities [K]
+     * @param N number of draws
+     * @param counts [out] [K]
+     */
+    public void randMultFreqs(double[] pp, int N, int[] counts) {
+        int K = pp.length;
+        double rest = 0;
+        for (int k = 0; k < K; k++) {
+            rest += pp[k];
+        }
+        Arrays.fill(counts, 0);
+        for (int k = 0; k < K - 1 && N > 0; k++) {
+            double p = rest > 0 ? pp[k] / rest : 1;
+            counts[k] = randBinomial(N, p < 1 ? p : 1);
+            N -= counts[k];
+            rest -= pp[k];
+        }
+        counts[K - 1] += N;
+    }
+
+    /**
+     * draw n categorical samples from pp into out[0..n), cumulating pp once
+     * 
+     * @param pp unnormalised probabilities [K]
+     * @param n
+     * @param out [n]
+     */
+    public void randMult(double[] pp, int n, int[] out) {
+        int K = pp.length;
+        if (cumBuf.length != K) {
+            cumBuf = new double[K];
+        }
+        double sum = 0;
+        for (int k = 0; k < K; k++) {
+            sum += pp[k];
+            cumBuf[k] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            out[i] = binarySearch(cumBuf, drand() * sum);
+        }
+    }
+
     /**
      * Multiply sample a multinomial distribution and return a vector with
      * category frequencies.
@@ -780,6 +1000,67 @@ public class RandomSamplers {
         return n;
     }
 
+    /**
+     * draw a binomial sample in O(log n) expected time: inversion if the mean
+     * is small, otherwise Knuth's recursion on a beta-distributed order
+     * statistic (TAOCP 3.4.1), which halves n in each step.
+     * 
+     * @param n number of trials
+     * @param p success probability
+     * @return number of successes
+     */
+    public int randBinomial(int n, double p) {
+        int x = 0;
+        while (n > 0) {
+            if (p <= 0) {
+                return x;
+            }
+            if (p >= 1) {
+                return x + n;
+            }
+            if (n * Math.min(p, 1 - p) < 10) {
+                return x + binomialInversion(n, p);
+            }
+            int a = 1 + n / 2;
+            int b = n + 1 - a;
+            double ga = gammaMt(a - 1. / 3, 1. / Math.sqrt(9 * (a - 1. / 3)));
+            double gb = gammaMt(b - 1. / 3, 1. / Math.sqrt(9 * (b - 1. / 3)));
+            double y = ga / (ga + gb);
+            if (y >= p) {
+                // the a-th smallest uniform is above p: Bin(a - 1, p / y)
+                n = a - 1;
+                p = p / y;
+            } else {
+                x += a;
+                n = b - 1;
+                p = (p - y) / (1 - y);
+            }
+        }
+        return x;
+    }
+
+    /**
+     * binomial by sequential search of the inverse cdf (small n min(p, 1-p))
+     */
+    private int binomialInversion(int n, double p) {
+        boolean flip = p > 0.5;
+        if (flip) {
+            p = 1 - p;
+        }
+        double q = 1 - p;
+        double s = p / q;
+        double a = (n + 1) * s;
+        double r = Math.pow(q, n);
+        double u = drand();
+        int x = 0;
+        while (u > r && x < n) {
+            u -= r;
+            x++;
+            r *= a / x - s;
+        }
+        return flip ? n - x : x;
+    }
+
     /**
      * draw a Bernoulli sample.
      * 
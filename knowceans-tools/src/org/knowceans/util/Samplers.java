@@ -12,6 +12,7 @@
 package org.knowceans.util;
 
 import java.util.Arrays;
+import java.util.Random;
 
 /**
  * Diverse sampling methods, including beta, gamma, multinomial, and Dirichlet
@@ -19,14 +20,17 @@ import java.util.Arrays;
  * stick-breaking construction and Chinese restaurant process. The random
  * generator used is a Mersenne Twister (Cokus), which is the only dependency.
  * <p>
+ * The state of Cokus is static, so concurrent callers race on it. Threads
+ * that sample in parallel bind their own generator with bind() (e.g., one of
+ * Xoshiro256.streams()), after which all methods called from the thread use
+ * it; or they use an instance of RandomSamplers.
+ * <p>
  * FIXME: markov condition in random generator, see random string?
  * 
  * @author heinrich (partly adapted from Yee Whye Teh's npbayes Matlab / C code)
  */
 public class Samplers {
 
-	// TODO: hook to random number generator instance
-
 	public static void main(String[] args) {
 		// double x = 0.4;
 		// double y = 0.8;
@@ -57,7 +61,43 @@ public class Samplers {
 
 	public static double lastRand;
 
+	/**
+	 * generators bound to threads
+	 */
+	private static final ThreadLocal<Random> threadRandom = new ThreadLocal<Random>();
+
+	/**
+	 * whether any thread has bound a generator, which saves the lookup in
+	 * single-threaded use
+	 */
+	private static volatile boolean bound = false;
+
+	/**
+	 * use rand for all samples drawn by the current thread
+	 * 
+	 * @param rand generator owned by the thread, null to use Cokus again
+	 */
+	public static void bind(Random rand) {
+		threadRandom.set(rand);
+		if (rand != null) {
+			bound = true;
+		}
+	}
+
+	/**
+	 * @return generator bound to the current thread or null
+	 */
+	public static Random getBound() {
+		return bound ? threadRandom.get() : null;
+	}
+
 	protected static double drand48() {
+		if (bound) {
+			Random rand = threadRandom.get();
+			if (rand != null) {
+				return rand.nextDouble();
+			}
+		}
 		return Cokus.randDouble();
 	}
 
@@ -70,8 +110,11 @@ public class Samplers {
 	 */
 	public static double randNorm(double mu, double sigma) {
 
-		// Random r = new Random();
-		// return r.nextGaussian() * sigma + mu;
+		// the cached second variate is shared, so bound threads use their own
+		Random r = getBound();
+		if (r != null) {
+			return r.nextGaussian() * sigma + mu;
+		}
 		if (haveNextNextGaussian) {
 			haveNextNextGaussian = false;
 			return nextNextGaussian * sigma + mu;
@@ -240,7 +283,7 @@ public class Samplers {
 		int len = i;
 
 		for (i = 0; i < n; i++) {
-			double randNum = Cokus.randDouble() * cumprobs[len - 1];
+			double randNum = drand48() * cumprobs[len - 1];
 			int c = binarySearch(cumprobs, randNum);
 			if (components != null) {
 				components[i] = c;
@@ -374,7 +417,7 @@ public class Samplers {
 	public static int[] randPerm(int size) {
 		int[] perm = Vectors.range(0, size - 1);
 		for (int i = size - 1; i > 0; i--) {
-			int k = (int) (Cokus.randDouble() * (i + 1));
+			int k = (int) (drand48() * (i + 1));
 			if (k != i) {
 				int buf = perm[i];
 				perm[i] = perm[k];
@@ -393,7 +436,7 @@ public class Samplers {
 	public final int[] randPerm(int[] set) {
 		// works a bit like sampling without replacement or a factorial.
 		for (int i = set.length - 1; i > 0; i--) {
-			int k = (int) (Cokus.randDouble() * (i + 1));
+			int k = (int) (drand48() * (i + 1));
 			if (k != i) {
 				int buf = set[i];
 				set[i] = set[k];
@@ -511,12 +554,10 @@ public class Samplers {
 	 */
 	public static int[] randMultFreqs(double[] pp, int repetitions) {
 		int[] freqs = new int[pp.length];
-		for (int i = 0; i < freqs.length; i++) {
-			freqs[i] = 0;
-		}
-
+		double[] cumPp = cumulate(pp, new double[pp.length]);
+		double sum = cumPp[pp.length - 1];
 		for (int i = 0; i < repetitions; i++) {
-			freqs[randMult(pp)]++;
+			freqs[binarySearch(cumPp, drand48() * sum)]++;
 		}
 
 		return freqs;
@@ -532,9 +573,10 @@ public class Samplers {
 	 */
 	public static int[] randMult(double[] pp, int repetitions) {
 		int[] samples = new int[repetitions];
-
+		double[] cumPp = cumulate(pp, new double[pp.length]);
+		double sum = cumPp[pp.length - 1];
 		for (int i = 0; i < repetitions; i++) {
-			samples[i] = randMult(pp);
+			samples[i] = binarySearch(cumPp, drand48() * sum);
 		}
 		return samples;
 
@@ -558,7 +600,7 @@ public class Samplers {
 
 		}
 		// this automatically normalises.
-		double randNum = Cokus.randDouble() * cumPp[i - 1];
+		double randNum = drand48() * cumPp[i - 1];
 
 		// TODO: use binarySearch().
 		for (i = 0; i < cumPp.length; i++) {
@@ -612,25 +654,39 @@ public class Samplers {
 	 * normalisation.
 	 */
 	public static int randMult(final double[] pp) {
+		return randMult(pp, new double[pp.length]);
+	}
 
-		int i;
-		double[] cumPp = new double[pp.length];
-
-		System.arraycopy(pp, 0, cumPp, 0, pp.length);
-
-		for (i = 1; i < pp.length; i++) {
-			cumPp[i] += cumPp[i - 1];
-
-		}
+	/**
+	 * Like randMult(pp) but cumulates pp into the caller's buffer cumPp instead
+	 * of a new array, so repeated draws (e.g., in a Gibbs sampler) do not
+	 * allocate. pp is left unchanged.
+	 * 
+	 * @param pp unnormalised weights
+	 * @param cumPp [out] cumulative weights, same length as pp
+	 * @return sampled index
+	 */
+	public static int randMult(final double[] pp, double[] cumPp) {
+		cumulate(pp, cumPp);
 		// this automatically normalises.
-		double randNum = Cokus.randDouble() * cumPp[i - 1];
-
-		// TODO: use insertion point formula in Array.binarySearch()
-		i = binarySearch(cumPp, randNum);
-
-		// System.out.println(Vectors.print(pp) + " " + i);
+		double randNum = drand48() * cumPp[pp.length - 1];
+		return binarySearch(cumPp, randNum);
+	}
 
-		return i;
+	/**
+	 * cumulative sums of pp
+	 * 
+	 * @param pp
+	 * @param cumPp [out] same length as pp
+	 * @return cumPp
+	 */
+	private static double[] cumulate(double[] pp, double[] cumPp) {
+		double sum = 0;
+		for (int i = 0; i < pp.length; i++) {
+			sum += pp[i];
+			cumPp[i] = sum;
+		}
+		return cumPp;
 	}
 
 	/**
@@ -649,7 +705,7 @@ public class Samplers {
 
 		}
 		// this automatically normalises.
-		double randNum = Cokus.randDouble() * pp[i - 1];
+		double randNum = drand48() * pp[i - 1];
 		lastRand = randNum;
 
 		// TODO: use insertion point formula in Array.binarySearch()
@@ -735,7 +791,7 @@ public class Samplers {
 	 * @return 1 if sucessful, 0 otherwise
 	 */
 	public static int randBernoulli(double p) {
-		double a = Cokus.randDouble();
+		double a = drand48();
 		if (a < p) {
 			return 1;
 		}
@@ -996,7 +1052,7 @@ public class Samplers {
 		byte[] pass = new byte[length];
 
 		for (int k = 0; k < length; k++) {
-			int i = (int) Math.floor(Cokus.randDouble() * alphabet.length);
+			int i = (int) Math.floor(drand48() * alphabet.length);
 			pass[k] = alphabet[i];
 		}
 		return new String(pass);
@@ -0,0 +1,147 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.util;
+
+import java.util.Random;
+
+/**
+ * splittable 64-bit generator with the algorithm of java.util.SplittableRandom
+ * (Steele, Lea and Flood 2014), which is not available before Java 8: a
+ * Weyl sequence seed += gamma whose values are scrambled by a 64-bit mix
+ * function. split() derives a new generator with its own gamma, so workers
+ * can fork generators recursively and reproducibly. The generator also
+ * serves to seed the state of Xoshiro256. Not thread-safe; each thread uses
+ * its own instance.
+ * <p>
+ * For the same seed, nextLong(), nextInt(), nextInt(bound), nextDouble(),
+ * nextBoolean() and split() give the same values as SplittableRandom; the
+ * other methods of Random (e.g., nextFloat(), nextGaussian()) use next(bits)
+ * on the 64-bit output and have no counterpart there.
+ *
+ * @author heinrich
+ */
+public class SplitMix64 extends Random {
+
+    private static final long serialVersionUID = 4863104520541870536L;
+
+    public static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long seed;
+
+    private final long gamma;
+
+    public SplitMix64(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    private SplitMix64(long seed, long gamma) {
+        super(0);
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * @return a new generator whose sequence is statistically independent of
+     *         this one's; advances this generator
+     */
+    public SplitMix64 split() {
+        return new SplitMix64(nextLong(), mixGamma(nextSeed()));
+    }
+
+    /**
+     * @param seed common seed
+     * @param n number of streams
+     * @return generators 0..n-1, split in order from one generator
+     */
+    public static SplitMix64[] streams(long seed, int n) {
+        SplitMix64 root = new SplitMix64(seed);
+        SplitMix64[] sms = new SplitMix64[n];
+        for (int i = 0; i < n; i++) {
+            sms[i] = root.split();
+        }
+        return sms;
+    }
+
+    private long nextSeed() {
+        return seed += gamma;
+    }
+
+    /**
+     * Stafford's variant 13 of the MurmurHash3 finaliser
+     */
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * 32-bit variant of mix64 (Stafford's variant 4)
+     */
+    static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        // avoid gammas with too few bit transitions
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return n < 24 ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    @Override
+    public int nextInt() {
+        return mix32(nextSeed());
+    }
+
+    /**
+     * bounded draw as in SplittableRandom: masked for powers of 2, otherwise
+     * rejection of the values of the incomplete last interval
+     */
+    @Override
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive");
+        }
+        int r = mix32(nextSeed());
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            r &= m;
+        } else {
+            for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(
+                nextSeed()) >>> 1) {
+                // retry
+            }
+        }
+        return r;
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        return mix32(nextSeed()) < 0;
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    @Override
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+}
@@ -24,10 +24,18 @@ package org.knowceans.util;
 
 import java.util.Hashtable;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * StopWatch allows to time a java program by simply starting lap-timing,
  * stopping and resetting a stop watch "channel".
+ * <p>
+ * Channels are looked up in a concurrent map and updated under the lock of
+ * the channel only, so threads timing different channels don't block each
+ * other. Each interval from start to stop is also recorded in the Metrics
+ * timer of the channel name, from which per-phase statistics can be exported.
+ * Only the last MAXLAPS lap times are kept. For timing inner loops, use a
+ * Metrics.Timer directly, which doesn't lock.
  * 
  * @author gregor
  */
@@ -54,6 +62,7 @@ public class StopWatch {
 		Thread.sleep(1000);
 		stop("my");
 		System.out.println(get("my").debug());
+		System.out.println(Metrics.toJson());
 	}
 
 	/**
@@ -64,24 +73,40 @@ public class StopWatch {
 	private static final int INVALID = -1;
 
 	/**
-	 * Starting system time
+	 * number of lap times kept per watch
+	 */
+	public static final int MAXLAPS = 1000;
+
+	/**
+	 * Starting system time (ns)
 	 */
 	private long absStart = INVALID;
 
 	/**
-	 * keeps the time that this stop watch has been paused.
+	 * keeps the time that this stop watch has been paused (ns).
 	 */
 	private long relPaused = 0;
 
 	/**
-	 * start of the last lap time
+	 * start of the last lap time (ns)
 	 */
 	private long absLap = INVALID;
 
 	/**
-	 * Lap times (stored relative to last start or lap).
+	 * start of the current interval (ns)
+	 */
+	private long absRun = INVALID;
+
+	/**
+	 * Lap times (ms, stored relative to last start or lap), ring buffer of the
+	 * last MAXLAPS laps.
 	 */
-	private Vector<Long> laps = null;
+	private long[] laps = null;
+
+	/**
+	 * number of laps
+	 */
+	private int nlaps = 0;
 
 	// /**
 	// * TODO: Named events for this stop watch.
@@ -89,7 +114,7 @@ public class StopWatch {
 	// private Hashtable<String, Long> events = null;
 
 	/**
-	 * Stopping time
+	 * Stopping time (ns)
 	 */
 	private long absStop = INVALID;
 
@@ -104,10 +129,21 @@ public class StopWatch {
 	private String name;
 
 	/**
-	 * Manages all stop watches in the current java process.
+	 * timer that records the intervals of this watch
+	 */
+	private final Metrics.Timer timer;
+
+	/**
+	 * Manages all stop watches in the current java process. Only written when
+	 * a watch is created or removed; lookups go to the lock-free index.
 	 */
 	protected static Hashtable<String, StopWatch> watches = new Hashtable<String, StopWatch>();
 
+	/**
+	 * lock-free index of the watches table for start, stop, lap and read
+	 */
+	private static final ConcurrentHashMap<String, StopWatch> index = new ConcurrentHashMap<String, StopWatch>();
+
 	/**
 	 * Creates a stop watch with the name. Constructor is protected because
 	 * direct creation is not part of the concept; subclasses can open up
@@ -116,8 +152,40 @@ public class StopWatch {
 	 * @param name
 	 */
 	protected StopWatch(String name) {
-		laps = new Vector<Long>();
+		laps = new long[16];
 		this.name = name;
+		timer = Metrics.timer(name);
+	}
+
+	/**
+	 * get the watch, creating it if new
+	 * 
+	 * @param watch
+	 * @return
+	 */
+	private static StopWatch create(String watch) {
+		StopWatch w = index.get(watch);
+		if (w == null) {
+			synchronized (watches) {
+				// the table may contain a watch added via getWatches()
+				w = watches.get(watch);
+				if (w == null) {
+					w = new StopWatch(watch);
+					watches.put(watch, w);
+				}
+				index.put(watch, w);
+			}
+		}
+		return w;
+	}
+
+	/**
+	 * @param watch
+	 * @return the watch or null
+	 */
+	private static StopWatch lookup(String watch) {
+		StopWatch w = index.get(watch);
+		return w != null ? w : watches.get(watch);
 	}
 
 	/**
@@ -130,31 +198,26 @@ public class StopWatch {
 	 * @return current starting time, which is 0 if started the first time and
 	 *         the value of tstop if continued.
 	 */
-	public static synchronized long start(String watch) {
-		long time = 0;
-		StopWatch w = watches.get(watch);
-		if (w == null) {
-			w = new StopWatch(watch);
-		}
-		long now = time();
-
-		w.absLap = now;
-		watches.put(watch, w);
-
-		// subtract paused interval if any
-		if (w.absStop == 0 && !w.running) {
-			// first start
-			w.absStart = now;
-			time = 0;
-		} else {
+	public static long start(String watch) {
+		StopWatch w = create(watch);
+		long now = nanos();
+		synchronized (w) {
+			w.absLap = now;
+			if (w.absStart == INVALID) {
+				// first start
+				w.absStart = now;
+				w.absRun = now;
+				w.running = true;
+				return 0;
+			}
 			if (!w.running) {
-				// paused is only incremented if not running 
+				// paused is only incremented if not running
 				w.relPaused += now - w.absStop;
+				w.absRun = now;
 			}
-			time = now - w.absStart - w.relPaused;
+			w.running = true;
+			return millis(now - w.absStart - w.relPaused);
 		}
-		w.running = true;
-		return time;
 	}
 
 	/**
@@ -168,12 +231,24 @@ public class StopWatch {
 
 	/**
 	 * Removes the named stop watch, i.e., gets rid of the data and entry in the
-	 * watches table. Returns the stop watch just removed to save its data.
+	 * watches table, and resets its timer. Returns the stop watch just removed
+	 * to save its data.
 	 * 
 	 * @param watch
 	 */
-	public static synchronized StopWatch clear(String watch) {
-		return watches.remove(watch);
+	public static StopWatch clear(String watch) {
+		StopWatch w;
+		synchronized (watches) {
+			w = watches.remove(watch);
+			StopWatch v = index.remove(watch);
+			if (w == null) {
+				w = v;
+			}
+		}
+		if (w != null) {
+			w.timer.reset();
+		}
+		return w;
 	}
 
 	/**
@@ -190,7 +265,7 @@ public class StopWatch {
 	 * @return
 	 */
 	public static StopWatch get(String watch) {
-		return watches.get(watch);
+		return lookup(watch);
 	}
 
 	/**
@@ -200,7 +275,7 @@ public class StopWatch {
 	 * @return
 	 */
 	public static StopWatch get() {
-		return watches.get(DEFAULT);
+		return lookup(DEFAULT);
 	}
 
 	/**
@@ -211,16 +286,27 @@ public class StopWatch {
 	 * @return relative time of last lap (or start), or INVALID if unknown or
 	 *         not running.
 	 */
-	public static synchronized long lap(String watch) {
-		long now = time();
-		StopWatch w = watches.get(watch);
-		if (w == null || !w.running) {
+	public static long lap(String watch) {
+		long now = nanos();
+		StopWatch w = lookup(watch);
+		if (w == null) {
 			return INVALID;
 		}
-		long relLap = now - w.absLap;
-		w.absLap = now;
-		w.laps.add(relLap);
-		return relLap;
+		synchronized (w) {
+			if (!w.running) {
+				return INVALID;
+			}
+			long relLap = millis(now - w.absLap);
+			w.absLap = now;
+			if (w.nlaps == w.laps.length && w.laps.length < MAXLAPS) {
+				long[] ll = new long[Math.min(MAXLAPS, 2 * w.laps.length)];
+				System.arraycopy(w.laps, 0, ll, 0, w.nlaps);
+				w.laps = ll;
+			}
+			w.laps[w.nlaps % w.laps.length] = relLap;
+			w.nlaps++;
+			return relLap;
+		}
 	}
 
 	/**
@@ -239,17 +325,19 @@ public class StopWatch {
 	 * @param watch
 	 * @return
 	 */
-	public static synchronized long read(String watch) {
-		long now = time();
+	public static long read(String watch) {
+		long now = nanos();
 
-		StopWatch w = watches.get(watch);
+		StopWatch w = lookup(watch);
 		if (w == null) {
 			return INVALID;
 		}
-		if (w.running) {
-			return now - w.absStart - w.relPaused;
+		synchronized (w) {
+			if (w.running) {
+				return millis(now - w.absStart - w.relPaused);
+			}
+			return millis(w.absStop - w.absStart - w.relPaused);
 		}
-		return w.absStop - w.absStart - w.relPaused;
 	}
 
 	/**
@@ -267,15 +355,21 @@ public class StopWatch {
 	 * @param watch
 	 * @return the relative time since the start.
 	 */
-	public static synchronized long stop(String watch) {
-		long now = time();
-		StopWatch w = watches.get(watch);
-		if (w == null || !w.running) {
+	public static long stop(String watch) {
+		long now = nanos();
+		StopWatch w = lookup(watch);
+		if (w == null) {
 			return INVALID;
 		}
-		w.absStop = now;
-		w.running = false;
-		return now - w.absStart - w.relPaused;
+		synchronized (w) {
+			if (!w.running) {
+				return INVALID;
+			}
+			w.absStop = now;
+			w.running = false;
+			w.timer.record(now - w.absRun);
+			return millis(now - w.absStart - w.relPaused);
+		}
 	}
 
 	/**
@@ -297,7 +391,7 @@ public class StopWatch {
 		s += running ? " running: " : " stopped: ";
 		s += format(read(name));
 		s += " lap times: ";
-		for (long lap : laps) {
+		for (long lap : getLaps()) {
 			s += format(lap) + " ";
 		}
 		return s;
@@ -317,9 +411,10 @@ public class StopWatch {
 	 * @return
 	 */
 	public static void print(String watch) {
-		StopWatch w = watches.get(watch);
+		StopWatch w = lookup(watch);
 		if (w == null) {
 			System.out.println(watch + " unknown");
+			return;
 		}
 		System.out.println(w.toString());
 	}
@@ -340,7 +435,7 @@ public class StopWatch {
 	 * @param reltime
 	 * @return
 	 */
-	public synchronized static String format(long reltime) {
+	public static String format(long reltime) {
 		StringBuffer b = new StringBuffer();
 		if (reltime == INVALID) {
 			return "[invalid]";
@@ -375,7 +470,7 @@ public class StopWatch {
 	 * @param digits
 	 * @return
 	 */
-	public synchronized static String digits(long number, int digits) {
+	public static String digits(long number, int digits) {
 		String s = Long.toString(number);
 		int len = s.length();
 		if (len > digits)
@@ -393,19 +488,27 @@ public class StopWatch {
 	}
 
 	/**
-	 * Get the system time (might be overwritten by subclasses).
+	 * Get the system time in ms (monotonic, not the wall clock).
 	 * <p>
 	 * TODO: rookie question;-) is static ok for inheritance?
 	 * 
 	 * @return
 	 */
 	protected static long time() {
-		return System.currentTimeMillis();
+		return millis(nanos());
+	}
+
+	private static long nanos() {
+		return System.nanoTime();
+	}
+
+	private static long millis(long nanos) {
+		return nanos / 1000000;
 	}
 
 	/**
 	 * Get all watches as a table (can be used to add or remove certain
-	 * watches).
+	 * watches; removal should use clear(String) to also reset the timer).
 	 * 
 	 * @return the hashtable of watches
 	 */
@@ -417,7 +520,22 @@ public class StopWatch {
 		return name;
 	}
 
-	public final Vector<Long> getLaps() {
-		return laps;
+	/**
+	 * @return the last (up to MAXLAPS) lap times
+	 */
+	public final synchronized Vector<Long> getLaps() {
+		Vector<Long> v = new Vector<Long>();
+		int n = Math.min(nlaps, laps.length);
+		for (int i = nlaps - n; i < nlaps; i++) {
+			v.add(laps[i % laps.length]);
+		}
+		return v;
+	}
+
+	/**
+	 * @return the timer that records the intervals of this watch
+	 */
+	public final Metrics.Timer getTimer() {
+		return timer;
 	}
 }
@@ -46,7 +46,7 @@ import org.knowceans.map.BijectiveHashMap;
  */
 public class UnHtml {
 
-	protected static BijectiveHashMap<String, Integer> entityMap;
+	protected static volatile BijectiveHashMap<String, Integer> entityMap;
 
 	public static void main(String[] args) {
 		String text = "Hll";
@@ -125,13 +125,15 @@ public class UnHtml {
 	protected static void getMap() {
 		// load entity map
 		if (entityMap == null) {
-			entityMap = new BijectiveHashMap<String, Integer>();
+			// fill before publishing, getText() may be called concurrently
+			BijectiveHashMap<String, Integer> map = new BijectiveHashMap<String, Integer>();
 
 			String[][] ee = ISO8859_1_ARRAY;
 
 			for (int i = 0; i < ee.length; ++i) {
-				entityMap.put(ee[i][0], Integer.parseInt(ee[i][1]));
+				map.put(ee[i][0], Integer.parseInt(ee[i][1]));
 			}
+			entityMap = map;
 		}
 	}
 
@@ -0,0 +1,152 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.util;
+
+import java.util.Random;
+
+/**
+ * xoshiro256** generator (Blackman and Vigna 2018): 256 bits of state,
+ * period 2^256 - 1, a few shifts and rotations per 64-bit output. The state
+ * is seeded from a long by SplitMix64. jump() advances the state by 2^128
+ * draws, so n workers get non-overlapping streams of 2^128 numbers each by
+ * taking the generator of a seed and jumping it i times for worker i
+ * (streams()). This is reproducible for a fixed seed and number of workers
+ * regardless of thread scheduling. Not thread-safe; each thread uses its own
+ * instance.
+ *
+ * @author heinrich
+ */
+public class Xoshiro256 extends Random {
+
+    private static final long serialVersionUID = -7127328829633329581L;
+
+    /**
+     * polynomial for a jump of 2^128 draws
+     */
+    private static final long[] JUMP = {0x180ec6d33cfd0abaL,
+        0xd5a61266f0c9392cL, 0xa9582618e03fc9aaL, 0x39abdc4529b1661cL};
+
+    /**
+     * polynomial for a jump of 2^192 draws
+     */
+    private static final long[] LONG_JUMP = {0x76e15d3efefdcbbfL,
+        0xc5004e441c522fb3L, 0x77710069854ee241L, 0x39109bb02acbe635L};
+
+    private long s0, s1, s2, s3;
+
+    public Xoshiro256() {
+        this(CokusRandom.DEFAULTSEED);
+    }
+
+    public Xoshiro256(long seed) {
+        super(0);
+        setSeed(seed);
+    }
+
+    private Xoshiro256(Xoshiro256 other) {
+        super(0);
+        s0 = other.s0;
+        s1 = other.s1;
+        s2 = other.s2;
+        s3 = other.s3;
+    }
+
+    /**
+     * @param seed common seed
+     * @param n number of streams
+     * @return generators whose sequences are 2^128 draws apart
+     */
+    public static Xoshiro256[] streams(long seed, int n) {
+        Xoshiro256 x = new Xoshiro256(seed);
+        Xoshiro256[] xs = new Xoshiro256[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = new Xoshiro256(x);
+            x.jump();
+        }
+        return xs;
+    }
+
+    /**
+     * @return a copy of this generator, which then jumps ahead by 2^128
+     *         draws, so the two sequences do not overlap
+     */
+    public Xoshiro256 split() {
+        Xoshiro256 x = new Xoshiro256(this);
+        jump();
+        return x;
+    }
+
+    /**
+     * seed the state with four outputs of SplitMix64
+     */
+    @Override
+    public void setSeed(long seed) {
+        SplitMix64 sm = new SplitMix64(seed);
+        s0 = sm.nextLong();
+        s1 = sm.nextLong();
+        s2 = sm.nextLong();
+        s3 = sm.nextLong();
+    }
+
+    /**
+     * advance by 2^128 draws
+     */
+    public void jump() {
+        jump(JUMP);
+    }
+
+    /**
+     * advance by 2^192 draws
+     */
+    public void longJump() {
+        jump(LONG_JUMP);
+    }
+
+    private void jump(long[] poly) {
+        long t0 = 0, t1 = 0, t2 = 0, t3 = 0;
+        for (int i = 0; i < poly.length; i++) {
+            for (int b = 0; b < 64; b++) {
+                if ((poly[i] & (1L << b)) != 0) {
+                    t0 ^= s0;
+                    t1 ^= s1;
+                    t2 ^= s2;
+                    t3 ^= s3;
+                }
+                nextLong();
+            }
+        }
+        s0 = t0;
+        s1 = t1;
+        s2 = t2;
+        s3 = t3;
+    }
+
+    @Override
+    public long nextLong() {
+        long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    @Override
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    @Override
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+}
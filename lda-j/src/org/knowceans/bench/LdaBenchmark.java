@@ -0,0 +1,373 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.bench;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.knowceans.lda.Corpus;
+import org.knowceans.lda.Document;
+import org.knowceans.lda.Utils;
+import org.knowceans.ldag.LdaGibbs;
+import org.knowceans.ldam.LdaMain;
+import org.knowceans.ldam.Newton;
+import org.knowceans.util.Arguments;
+import org.knowceans.util.StopWatch;
+
+/**
+ * LdaBenchmark trains the LDA estimators end to end on a set of corpora and
+ * thread counts and reports the time of the em phases (e-step, m-step,
+ * likelihood, i/o) together with tokens and documents per second of the
+ * e-step, as CSV and JSON for tracking scaling curves. The variational
+ * estimators are run through their command line entry points with a
+ * generated settings file and a fixed number of iterations (convergence
+ * threshold 0) and report their phases on the StopWatch channels in Utils;
+ * they compute the likelihood within the e-step, so their likelihood time is
+ * reported empty (null). The Gibbs sampler (ldag) is driven directly, its
+ * sweeps counted as e-step and its likelihood as a separate pass. Corpora
+ * are the shipped ones (those found below the working directory) and
+ * synthetic corpora of given size (SyntheticCorpus), e.g.,
+ *
+ * <pre>
+ * java org.knowceans.bench.LdaBenchmark -i ldaj,ldam -t 1,2,4 -s 20000:10000:150 -o scaling
+ * </pre>
+ *
+ * @author heinrich
+ */
+public class LdaBenchmark {
+
+    public static final String OPTIONS = "i|impl=s {estimators, default ldaj,lda,ldam,ldag} "
+        + "c|corpora=s {lda-c corpus files, default shipped corpora} "
+        + "s|synthetic=s {synthetic corpora M:V:L,...} "
+        + "k|topics=i {number of topics, default 20} "
+        + "n|iter=i {em iterations / Gibbs sweeps, default 10} "
+        + "t|threads=s {thread counts, default 1,processors} "
+        + "g|sampler=s {Gibbs sampler dense, sparse, alias; default sparse} "
+        + "d|dir=s {working directory} "
+        + "o|out=s {output base for .csv and .json, default lda-bench}";
+
+    public static final String[] IMPLS = {"ldaj", "lda", "ldam", "ldag"};
+
+    public static final String[] CORPORA = {"ap/ap.dat",
+        "berry95/berry95.corpus", "cranfield/cranfield100.data"};
+
+    /**
+     * Run holds the measurements of one training run.
+     */
+    public static class Run {
+        String impl, corpus;
+        int docs, terms, topics, threads, iterations;
+        long tokens;
+        /** seconds */
+        double total, estep, mstep, io;
+        /**
+         * seconds of a separate likelihood pass, NaN if the likelihood is
+         * computed within the e-step (variational estimators)
+         */
+        double likelihood = Double.NaN;
+        /** final likelihood, NaN if not reported */
+        double lik = Double.NaN;
+
+        public double tokensPerSecond() {
+            return estep > 0 ? tokens * (double) iterations / estep : 0;
+        }
+
+        public double docsPerSecond() {
+            return estep > 0 ? docs * (double) iterations / estep : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                "%-5s %-16s K=%d P=%d iter=%d total %.2f s: e-step %.2f "
+                    + "m-step %.2f likelihood %.2f io %.2f, %.0f tokens/s",
+                impl, corpus, topics, threads, iterations, total, estep,
+                mstep, likelihood, io, tokensPerSecond());
+        }
+    }
+
+    private int K = 20;
+
+    private int niter = 10;
+
+    private String sampler = "sparse";
+
+    private File dir;
+
+    public static void main(String[] args) throws Exception {
+        Arguments a = new Arguments(OPTIONS, "");
+        a.parse(args);
+        LdaBenchmark lb = new LdaBenchmark();
+        lb.K = (Integer) a.getOption("k", lb.K);
+        lb.niter = (Integer) a.getOption("n", lb.niter);
+        lb.sampler = (String) a.getOption("g", lb.sampler);
+        lb.dir = new File((String) a.getOption("d",
+            System.getProperty("java.io.tmpdir") + "/lda-bench"));
+        lb.dir.mkdirs();
+        String[] impls = ((String) a.getOption("i", join(IMPLS))).trim()
+            .split("\\s*,\\s*");
+        String[] threads = ((String) a.getOption("t", "1,"
+            + Runtime.getRuntime().availableProcessors())).split(",");
+        String out = (String) a.getOption("o", "lda-bench");
+
+        List<String> corpora = new ArrayList<String>();
+        String c = (String) a.getOption("c", null);
+        for (String file : c != null ? c.split(",") : CORPORA) {
+            if (new File(file).isFile()) {
+                corpora.add(file);
+            } else {
+                System.out.println("skipping missing corpus " + file);
+            }
+        }
+        String s = (String) a.getOption("s", null);
+        if (s != null) {
+            for (String spec : s.split(",")) {
+                String[] mvl = spec.split(":");
+                String file = new File(lb.dir, "synthetic-" + spec.replace(':',
+                    'x') + ".dat").getPath();
+                if (!new File(file).isFile()) {
+                    System.out.println("generating " + file);
+                    SyntheticCorpus.write(file, Integer.parseInt(mvl[0]),
+                        Integer.parseInt(mvl[1]), Integer.parseInt(mvl[2]),
+                        lb.K, 0.1, 0.01, 4357);
+                }
+                corpora.add(file);
+            }
+        }
+
+        List<Run> runs = new ArrayList<Run>();
+        for (String corpus : corpora) {
+            for (String impl : impls) {
+                for (String t : threads) {
+                    int P = Integer.parseInt(t.trim());
+                    // the original estimator has no parallel e-step
+                    if (impl.equals("lda") && P > 1) {
+                        continue;
+                    }
+                    Run r = lb.run(impl, corpus, P);
+                    System.out.println(r);
+                    runs.add(r);
+                }
+            }
+        }
+        Writer w = new BufferedWriter(new FileWriter(out + ".csv"));
+        writeCsv(w, runs);
+        w.close();
+        w = new BufferedWriter(new FileWriter(out + ".json"));
+        writeJson(w, runs);
+        w.close();
+    }
+
+    /**
+     * train one estimator on a corpus
+     *
+     * @param impl ldaj, lda, ldam or ldag
+     * @param corpus lda-c file
+     * @param threads
+     * @return measurements
+     * @throws IOException
+     */
+    public Run run(String impl, String corpus, int threads) throws IOException {
+        Run r = new Run();
+        r.impl = impl;
+        r.corpus = new File(corpus).getName();
+        r.topics = K;
+        r.threads = threads;
+
+        String name = impl + "-" + r.corpus + "-t" + threads;
+        File out = new File(dir, name);
+        out.mkdirs();
+        String settings = new File(dir, name + ".settings").getPath();
+        writeSettings(settings, threads);
+
+        // estimators print progress per document
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+        try {
+            Corpus data = new Corpus(corpus);
+            r.docs = data.getNumDocs();
+            r.terms = data.getNumTerms();
+            for (Document doc : data.getDocs()) {
+                r.tokens += doc.getTotal();
+            }
+            clearWatches();
+            long t0 = System.nanoTime();
+            if (impl.equals("ldaj")) {
+                org.knowceans.ldaj.LdaEstimate.main(new String[] {"est",
+                    "0.1", Integer.toString(K), settings, corpus, "seeded",
+                    out.getPath()});
+                r.iterations = countLines(new File(out, "likelihood.dat"));
+                r.lik = lastLikelihood(new File(out, "likelihood.dat"));
+            } else if (impl.equals("lda")) {
+                org.knowceans.lda.LdaEstimate.main(new String[] {"est",
+                    "0.1", Integer.toString(K), settings, corpus, "seeded",
+                    out.getPath()});
+                r.iterations = countLines(new File(out, "likelihood.dat"));
+                r.lik = lastLikelihood(new File(out, "likelihood.dat"));
+            } else if (impl.equals("ldam")) {
+                Newton.THREADS = threads;
+                LdaMain.main(new String[] {"-k", Integer.toString(K), "-i",
+                    Integer.toString(niter), "-e", "0", "-t",
+                    Integer.toString(threads), corpus,
+                    new File(out, "model").getPath()});
+                r.iterations = niter;
+            } else if (impl.equals("ldag")) {
+                runGibbs(r, data, threads);
+            } else {
+                throw new IllegalArgumentException("unknown estimator " + impl);
+            }
+            r.total = (System.nanoTime() - t0) * 1e-9;
+            r.estep = seconds(Utils.ESTEP);
+            r.mstep = seconds(Utils.MSTEP);
+            if (impl.equals("ldag")) {
+                r.likelihood = seconds(Utils.LIKELIHOOD);
+            }
+            r.io = seconds(Utils.IO);
+        } finally {
+            System.setOut(stdout);
+        }
+        return r;
+    }
+
+    /**
+     * Gibbs sweeps as e-step, the likelihood after each sweep
+     */
+    private void runGibbs(Run r, Corpus data, int threads) {
+        int[][] w = new int[data.getNumDocs()][];
+        for (int m = 0; m < w.length; m++) {
+            Document doc = data.getDoc(m);
+            w[m] = new int[doc.getTotal()];
+            for (int n = 0, i = 0; n < doc.getLength(); n++) {
+                for (int c = 0; c < doc.getCount(n); c++) {
+                    w[m][i++] = doc.getWord(n);
+                }
+            }
+        }
+        LdaGibbs lda = new LdaGibbs(w, data.getNumTerms(), K, 50. / K, 0.01,
+            threads, 4357, LdaGibbs.parseSampler(sampler));
+        for (int i = 0; i < niter; i++) {
+            StopWatch.start(Utils.ESTEP);
+            lda.run(1);
+            StopWatch.stop(Utils.ESTEP);
+            StopWatch.start(Utils.LIKELIHOOD);
+            r.lik = lda.logLikelihood();
+            StopWatch.stop(Utils.LIKELIHOOD);
+        }
+        lda.shutdown();
+        r.iterations = niter;
+    }
+
+    /**
+     * settings of the variational estimators for a fixed number of
+     * iterations
+     */
+    private void writeSettings(String filename, int threads)
+        throws IOException {
+        BufferedWriter bw = new BufferedWriter(new FileWriter(filename));
+        bw.write("var max iter 20\n");
+        bw.write("var convergence 1e-6\n");
+        // em runs em max iter + 1 iterations if not converged
+        bw.write("em max iter " + (niter - 1) + "\n");
+        bw.write("em convergence 0\n");
+        bw.write("em threads " + threads + "\n");
+        bw.write("alpha estimate\n");
+        bw.close();
+    }
+
+    private static void clearWatches() {
+        StopWatch.clear(Utils.ESTEP);
+        StopWatch.clear(Utils.MSTEP);
+        StopWatch.clear(Utils.LIKELIHOOD);
+        StopWatch.clear(Utils.IO);
+    }
+
+    private static double seconds(String watch) {
+        return Math.max(0, StopWatch.read(watch)) * 1e-3;
+    }
+
+    private static int countLines(File f) throws IOException {
+        BufferedReader br = new BufferedReader(new FileReader(f));
+        int n = 0;
+        while (br.readLine() != null) {
+            n++;
+        }
+        br.close();
+        return n;
+    }
+
+    private static double lastLikelihood(File f) throws IOException {
+        BufferedReader br = new BufferedReader(new FileReader(f));
+        String line, last = null;
+        while ((line = br.readLine()) != null) {
+            last = line;
+        }
+        br.close();
+        return last != null ? Double.parseDouble(last.split("\t")[0])
+            : Double.NaN;
+    }
+
+    private static String join(String[] s) {
+        StringBuffer b = new StringBuffer();
+        for (int i = 0; i < s.length; i++) {
+            b.append(i > 0 ? "," : "").append(s[i]);
+        }
+        return b.toString();
+    }
+
+    public static void writeCsv(Writer w, List<Run> runs) throws IOException {
+        w.write("impl,corpus,docs,terms,tokens,topics,threads,iterations,"
+            + "total_s,estep_s,mstep_s,likelihood_s,io_s,tokens_per_s,"
+            + "docs_per_s,likelihood\n");
+        for (Run r : runs) {
+            w.write(String.format(Locale.US,
+                "%s,%s,%d,%d,%d,%d,%d,%d,%.3f,%.3f,%.3f,%s,%.3f,%.1f,%.2f,%s\n",
+                r.impl, r.corpus, r.docs, r.terms, r.tokens, r.topics,
+                r.threads, r.iterations, r.total, r.estep, r.mstep,
+                Double.isNaN(r.likelihood) ? "" : String.format(Locale.US,
+                    "%.3f", r.likelihood), r.io, r.tokensPerSecond(),
+                r.docsPerSecond(), Double.isNaN(r.lik) ? "" : Double
+                    .toString(r.lik)));
+        }
+    }
+
+    public static void writeJson(Writer w, List<Run> runs) throws IOException {
+        w.write("[\n");
+        for (int i = 0; i < runs.size(); i++) {
+            Run r = runs.get(i);
+            w.write(String.format(Locale.US, "  {\"impl\": %s, \"corpus\": %s, "
+                + "\"docs\": %d, \"terms\": %d, \"tokens\": %d, "
+                + "\"topics\": %d, \"threads\": %d, \"iterations\": %d, "
+                + "\"total_s\": %.3f, \"estep_s\": %.3f, \"mstep_s\": %.3f, "
+                + "\"likelihood_s\": %s, \"io_s\": %.3f, "
+                + "\"tokens_per_s\": %.1f, \"docs_per_s\": %.2f, "
+                + "\"likelihood\": %s}", BenchmarkRunner.quote(r.impl),
+                BenchmarkRunner.quote(r.corpus), r.docs, r.terms, r.tokens,
+                r.topics, r.threads, r.iterations, r.total, r.estep, r.mstep,
+                Double.isNaN(r.likelihood) ? "null" : String.format(Locale.US,
+                    "%.3f", r.likelihood), r.io, r.tokensPerSecond(),
+                r.docsPerSecond(), Double.isNaN(r.lik) ? "null" : Double
+                    .toString(r.lik)));
+            w.write(i < runs.size() - 1 ? ",\n" : "\n");
+        }
+        w.write("]\n");
+    }
+}
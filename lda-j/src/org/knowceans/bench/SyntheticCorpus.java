@@ -0,0 +1,102 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.bench;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.knowceans.util.AliasTable;
+import org.knowceans.util.RandomSamplers;
+import org.knowceans.util.Xoshiro256;
+
+/**
+ * SyntheticCorpus writes corpora drawn from the LDA generative model in the
+ * lda-c format ("n term:count ..." per document), to benchmark the estimators
+ * on corpora larger than the shipped ones. Topics are drawn from Dir(beta)
+ * over the vocabulary, document proportions from Dir(alpha), and document
+ * lengths uniformly from 1..2L-1, so the corpus size and sparsity are set by
+ * M, V, mean length L and K.
+ *
+ * @author heinrich
+ */
+public class SyntheticCorpus {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.out.println("usage: SyntheticCorpus <file> <M> <V> <L> [K]");
+            return;
+        }
+        write(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+            Integer.parseInt(args[3]), args.length > 4 ? Integer
+                .parseInt(args[4]) : 20, 0.1, 0.01, 4357);
+    }
+
+    /**
+     * @param filename
+     * @param M number of documents
+     * @param V number of terms
+     * @param L mean document length (tokens)
+     * @param K number of topics
+     * @param alpha document-topic concentration
+     * @param beta topic-term concentration
+     * @param seed
+     * @return number of tokens written
+     * @throws IOException
+     */
+    public static long write(String filename, int M, int V, int L, int K,
+        double alpha, double beta, long seed) throws IOException {
+        Random rand = new Xoshiro256(seed);
+        RandomSamplers rs = new RandomSamplers(rand);
+
+        // topics as alias tables over the vocabulary
+        double[] aa = new double[V];
+        double[] phi = new double[V];
+        Arrays.fill(aa, beta);
+        AliasTable[] topics = new AliasTable[K];
+        for (int k = 0; k < K; k++) {
+            rs.randDir(aa, phi, 0);
+            topics[k] = new AliasTable(V);
+            topics[k].build(phi);
+        }
+
+        double[] ak = new double[K];
+        double[] theta = new double[K];
+        Arrays.fill(ak, alpha);
+        int[] counts = new int[V];
+        int[] terms = new int[2 * L];
+        long tokens = 0;
+        BufferedWriter bw = new BufferedWriter(new FileWriter(filename));
+        for (int m = 0; m < M; m++) {
+            rs.randDir(ak, theta, 0);
+            for (int k = 1; k < K; k++) {
+                theta[k] += theta[k - 1];
+            }
+            int length = 1 + rand.nextInt(2 * L - 1);
+            int nterms = 0;
+            for (int n = 0; n < length; n++) {
+                double u = rand.nextDouble() * theta[K - 1];
+                int k = 0;
+                while (k < K - 1 && theta[k] <= u) {
+                    k++;
+                }
+                int t = topics[k].sample(rand);
+                if (counts[t]++ == 0) {
+                    terms[nterms++] = t;
+                }
+            }
+            bw.write(Integer.toString(nterms));
+            for (int i = 0; i < nterms; i++) {
+                bw.write(" " + terms[i] + ":" + counts[terms[i]]);
+                counts[terms[i]] = 0;
+            }
+            bw.write('\n');
+            tokens += length;
+        }
+        bw.close();
+        return tokens;
+    }
+}
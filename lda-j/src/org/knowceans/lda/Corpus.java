@@ -25,12 +25,12 @@
  */
 package org.knowceans.lda;
 
-import java.io.BufferedReader;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.Vector;
 
+import org.knowceans.corpus.CorpusCursor;
+
 /**
  * Represents a corpus of documents.
  * <p>
@@ -55,46 +55,37 @@ public class Corpus {
     static int OFFSET = 0; // offset for reading data
 
     /**
-     * read a file in "pseudo-SVMlight" format. TODO: make robust against
-     * irregular whitespace (duplicate spaces)
+     * read a file in "pseudo-SVMlight" format. Parsing is done by CorpusCursor,
+     * which tolerates irregular whitespace. For corpora that should not be
+     * held in memory, use CorpusStream.
      * 
      * @param dataFilename
      */
     // 2009: corpus* read_data(char* data_filename)
     public void read(String dataFilename) {
-        int length, count, word, n, nd, nw;
+        int length, word, n, nd, nw;
 
         System.out.println("reading data from " + dataFilename);
 
         try {
             Vector<Document> cdocs = new Vector<Document>();
-            BufferedReader br = new BufferedReader(new FileReader(dataFilename));
+            CorpusCursor cursor = new CorpusCursor(dataFilename, OFFSET);
             nd = 0;
             nw = 0;
-            String line = "";
-            while ((line = br.readLine()) != null) {
-                String[] fields = line.split(" ");
-                if (fields[0].equals("") || fields[0].equals(""))
-                    continue;
+            while (cursor.next()) {
                 Document d = new Document();
                 cdocs.add(d);
-                length = Integer.parseInt(fields[0]);
+                length = cursor.getNumTerms();
                 d.setLength(length);
-                d.setTotal(0);
+                d.setTotal(cursor.getNumWords());
                 d.setWords(new int[length]);
                 d.setCounts(new int[length]);
+                System.arraycopy(cursor.getTerms(), 0, d.getWords(), 0, length);
+                System.arraycopy(cursor.getCounts(), 0, d.getCounts(), 0,
+                    length);
 
                 for (n = 0; n < length; n++) {
-                    // fscanf(fileptr, "%10d:%10d", &word, &count);
-                    String[] numbers = fields[n + 1].split(":");
-                    if (numbers[0].equals("") || numbers[0].equals(""))
-                        continue;
-                    word = Integer.parseInt(numbers[0]);
-                    count = (int) Float.parseFloat(numbers[1]);
-                    word = word - OFFSET;
-                    d.setWord(n, word);
-                    d.setCount(n, count);
-                    d.setTotal(d.getTotal() + count);
+                    word = d.getWord(n);
                     if (word >= nw) {
                         nw = word + 1;
                     }
@@ -106,6 +97,7 @@ public class Corpus {
 
                 nd++;
             }
+            cursor.close();
             numDocs = nd;
             numTerms = nw;
             docs = cdocs.toArray(new Document[] {});
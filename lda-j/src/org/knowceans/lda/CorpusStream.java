@@ -0,0 +1,202 @@
+/*
+ * (C) Copyright 2004-2009, Gregor Heinrich (gregor :: arbylon : net)
+ * (This file is part of the lda-j (org.knowceans.ldaj.*) experimental software
+ * package, a port of lda-c Copyright David Blei.)
+ */
+/*
+ * lda-j is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ */
+/*
+ * lda-j is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ */
+/*
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.lda;
+
+import java.io.IOException;
+
+import org.knowceans.corpus.CorpusCursor;
+
+/**
+ * Sequential reader over a corpus file in "pseudo-SVMlight" format (see
+ * Corpus.read) that keeps only the current documents in memory. Documents are
+ * parsed by a CorpusCursor (without String allocation) into caller-provided
+ * Document objects whose arrays are reused and grown as needed. The stream can
+ * be reset for multiple passes over the file.
+ *
+ * @author heinrich
+ */
+public class CorpusStream {
+
+    private String dataFilename;
+
+    private CorpusCursor cursor;
+
+    private int numDocs = -1;
+
+    private int numTerms;
+
+    private long numWords;
+
+    private int maxCorpusLength;
+
+    /**
+     * open a stream over the file
+     *
+     * @param dataFilename
+     * @throws IOException
+     */
+    public CorpusStream(String dataFilename) throws IOException {
+        this.dataFilename = dataFilename;
+        reset();
+    }
+
+    /**
+     * pass over the file to determine the number of documents, terms, tokens
+     * and the maximum document length, then reset the stream.
+     *
+     * @throws IOException
+     */
+    public void scan() throws IOException {
+        Document doc = new Document();
+        int nd = 0, nw = 0, maxlen = 0;
+        long ntok = 0;
+        reset();
+        while (next(doc)) {
+            ntok += doc.getTotal();
+            for (int n = 0; n < doc.getLength(); n++) {
+                if (doc.getWord(n) >= nw) {
+                    nw = doc.getWord(n) + 1;
+                }
+            }
+            if (doc.getLength() > maxlen) {
+                maxlen = doc.getLength();
+            }
+            nd++;
+        }
+        numDocs = nd;
+        numTerms = nw;
+        numWords = ntok;
+        maxCorpusLength = maxlen;
+        reset();
+    }
+
+    /**
+     * restart reading at the beginning of the file
+     *
+     * @throws IOException
+     */
+    public void reset() throws IOException {
+        if (cursor == null) {
+            cursor = new CorpusCursor(dataFilename, Corpus.OFFSET);
+        } else {
+            cursor.reset();
+        }
+    }
+
+    /**
+     * read the next document into doc.
+     *
+     * @param doc document whose arrays are reused
+     * @return false at the end of the file
+     * @throws IOException
+     */
+    public boolean next(Document doc) throws IOException {
+        if (!cursor.next()) {
+            return false;
+        }
+        int length = cursor.getNumTerms();
+        if (doc.getWords().length < length) {
+            doc.setWords(new int[length]);
+            doc.setCounts(new int[length]);
+        }
+        System.arraycopy(cursor.getTerms(), 0, doc.getWords(), 0, length);
+        System.arraycopy(cursor.getCounts(), 0, doc.getCounts(), 0, length);
+        doc.setLength(length);
+        doc.setTotal(cursor.getNumWords());
+        return true;
+    }
+
+    /**
+     * read the next documents into the batch array, allocating missing
+     * documents.
+     *
+     * @param batch
+     * @return number of documents read, 0 at the end of the file
+     * @throws IOException
+     */
+    public int nextBatch(Document[] batch) throws IOException {
+        int n;
+        for (n = 0; n < batch.length; n++) {
+            if (batch[n] == null) {
+                batch[n] = new Document();
+            }
+            if (!next(batch[n])) {
+                break;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * close the underlying file
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        if (cursor != null) {
+            cursor.close();
+            cursor = null;
+        }
+    }
+
+    /**
+     * @return number of documents (after scan(), -1 before)
+     */
+    public int getNumDocs() {
+        return numDocs;
+    }
+
+    /**
+     * @return number of terms (after scan())
+     */
+    public int getNumTerms() {
+        return numTerms;
+    }
+
+    /**
+     * @return number of tokens, i.e., the sum of the term counts (after
+     *         scan())
+     */
+    public long getNumWords() {
+        return numWords;
+    }
+
+    /**
+     * @return maximum number of unique terms in a document (after scan())
+     */
+    public int getMaxCorpusLength() {
+        return maxCorpusLength;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return "CorpusStream {file=" + dataFilename + " numDocs=" + numDocs
+            + " numTerms=" + numTerms + " numWords=" + numWords + "}";
+    }
+}
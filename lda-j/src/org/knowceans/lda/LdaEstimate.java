@@ -40,6 +40,7 @@ import java.text.DecimalFormat;
 import java.text.NumberFormat;
 
 import org.knowceans.util.Cokus;
+import org.knowceans.util.StopWatch;
 
 /**
  * lda parameter estimation
@@ -220,7 +221,9 @@ public class LdaEstimate {
             varGamma = new double[corpus.getNumDocs()][(int) K];
             model = initialModel(start, corpus, (int) K, INITIAL_ALPHA);
             filename = directory + "/000";
+            StopWatch.start(Utils.IO);
             model.save(filename);
+            StopWatch.stop(Utils.IO);
             i = 0;
             NumberFormat nf = new DecimalFormat("000");
             String itername = "";
@@ -232,22 +235,27 @@ public class LdaEstimate {
                 nextModel = new LdaModel(model.getNumTerms(), model
                     .getNumTopics());
                 nextModel.setAlpha(INITIAL_ALPHA);
+                StopWatch.start(Utils.ESTEP);
                 for (d = 0; d < corpus.getNumDocs(); d++) {
                     if ((d % 100) == 0)
                         System.out.println("document " + d);
                     likelihood += docEm(corpus.getDoc(d), varGamma[d], model,
                         nextModel);
                 }
+                StopWatch.stop(Utils.ESTEP);
+                StopWatch.start(Utils.MSTEP);
                 if (ESTIMATE_ALPHA == 1)
                     LdaAlpha.maximizeAlpha(varGamma, nextModel, corpus
                         .getNumDocs());
                 model.free();
                 model = nextModel;
+                StopWatch.stop(Utils.MSTEP);
                 assert likelihoodOld != 0;
                 converged = (likelihoodOld - likelihood) / likelihoodOld;
                 likelihoodOld = likelihood;
                 // fprintf(likelihood_file, "%10.10f\t%5.5e\n", likelihood,
                 // converged);
+                StopWatch.start(Utils.IO);
                 likelihoodFile.write(likelihood + "\t" + converged + "\n");
                 likelihoodFile.flush();
 
@@ -261,7 +269,9 @@ public class LdaEstimate {
                     saveGamma(filename, varGamma, corpus.getNumDocs(), model
                         .getNumTopics());
                 }
+                StopWatch.stop(Utils.IO);
             }
+            StopWatch.start(Utils.IO);
             itername = nf.format(i);
             filename = directory + "/" + itername;
             model.save(filename);
@@ -269,6 +279,7 @@ public class LdaEstimate {
             saveGamma(filename, varGamma, corpus.getNumDocs(), model
                 .getNumTopics());
             likelihoodFile.close();
+            StopWatch.stop(Utils.IO);
             return model;
         } catch (IOException e) {
             e.printStackTrace();
@@ -379,7 +390,9 @@ public class LdaEstimate {
             INITIAL_ALPHA = Float.parseFloat(args[1]);
             K = Integer.parseInt(args[2]);
             readSettings(args[3]);
+            StopWatch.start(Utils.IO);
             corpus = new Corpus(args[4]);
+            StopWatch.stop(Utils.IO);
             boolean a = new File(args[6]).mkdir();
 
             System.out.println("LDA estimation. Settings:");
@@ -46,9 +46,26 @@ public class LdaInference {
      */
     public static double ldaInference(Document doc, LdaModel model,
         double[] varGamma, double[][] phi) {
+        return ldaInference(doc, model, varGamma, phi,
+            new double[model.getNumTopics()]);
+    }
+
+    /**
+     * variational inference with a caller-provided buffer, so concurrent
+     * callers can reuse their own buffers across documents.
+     * 
+     * @param doc
+     * @param model
+     * @param varGamma [K] variational dirichlet parameters (output)
+     * @param phi [at least doc length][K] variational multinomials (output)
+     * @param buf [K] scratch buffer
+     * @return likelihood bound
+     */
+    public static double ldaInference(Document doc, LdaModel model,
+        double[] varGamma, double[][] phi, double[] buf) {
         double converged = 1;
         double phisum = 0, likelihood = 0, likelihoodOld = Double.NEGATIVE_INFINITY;
-        double[] oldphi = new double[model.getNumTopics()];
+        double[] oldphi = buf;
         int k, n, varIter;
 
         assert model.getNumTopics() > 0;
@@ -86,7 +103,7 @@ public class LdaInference {
                         * (phi[n][k] - oldphi[k]);
                 }
             }
-            likelihood = computeLikelihood(doc, model, phi, varGamma);
+            likelihood = computeLikelihood(doc, model, phi, varGamma, buf);
             assert likelihoodOld != 0;
             converged = (likelihoodOld - likelihood) / likelihoodOld;
             likelihoodOld = likelihood;
@@ -99,8 +116,17 @@ public class LdaInference {
      */
     public static double computeLikelihood(Document doc, LdaModel model,
         double[][] phi, double[] varGamma) {
+        return computeLikelihood(doc, model, phi, varGamma,
+            new double[model.getNumTopics()]);
+    }
+
+    /*
+     * compute likelihood bound, using buf [K] for the digammas
+     */
+    public static double computeLikelihood(Document doc, LdaModel model,
+        double[][] phi, double[] varGamma, double[] buf) {
         double likelihood = 0, digsum = 0, varGammaSum = 0;// , x;
-        double[] dig = new double[model.getNumTopics()];
+        double[] dig = buf;
         int k, n, message = 0;
 
         for (k = 0; k < model.getNumTopics(); k++) {
@@ -31,22 +31,39 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
-import java.util.Hashtable;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.StringTokenizer;
-import java.util.Vector;
 
 /**
  * SearchEnglet -- a small search engine that shows the topics for a given term
  * combination.
+ * <p>
+ * After construction, parse() and infer() only read the model and vocabulary
+ * and keep their buffers per thread, so they can be called concurrently (see
+ * SearchServer).
  * 
  * @author heinrich
  */
 public class SearchEnglet {
 
-    Hashtable<String, Integer> vocab;
+    /**
+     * read-only after loading
+     */
+    HashMap<String, Integer> vocab;
 
     private LdaModel model;
 
+    /**
+     * phi buffer per thread, rows beyond the document length are unused
+     */
+    private ThreadLocal<double[][]> phis = new ThreadLocal<double[][]>();
+
+    /**
+     * scratch buffer per thread
+     */
+    private ThreadLocal<double[]> bufs = new ThreadLocal<double[]>();
+
     public static void main(String[] args) {
         System.out.println("LDA tiny search engine.");
 
@@ -84,13 +101,14 @@ public class SearchEnglet {
     public void loadVocabulary(String vocabulary) {
         try {
             BufferedReader br = new BufferedReader(new FileReader(vocabulary));
-            vocab = new Hashtable<String, Integer>();
+            vocab = new HashMap<String, Integer>();
             String line;
             int i = 0;
             while ((line = br.readLine()) != null) {
                 if (line.length() > 0)
                     vocab.put(line.toLowerCase(), i++);
             }
+            br.close();
         } catch (FileNotFoundException e) {
             e.printStackTrace();
         } catch (IOException e) {
@@ -103,23 +121,11 @@ public class SearchEnglet {
             BufferedReader br = new BufferedReader(new InputStreamReader(
                 System.in));
             String line;
-            StringTokenizer st;
             System.out.println("Query (.q to quit):");
             while ((line = br.readLine()) != null) {
                 if (line.equals(".q"))
                     break;
-                st = new StringTokenizer(line.toLowerCase());
-                Document doc = new Document(st.countTokens());
-                int ix = 0;
-                while (st.hasMoreElements()) {
-                    Integer a = vocab.get(st.nextElement());
-                    if (a != null) {
-                        doc.setWord(ix, a);
-                        doc.setCount(ix, 1);
-                        doc.compile();
-                        ix++;
-                    }
-                }
+                Document doc = parse(line);
                 NumberFormat nf = new DecimalFormat("0.0000");
                 if (doc.getLength() > 0) {
 
@@ -139,15 +145,61 @@ public class SearchEnglet {
     }
 
     /**
-     * inference only
+     * convert a query to a document of the known terms, with the counts of
+     * repeated terms summed up.
+     * 
+     * @param query
+     * @return
+     */
+    public Document parse(String query) {
+        StringTokenizer st = new StringTokenizer(query.toLowerCase());
+        int[] ids = new int[st.countTokens()];
+        int nids = 0;
+        while (st.hasMoreTokens()) {
+            Integer a = vocab.get(st.nextToken());
+            if (a != null) {
+                ids[nids++] = a;
+            }
+        }
+        Arrays.sort(ids, 0, nids);
+        int length = 0;
+        for (int i = 0; i < nids; i++) {
+            if (i == 0 || ids[i] != ids[i - 1])
+                length++;
+        }
+        Document doc = new Document(length);
+        int ix = -1;
+        for (int i = 0; i < nids; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                ix++;
+                doc.setWord(ix, ids[i]);
+            }
+            doc.setCount(ix, doc.getCount(ix) + 1);
+        }
+        doc.setTotal(nids);
+        return doc;
+    }
+
+    /**
+     * inference only, using the phi buffer of the calling thread
      */
     public double infer(Document doc, double[] varGamma) {
-        double[][] phi;
-        double likelihood;
+        int K = model.getNumTopics();
+        double[][] phi = phis.get();
+        if (phi == null || phi.length < doc.getLength()) {
+            phi = new double[Math.max(doc.getLength(), 64)][K];
+            phis.set(phi);
+            bufs.set(new double[K]);
+        }
+        return LdaInference.ldaInference(doc, model, varGamma, phi, bufs
+            .get());
+    }
 
-        phi = new double[doc.getLength()][model.getNumTopics()];
-        likelihood = LdaInference.ldaInference(doc, model, varGamma, phi);
-        return likelihood;
+    /**
+     * @return the model
+     */
+    public LdaModel getModel() {
+        return model;
     }
 
 }
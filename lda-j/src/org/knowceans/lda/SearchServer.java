@@ -0,0 +1,364 @@
+/*
+ * (C) Copyright 2005-2026, Gregor Heinrich (gregor :: arbylon : net) (This
+ * file is part of the lda-j (org.knowceans.lda.*) experimental software
+ * package.)
+ */
+/*
+ * lda-j is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ */
+/*
+ * lda-j is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ */
+/*
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.lda;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * SearchServer -- a long-running inference service around a SearchEnglet. It
+ * listens on a local socket and folds batches of documents into the model
+ * concurrently on a fixed thread pool, each thread with its own inference
+ * buffers.
+ * <p>
+ * The protocol is line-based: each line of a request is a document (plain
+ * text, unknown words are ignored), an empty line ends the batch. The server
+ * answers with one line of topic proportions (normalised variational
+ * dirichlet parameters) per document, followed by an empty line. The line
+ * ".stats" returns the counters (documents, batches, throughput and the p50
+ * and p99 latency of documents and batches over a recent window), ".q" closes
+ * the connection. If a batch fails, the server answers with a line
+ * "error: <message>" and closes the connection.
+ *
+ * @author heinrich
+ */
+public class SearchServer {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.out.println("Usage:");
+            System.out
+                .println("java org.knowceans.lda.SearchServer <model_noextension> <settings_file> <vocabulary_file> <port> [threads]");
+            System.out.println("Example:");
+            System.out
+                .println("java org.knowceans.lda.SearchServer berry.model/034 settings.txt berry/vocab.txt 7070 8");
+            return;
+        }
+        int nthreads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime
+            .getRuntime().availableProcessors();
+        SearchEnglet se = new SearchEnglet(args[0], args[1], args[2]);
+        SearchServer server = new SearchServer(se, Integer.parseInt(args[3]),
+            nthreads);
+        server.start();
+        System.out.println("LDA inference server on port "
+            + server.getPort() + ", " + nthreads + " threads.");
+    }
+
+    private SearchEnglet engine;
+
+    private int port;
+
+    private int nthreads;
+
+    private ServerSocket serverSocket;
+
+    /**
+     * inference tasks
+     */
+    private ExecutorService workers;
+
+    /**
+     * one thread per connection
+     */
+    private ExecutorService connections;
+
+    private long startTime;
+
+    private AtomicLong numDocs = new AtomicLong();
+
+    private AtomicLong numBatches = new AtomicLong();
+
+    private LatencyWindow docLatency = new LatencyWindow(1 << 14);
+
+    private LatencyWindow batchLatency = new LatencyWindow(1 << 12);
+
+    /**
+     * @param engine search englet with the model and vocabulary
+     * @param port local port, 0 for any free port
+     * @param nthreads number of inference threads
+     */
+    public SearchServer(SearchEnglet engine, int port, int nthreads) {
+        this.engine = engine;
+        this.port = port;
+        this.nthreads = nthreads;
+    }
+
+    /**
+     * open the socket on the loopback interface and start accepting
+     * connections in a background thread.
+     *
+     * @throws IOException
+     */
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress
+            .getByName("localhost"));
+        port = serverSocket.getLocalPort();
+        workers = Executors.newFixedThreadPool(nthreads);
+        connections = Executors.newCachedThreadPool();
+        startTime = System.nanoTime();
+        Thread acceptor = new Thread("SearchServer-" + port) {
+            public void run() {
+                accept();
+            }
+        };
+        acceptor.start();
+    }
+
+    /**
+     * close the socket and stop the threads.
+     *
+     * @throws IOException
+     */
+    public void stop() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                connections.execute(new Runnable() {
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+            } catch (SocketException e) {
+                // closed by stop()
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * answer the requests of one connection
+     *
+     * @param socket
+     */
+    private void serve(Socket socket) {
+        BufferedWriter bw = null;
+        try {
+            BufferedReader br = new BufferedReader(new InputStreamReader(
+                socket.getInputStream(), "UTF-8"));
+            bw = new BufferedWriter(new OutputStreamWriter(
+                socket.getOutputStream(), "UTF-8"));
+            NumberFormat nf = new DecimalFormat("0.000000");
+            List<String> batch = new ArrayList<String>();
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (batch.isEmpty() && line.equals(".q")) {
+                    break;
+                } else if (batch.isEmpty() && line.equals(".stats")) {
+                    bw.write(getStats());
+                    bw.newLine();
+                    bw.newLine();
+                    bw.flush();
+                } else if (line.length() > 0) {
+                    batch.add(line);
+                } else {
+                    answer(batch, bw, nf);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                answer(batch, bw, nf);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            error(bw, e.getMessage());
+        } catch (InterruptedException e) {
+            // server stopped
+            error(bw, "server stopped");
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * tell the client that its request failed, if the connection still
+     * works
+     *
+     * @param bw
+     * @param message
+     */
+    private void error(BufferedWriter bw, String message) {
+        if (bw == null) {
+            return;
+        }
+        try {
+            bw.write("error: " + message);
+            bw.newLine();
+            bw.flush();
+        } catch (IOException e) {
+            // connection broken
+        }
+    }
+
+    /**
+     * infer the batch concurrently and write the topic proportions in the
+     * order of the documents.
+     */
+    private void answer(List<String> batch, BufferedWriter bw,
+        NumberFormat nf) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        List<Future<double[]>> results = new ArrayList<Future<double[]>>(
+            batch.size());
+        for (final String text : batch) {
+            final long submitted = System.nanoTime();
+            results.add(workers.submit(new Callable<double[]>() {
+                public double[] call() {
+                    double[] gamma = infer(text);
+                    docLatency.add(System.nanoTime() - submitted);
+                    return gamma;
+                }
+            }));
+        }
+        for (Future<double[]> result : results) {
+            double[] theta;
+            try {
+                theta = result.get();
+            } catch (ExecutionException e) {
+                throw new IOException("inference failed: " + e.getCause());
+            }
+            for (int k = 0; k < theta.length; k++) {
+                if (k > 0)
+                    bw.write(' ');
+                bw.write(nf.format(theta[k]));
+            }
+            bw.newLine();
+        }
+        bw.newLine();
+        bw.flush();
+        numDocs.addAndGet(batch.size());
+        numBatches.incrementAndGet();
+        batchLatency.add(System.nanoTime() - start);
+    }
+
+    /**
+     * @param text
+     * @return topic proportions of the document
+     */
+    public double[] infer(String text) {
+        Document doc = engine.parse(text);
+        double[] gamma = new double[engine.getModel().getNumTopics()];
+        engine.infer(doc, gamma);
+        double sum = 0;
+        for (int k = 0; k < gamma.length; k++) {
+            sum += gamma[k];
+        }
+        for (int k = 0; k < gamma.length; k++) {
+            gamma[k] /= sum;
+        }
+        return gamma;
+    }
+
+    /**
+     * @return counters as one line of key=value pairs (times in
+     *         milliseconds)
+     */
+    public String getStats() {
+        double elapsed = (System.nanoTime() - startTime) * 1e-9;
+        NumberFormat nf = new DecimalFormat("0.000");
+        return "docs=" + numDocs.get() + " batches=" + numBatches.get()
+            + " docs/s=" + nf.format(numDocs.get() / elapsed)
+            + " doc.p50=" + nf.format(docLatency.quantile(0.5) * 1e-6)
+            + " doc.p99=" + nf.format(docLatency.quantile(0.99) * 1e-6)
+            + " batch.p50=" + nf.format(batchLatency.quantile(0.5) * 1e-6)
+            + " batch.p99=" + nf.format(batchLatency.quantile(0.99) * 1e-6);
+    }
+
+    /**
+     * @return the local port (after start() the actual one)
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * LatencyWindow keeps the most recent latencies in a ring buffer that is
+     * written without locking; quantiles are computed from a sorted snapshot.
+     */
+    static class LatencyWindow {
+
+        private AtomicLongArray ring;
+
+        private AtomicLong count = new AtomicLong();
+
+        /**
+         * @param size power of 2
+         */
+        LatencyWindow(int size) {
+            ring = new AtomicLongArray(size);
+        }
+
+        void add(long nanos) {
+            long i = count.getAndIncrement();
+            ring.set((int) (i & (ring.length() - 1)), nanos);
+        }
+
+        /**
+         * @param q
+         * @return q-quantile of the window in nanoseconds, 0 if empty
+         */
+        long quantile(double q) {
+            int n = (int) Math.min(count.get(), ring.length());
+            if (n == 0) {
+                return 0;
+            }
+            long[] values = new long[n];
+            for (int i = 0; i < n; i++) {
+                values[i] = ring.get(i);
+            }
+            Arrays.sort(values);
+            return values[(int) Math.min(n - 1, Math.floor(q * n))];
+        }
+    }
+}
@@ -41,6 +41,18 @@ import org.knowceans.util.ArrayIo;
  * @author heinrich
  */
 public class Utils {
+
+    /**
+     * StopWatch channels of the phases of em, accumulated over a run of the
+     * estimators in lda, ldaj and ldam (e.g., read by LdaBenchmark). The
+     * variational estimators compute the likelihood bound of a document inside
+     * its inference loop (for convergence), so it is part of ESTEP there;
+     * LIKELIHOOD is only used where the likelihood is a separate pass, as in
+     * the Gibbs sampler of the benchmark.
+     */
+    public static final String ESTEP = "estep", MSTEP = "mstep",
+        LIKELIHOOD = "likelihood", IO = "io";
+
     /*
      * given log(a) and log(b), return log(a + b)
      */
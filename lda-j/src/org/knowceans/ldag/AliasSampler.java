@@ -0,0 +1,139 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.ldag;
+
+import java.util.Random;
+
+import org.knowceans.util.AliasTable;
+
+/**
+ * Metropolis-Hastings sampler with alias tables (AliasLDA, Li et al. 2014).
+ * The full conditional is split into the sparse document part
+ * <p>
+ * nmk (ntk + beta) / (nk + V beta),
+ * <p>
+ * which is computed exactly over the non-zero topics of the document, and the
+ * dense word part alpha (ntk + beta) / (nk + V beta), which is drawn in O(1)
+ * from an alias table of the term. The alias tables are stale (built from
+ * the counts at some earlier time), which the Metropolis-Hastings acceptance
+ * step corrects. A table is rebuilt after K draws, so its O(K) build costs
+ * O(1) per draw, and a token costs O(K_m) for K_m topics of the document.
+ * <p>
+ * The alias tables are shared between the samplers of all blocks (a term is
+ * sampled by one block at a time) and created when a term is first sampled.
+ * They need memory of V * K * 24 bytes.
+ *
+ * @author heinrich
+ */
+public class AliasSampler extends TopicSampler {
+
+    /**
+     * Metropolis-Hastings steps per token
+     */
+    public static int MH_STEPS = 2;
+
+    private AliasTable[] tables;
+
+    /**
+     * weights of a table being built
+     */
+    private double[] wbuf;
+
+    /**
+     * cumulative masses of the document part
+     */
+    private double[] dcum;
+
+    /**
+     * @param tables alias tables [V], shared
+     */
+    public AliasSampler(int[][] nmk, int[][] nwk, int[] nk, int V,
+        double alpha, double beta, AliasTable[] tables) {
+        super(nmk, nwk, nk, V, alpha, beta);
+        this.tables = tables;
+        wbuf = new double[K];
+        dcum = new double[K];
+    }
+
+    @Override
+    public void beginDocument(int m, int[] zm) {
+        initDocTopics(zm);
+    }
+
+    @Override
+    public int resample(int m, int t, int k, Random rand) {
+        int[] nm = nmk[m];
+        int[] nt = nwk[t];
+        nm[k]--;
+        nt[k]--;
+        nk[k]--;
+        if (nm[k] == 0) {
+            removeDocTopic(k);
+        }
+        AliasTable table = table(t);
+
+        double pd = 0;
+        for (int i = 0; i < docSize; i++) {
+            int kk = docTopics[i];
+            pd += nm[kk] * (nt[kk] + beta) / (nk[kk] + vbeta);
+            dcum[i] = pd;
+        }
+        double pw = table.getSum();
+        for (int step = 0; step < MH_STEPS; step++) {
+            int prop;
+            double u = rand.nextDouble() * (pd + pw);
+            if (u < pd) {
+                int i;
+                for (i = 0; i < docSize - 1; i++) {
+                    if (u < dcum[i]) {
+                        break;
+                    }
+                }
+                prop = docTopics[i];
+            } else {
+                prop = table.sample(rand);
+            }
+            if (prop == k) {
+                continue;
+            }
+            // target p ~ (nm + alpha) c, proposal q ~ nm c + a_stale
+            double cprop = (nt[prop] + beta) / (nk[prop] + vbeta);
+            double ck = (nt[k] + beta) / (nk[k] + vbeta);
+            double accept = (nm[prop] + alpha) * cprop
+                * (nm[k] * ck + table.getWeight(k))
+                / ((nm[k] + alpha) * ck * (nm[prop] * cprop + table
+                    .getWeight(prop)));
+            if (accept >= 1 || rand.nextDouble() < accept) {
+                k = prop;
+            }
+        }
+        nm[k]++;
+        nt[k]++;
+        nk[k]++;
+        if (nm[k] == 1) {
+            addDocTopic(k);
+        }
+        return k;
+    }
+
+    /**
+     * @param t
+     * @return the alias table of term t, (re)built if it is missing or stale
+     */
+    private AliasTable table(int t) {
+        AliasTable table = tables[t];
+        if (table == null) {
+            table = new AliasTable(K);
+            tables[t] = table;
+        } else if (table.getDraws() < K) {
+            return table;
+        }
+        int[] nt = nwk[t];
+        for (int k = 0; k < K; k++) {
+            wbuf[k] = alpha * (nt[k] + beta) / (nk[k] + vbeta);
+        }
+        table.build(wbuf);
+        return table;
+    }
+}
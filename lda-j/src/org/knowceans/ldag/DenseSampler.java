@@ -0,0 +1,50 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.ldag;
+
+import java.util.Random;
+
+/**
+ * standard O(K) sampler: cumulates the full conditional over all topics and
+ * searches it linearly.
+ *
+ * @author heinrich
+ */
+public class DenseSampler extends TopicSampler {
+
+    /**
+     * cumulative weights
+     */
+    private double[] pk;
+
+    public DenseSampler(int[][] nmk, int[][] nwk, int[] nk, int V,
+        double alpha, double beta) {
+        super(nmk, nwk, nk, V, alpha, beta);
+        pk = new double[K];
+    }
+
+    @Override
+    public int resample(int m, int t, int k, Random rand) {
+        int[] nm = nmk[m];
+        int[] nt = nwk[t];
+        nm[k]--;
+        nt[k]--;
+        nk[k]--;
+        double sum = 0;
+        for (k = 0; k < K; k++) {
+            sum += (nm[k] + alpha) * (nt[k] + beta) / (nk[k] + vbeta);
+            pk[k] = sum;
+        }
+        double u = rand.nextDouble() * sum;
+        for (k = 0; k < K - 1; k++) {
+            if (u < pk[k]) {
+                break;
+            }
+        }
+        nm[k]++;
+        nt[k]++;
+        nk[k]++;
+        return k;
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.ldag;
+
+import static org.knowceans.util.Gamma.lgamma;
+
+import java.util.Random;
+
+import org.knowceans.corpus.DisjointDocTerms;
+import org.knowceans.corpus.NumCorpus;
+import org.knowceans.util.AliasTable;
+import org.knowceans.util.CokusRandom;
+import org.knowceans.util.ParallelFor;
+import org.knowceans.util.StopWatch;
+
+/**
+ * collapsed Gibbs sampler for LDA (Griffiths and Steyvers 2004) that samples
+ * in parallel on P disjoint document and term blocks (DisjointDocTerms). A
+ * sweep consists of P epochs: in epoch e, thread p samples the tokens of
+ * document block p whose terms are in term block (p + e) mod P, so within an
+ * epoch no two threads touch the same rows of the document-topic counts nmk
+ * or the term-topic counts nwk, which are updated without locks. Only the
+ * topic totals nk are shared: each thread works on its own copy during an
+ * epoch, and the copies are reconciled at the barrier between epochs.
+ * <p>
+ * The topic of a token is drawn by a TopicSampler per block: DENSE is the
+ * standard O(K) sampler, SPARSE the SparseLDA bucket sampler and ALIAS the
+ * Metropolis-Hastings alias table sampler, the latter two with a per-token
+ * cost sublinear in K.
+ *
+ * @author heinrich
+ */
+public class LdaGibbs extends ParallelFor {
+
+    public static void main(String[] args) {
+        String corpus = args.length > 0 ? args[0] : "berry95/berry95";
+        int K = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int P = args.length > 2 ? Integer.parseInt(args[2]) : Runtime
+            .getRuntime().availableProcessors();
+        int niter = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        int sampler = args.length > 4 ? parseSampler(args[4]) : DENSE;
+
+        NumCorpus nc = new NumCorpus(corpus);
+        int[][] w = nc.getDocWords(new CokusRandom());
+        LdaGibbs lda = new LdaGibbs(w, nc.getNumTerms(), K, 50. / K, 0.01, P,
+            CokusRandom.DEFAULTSEED, sampler);
+        System.out.println(lda);
+        StopWatch.start("gibbs");
+        for (int i = 0; i < niter; i += 10) {
+            lda.run(Math.min(10, niter - i));
+            System.out.println("iteration " + (i + Math.min(10, niter - i))
+                + " log likelihood = " + lda.logLikelihood() + " ["
+                + StopWatch.format(StopWatch.read("gibbs")) + "]");
+        }
+        lda.shutdown();
+    }
+
+    /**
+     * topic samplers
+     */
+    public static final int DENSE = 0, SPARSE = 1, ALIAS = 2;
+
+    private static final String[] SAMPLERS = {"dense", "sparse", "alias"};
+
+    /**
+     * @param name dense, sparse or alias
+     * @return sampler constant
+     */
+    public static int parseSampler(String name) {
+        for (int i = 0; i < SAMPLERS.length; i++) {
+            if (SAMPLERS[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("unknown sampler: " + name);
+    }
+
+    /**
+     * tokens w[m][n]
+     */
+    private int[][] w;
+
+    /**
+     * topics z[m][n]
+     */
+    private int[][] z;
+
+    private int M;
+
+    private int V;
+
+    private int K;
+
+    private double alpha;
+
+    private double beta;
+
+    private int P;
+
+    /**
+     * document-topic counts
+     */
+    private int[][] nmk;
+
+    /**
+     * term-topic counts (term-major, so threads own whole rows)
+     */
+    private int[][] nwk;
+
+    /**
+     * topic totals (reconciled between epochs)
+     */
+    private int[] nk;
+
+    /**
+     * topic totals per thread during an epoch
+     */
+    private int[][] nkp;
+
+    /**
+     * documents per block, int[p][i] -> m
+     */
+    private int[][] docBlocks;
+
+    /**
+     * token positions per term block, int[q][m][i] -> n
+     */
+    private int[][][] tokenBlocks;
+
+    /**
+     * load imbalance of the blocks (see DisjointDocTerms.getImbalance)
+     */
+    private double imbalance;
+
+    /**
+     * current epoch
+     */
+    private int epoch;
+
+    /**
+     * random number generator per block
+     */
+    private Random[] rands;
+
+    /**
+     * topic sampler per block
+     */
+    private TopicSampler[] samplers;
+
+    private int sampler;
+
+    /**
+     * number of sweeps done
+     */
+    private int iter;
+
+    /**
+     * initialise the sampler with random topics
+     *
+     * @param w tokens of each document
+     * @param V number of terms
+     * @param K number of topics
+     * @param alpha symmetric document-topic hyperparameter
+     * @param beta symmetric topic-term hyperparameter
+     * @param P number of blocks and threads
+     * @param seed
+     */
+    public LdaGibbs(int[][] w, int V, int K, double alpha, double beta,
+        int P, long seed) {
+        this(w, V, K, alpha, beta, P, seed, DENSE);
+    }
+
+    /**
+     * initialise the sampler with random topics
+     *
+     * @param w tokens of each document
+     * @param V number of terms
+     * @param K number of topics
+     * @param alpha symmetric document-topic hyperparameter
+     * @param beta symmetric topic-term hyperparameter
+     * @param P number of blocks and threads
+     * @param seed
+     * @param sampler DENSE, SPARSE or ALIAS
+     */
+    public LdaGibbs(int[][] w, int V, int K, double alpha, double beta,
+        int P, long seed, int sampler) {
+        super(P);
+        this.w = w;
+        this.M = w.length;
+        this.V = V;
+        this.K = K;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.P = P;
+        this.sampler = sampler;
+
+        DisjointDocTerms djt = new DisjointDocTerms(w, V);
+        docBlocks = djt.getDisjointDocuments(P);
+        tokenBlocks = djt.getDisjointTokens(P);
+        imbalance = djt.getImbalance(P);
+
+        rands = new Random[P];
+        for (int p = 0; p < P; p++) {
+            rands[p] = new CokusRandom(seed + p);
+        }
+        nmk = new int[M][K];
+        nwk = new int[V][K];
+        nk = new int[K];
+        nkp = new int[P][K];
+        z = new int[M][];
+        Random rand = new CokusRandom(seed);
+        for (int m = 0; m < M; m++) {
+            z[m] = new int[w[m].length];
+            for (int n = 0; n < w[m].length; n++) {
+                int k = rand.nextInt(K);
+                z[m][n] = k;
+                nmk[m][k]++;
+                nwk[w[m][n]][k]++;
+                nk[k]++;
+            }
+        }
+        createSamplers();
+    }
+
+    /**
+     * create the topic samplers of the blocks on the initial counts
+     */
+    private void createSamplers() {
+        samplers = new TopicSampler[P];
+        SparseSampler.TermTopics termTopics = null;
+        AliasTable[] tables = null;
+        if (sampler == SPARSE) {
+            termTopics = new SparseSampler.TermTopics(nwk);
+        } else if (sampler == ALIAS) {
+            tables = new AliasTable[V];
+        }
+        for (int p = 0; p < P; p++) {
+            if (sampler == SPARSE) {
+                samplers[p] = new SparseSampler(nmk, nwk, nkp[p], V, alpha,
+                    beta, termTopics);
+            } else if (sampler == ALIAS) {
+                samplers[p] = new AliasSampler(nmk, nwk, nkp[p], V, alpha,
+                    beta, tables);
+            } else {
+                samplers[p] = new DenseSampler(nmk, nwk, nkp[p], V, alpha,
+                    beta);
+            }
+        }
+    }
+
+    /**
+     * run Gibbs sweeps
+     *
+     * @param niter number of sweeps
+     */
+    public void run(int niter) {
+        for (int i = 0; i < niter; i++) {
+            for (epoch = 0; epoch < P; epoch++) {
+                for (int p = 0; p < P; p++) {
+                    System.arraycopy(nk, 0, nkp[p], 0, K);
+                }
+                loop(P);
+                reconcile();
+            }
+            iter++;
+        }
+    }
+
+    /**
+     * add the changes of the topic totals of all threads to nk
+     */
+    private void reconcile() {
+        for (int k = 0; k < K; k++) {
+            int total = nk[k];
+            for (int p = 0; p < P; p++) {
+                total += nkp[p][k] - nk[k];
+            }
+            nk[k] = total;
+        }
+    }
+
+    /**
+     * sample the tokens of document block p in the term block of the current
+     * epoch
+     */
+    @Override
+    public void process(int p, int thread) {
+        int q = (p + epoch) % P;
+        TopicSampler ts = samplers[p];
+        Random rand = rands[p];
+        int[] docs = docBlocks[p];
+        ts.beginEpoch();
+        for (int i = 0; i < docs.length; i++) {
+            int m = docs[i];
+            int[] tokens = tokenBlocks[q][m];
+            if (tokens.length == 0) {
+                continue;
+            }
+            int[] wm = w[m];
+            int[] zm = z[m];
+            ts.beginDocument(m, zm);
+            for (int j = 0; j < tokens.length; j++) {
+                int n = tokens[j];
+                zm[n] = ts.resample(m, wm[n], zm[n], rand);
+            }
+            ts.endDocument(m);
+        }
+    }
+
+    /**
+     * @return log p(w | z) of the current state
+     */
+    public double logLikelihood() {
+        double lik = K * (lgamma(V * beta) - V * lgamma(beta));
+        for (int k = 0; k < K; k++) {
+            lik -= lgamma(nk[k] + V * beta);
+        }
+        for (int t = 0; t < V; t++) {
+            for (int k = 0; k < K; k++) {
+                lik += lgamma(nwk[t][k] + beta);
+            }
+        }
+        return lik;
+    }
+
+    /**
+     * @return topic-term distributions phi[k][t]
+     */
+    public double[][] getPhi() {
+        double[][] phi = new double[K][V];
+        for (int k = 0; k < K; k++) {
+            for (int t = 0; t < V; t++) {
+                phi[k][t] = (nwk[t][k] + beta) / (nk[k] + V * beta);
+            }
+        }
+        return phi;
+    }
+
+    /**
+     * @return document-topic distributions theta[m][k]
+     */
+    public double[][] getTheta() {
+        double[][] theta = new double[M][K];
+        for (int m = 0; m < M; m++) {
+            for (int k = 0; k < K; k++) {
+                theta[m][k] = (nmk[m][k] + alpha) / (w[m].length + K * alpha);
+            }
+        }
+        return theta;
+    }
+
+    /**
+     * @return topic assignments z[m][n]
+     */
+    public int[][] getZ() {
+        return z;
+    }
+
+    public int getIterations() {
+        return iter;
+    }
+
+    /**
+     * @return load imbalance of the diagonal schedule, 1 = balanced
+     */
+    public double getImbalance() {
+        return imbalance;
+    }
+
+    @Override
+    public String toString() {
+        return "LdaGibbs {M=" + M + " V=" + V + " K=" + K + " alpha=" + alpha
+            + " beta=" + beta + " P=" + P + " sampler=" + SAMPLERS[sampler]
+            + " imbalance=" + imbalance + "}";
+    }
+}
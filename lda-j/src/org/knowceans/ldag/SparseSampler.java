@@ -0,0 +1,220 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.ldag;
+
+import java.util.Random;
+
+/**
+ * SparseLDA sampler (Yao, Mimno and McCallum 2009). The full conditional
+ * <p>
+ * (nmk + alpha) (ntk + beta) / (nk + V beta)
+ * <p>
+ * is split into the smoothing bucket s = sum_k alpha beta / (nk + V beta),
+ * the document bucket r = sum_k nmk beta / (nk + V beta) and the word bucket
+ * q = sum_k (nmk + alpha) ntk / (nk + V beta). s is kept for the block and r
+ * for the document and both are updated in O(1) when a count changes. q is
+ * summed over the non-zero topics of the term only, using the cached
+ * coefficients (nmk + alpha) / (nk + V beta). Most of the mass is usually in
+ * q, so a draw costs O(K_t + K_m) instead of O(K), with K_t and K_m the
+ * numbers of topics of the term and document.
+ * <p>
+ * The non-zero topics of the terms (TermTopics) are shared between the
+ * samplers of all blocks, which is safe because a term is sampled by one
+ * block at a time.
+ *
+ * @author heinrich
+ */
+public class SparseSampler extends TopicSampler {
+
+    /**
+     * non-zero topics of each term, in order of insertion. The capacity of a
+     * list is min(K, frequency of the term), so the lists never grow.
+     */
+    public static class TermTopics {
+
+        int[][] topics;
+
+        int[] size;
+
+        public TermTopics(int[][] nwk) {
+            int V = nwk.length;
+            topics = new int[V][];
+            size = new int[V];
+            for (int t = 0; t < V; t++) {
+                int[] nt = nwk[t];
+                int freq = 0;
+                for (int k = 0; k < nt.length; k++) {
+                    freq += nt[k];
+                }
+                topics[t] = new int[Math.min(nt.length, freq)];
+                for (int k = 0; k < nt.length; k++) {
+                    if (nt[k] > 0) {
+                        topics[t][size[t]++] = k;
+                    }
+                }
+            }
+        }
+
+        void add(int t, int k) {
+            topics[t][size[t]++] = k;
+        }
+
+        void remove(int t, int k) {
+            int[] tt = topics[t];
+            int last = --size[t];
+            for (int i = 0; i < last; i++) {
+                if (tt[i] == k) {
+                    tt[i] = tt[last];
+                    return;
+                }
+            }
+        }
+    }
+
+    private TermTopics termTopics;
+
+    /**
+     * 1 / (nk + V beta)
+     */
+    private double[] coef;
+
+    /**
+     * (nmk + alpha) / (nk + V beta) for the current document
+     */
+    private double[] qcoef;
+
+    /**
+     * cumulative masses of the word bucket
+     */
+    private double[] qcum;
+
+    private double alphaBeta;
+
+    /**
+     * smoothing bucket mass
+     */
+    private double s;
+
+    /**
+     * document bucket mass
+     */
+    private double r;
+
+    public SparseSampler(int[][] nmk, int[][] nwk, int[] nk, int V,
+        double alpha, double beta, TermTopics termTopics) {
+        super(nmk, nwk, nk, V, alpha, beta);
+        this.termTopics = termTopics;
+        alphaBeta = alpha * beta;
+        coef = new double[K];
+        qcoef = new double[K];
+        qcum = new double[K];
+    }
+
+    @Override
+    public void beginEpoch() {
+        s = 0;
+        for (int k = 0; k < K; k++) {
+            coef[k] = 1. / (nk[k] + vbeta);
+            qcoef[k] = alpha * coef[k];
+            s += alphaBeta * coef[k];
+        }
+    }
+
+    @Override
+    public void beginDocument(int m, int[] zm) {
+        int[] nm = nmk[m];
+        initDocTopics(zm);
+        r = 0;
+        for (int i = 0; i < docSize; i++) {
+            int k = docTopics[i];
+            r += beta * nm[k] * coef[k];
+            qcoef[k] = (nm[k] + alpha) * coef[k];
+        }
+    }
+
+    @Override
+    public void endDocument(int m) {
+        for (int i = 0; i < docSize; i++) {
+            int k = docTopics[i];
+            qcoef[k] = alpha * coef[k];
+        }
+    }
+
+    @Override
+    public int resample(int m, int t, int k, Random rand) {
+        int[] nm = nmk[m];
+        int[] nt = nwk[t];
+        update(nm, nt, t, k, -1);
+
+        // word bucket over the non-zero topics of the term
+        int[] tt = termTopics.topics[t];
+        int size = termTopics.size[t];
+        double q = 0;
+        for (int i = 0; i < size; i++) {
+            int kk = tt[i];
+            q += qcoef[kk] * nt[kk];
+            qcum[i] = q;
+        }
+        double u = rand.nextDouble() * (s + r + q);
+        int i;
+        if (u < q) {
+            for (i = 0; i < size - 1; i++) {
+                if (u < qcum[i]) {
+                    break;
+                }
+            }
+            k = tt[i];
+        } else if ((u -= q) < r && docSize > 0) {
+            for (i = 0; i < docSize - 1; i++) {
+                int kk = docTopics[i];
+                u -= beta * nm[kk] * coef[kk];
+                if (u < 0) {
+                    break;
+                }
+            }
+            k = docTopics[i];
+        } else {
+            u -= r;
+            for (k = 0; k < K - 1; k++) {
+                u -= alphaBeta * coef[k];
+                if (u < 0) {
+                    break;
+                }
+            }
+        }
+        update(nm, nt, t, k, 1);
+        return k;
+    }
+
+    /**
+     * change the counts of topic k by delta and update the buckets, the
+     * coefficients and the non-zero lists
+     */
+    private void update(int[] nm, int[] nt, int t, int k, int delta) {
+        s -= alphaBeta * coef[k];
+        r -= beta * nm[k] * coef[k];
+        nm[k] += delta;
+        nt[k] += delta;
+        nk[k] += delta;
+        coef[k] = 1. / (nk[k] + vbeta);
+        s += alphaBeta * coef[k];
+        r += beta * nm[k] * coef[k];
+        qcoef[k] = (nm[k] + alpha) * coef[k];
+        if (delta < 0) {
+            if (nm[k] == 0) {
+                removeDocTopic(k);
+            }
+            if (nt[k] == 0) {
+                termTopics.remove(t, k);
+            }
+        } else {
+            if (nm[k] == 1) {
+                addDocTopic(k);
+            }
+            if (nt[k] == 1) {
+                termTopics.add(t, k);
+            }
+        }
+    }
+}
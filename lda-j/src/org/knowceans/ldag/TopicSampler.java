@@ -0,0 +1,145 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.ldag;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * strategy for drawing the topic of one token in the collapsed Gibbs sampler
+ * of LdaGibbs. A sampler works on the count arrays of the sampler and the
+ * topic totals of one block, and it updates the counts itself, so it can
+ * keep cached quantities consistent. LdaGibbs calls beginEpoch() after the
+ * block totals are refreshed, beginDocument() / endDocument() around the
+ * tokens of a document and resample() for each token. One sampler is used
+ * per block, so implementations keep their buffers in fields and must not
+ * allocate per draw.
+ * <p>
+ * The list of the topics of the current document with non-zero count is
+ * maintained here for the sparse samplers.
+ *
+ * @author heinrich
+ */
+public abstract class TopicSampler {
+
+    protected int K;
+
+    protected double alpha;
+
+    protected double beta;
+
+    protected double vbeta;
+
+    protected int[][] nmk;
+
+    protected int[][] nwk;
+
+    /**
+     * topic totals of the block
+     */
+    protected int[] nk;
+
+    /**
+     * topics with nmk[m][k] > 0 for the current document m
+     */
+    protected int[] docTopics;
+
+    protected int docSize;
+
+    /**
+     * position of each topic in docTopics or -1
+     */
+    protected int[] docPos;
+
+    /**
+     * @param nmk document-topic counts
+     * @param nwk term-topic counts
+     * @param nk topic totals of the block
+     * @param V number of terms
+     * @param alpha
+     * @param beta
+     */
+    public TopicSampler(int[][] nmk, int[][] nwk, int[] nk, int V,
+        double alpha, double beta) {
+        this.nmk = nmk;
+        this.nwk = nwk;
+        this.nk = nk;
+        this.K = nk.length;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.vbeta = V * beta;
+    }
+
+    /**
+     * the topic totals have been refreshed
+     */
+    public void beginEpoch() {
+    }
+
+    /**
+     * sampling of the tokens of document m starts
+     *
+     * @param m
+     * @param zm all topics of the document
+     */
+    public void beginDocument(int m, int[] zm) {
+    }
+
+    /**
+     * sampling of the tokens of document m ends
+     *
+     * @param m
+     */
+    public void endDocument(int m) {
+    }
+
+    /**
+     * remove the token of term t in document m from topic k, draw its new
+     * topic and add it to the counts
+     *
+     * @param m document
+     * @param t term
+     * @param k current topic
+     * @param rand
+     * @return new topic
+     */
+    public abstract int resample(int m, int t, int k, Random rand);
+
+    /**
+     * build the non-zero topic list of a document from its topics
+     */
+    protected void initDocTopics(int[] zm) {
+        if (docTopics == null) {
+            docTopics = new int[K];
+            docPos = new int[K];
+            Arrays.fill(docPos, -1);
+        }
+        clearDocTopics();
+        for (int n = 0; n < zm.length; n++) {
+            if (docPos[zm[n]] < 0) {
+                addDocTopic(zm[n]);
+            }
+        }
+    }
+
+    protected void clearDocTopics() {
+        for (int i = 0; i < docSize; i++) {
+            docPos[docTopics[i]] = -1;
+        }
+        docSize = 0;
+    }
+
+    protected void addDocTopic(int k) {
+        docPos[k] = docSize;
+        docTopics[docSize++] = k;
+    }
+
+    protected void removeDocTopic(int k) {
+        int i = docPos[k];
+        int last = docTopics[--docSize];
+        docTopics[i] = last;
+        docPos[last] = i;
+        docPos[k] = -1;
+    }
+}
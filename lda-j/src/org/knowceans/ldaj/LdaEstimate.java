@@ -44,6 +44,7 @@ import org.knowceans.lda.Corpus;
 import org.knowceans.lda.Document;
 import org.knowceans.lda.Utils;
 import org.knowceans.util.Cokus;
+import org.knowceans.util.StopWatch;
 
 /**
  * lda parameter estimation
@@ -73,6 +74,32 @@ public class LdaEstimate {
 
     static int K;
 
+    /**
+     * number of threads for the e-step (settings: em threads), 1 runs the
+     * sequential e-step.
+     */
+    public static int EM_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * online (mini-batch) em instead of batch em (settings: em mode online)
+     */
+    public static boolean EM_ONLINE = false;
+
+    /**
+     * documents per mini-batch (settings: online batch size)
+     */
+    public static int ONLINE_BATCH_SIZE = 256;
+
+    /**
+     * delay of the learning rate (tau0 + t)^-kappa (settings: online tau0)
+     */
+    public static double ONLINE_TAU0 = 1;
+
+    /**
+     * forgetting rate in (0.5, 1] of the learning rate (settings: online kappa)
+     */
+    public static double ONLINE_KAPPA = 0.7;
+
     static {
         Cokus.seed(4357);
     }
@@ -84,31 +111,44 @@ public class LdaEstimate {
     // lda_model* model, lda_suffstats* ss)
     public static double docEStep(Document doc, double[] gamma, double[][] phi,
         LdaModel model) {
+        return docEStep(doc, gamma, phi, model, model.ss);
+    }
+
+    /**
+     * iterate_document, accumulating into the given sufficient statistics
+     * instead of the model's (for the parallel e-step).
+     */
+    static double docEStep(Document doc, double[] gamma, double[][] phi,
+        LdaModel model, LdaSuffStats ss) {
         double likelihood;
-        int n, k;
+        int n, k, i;
+        LdaWorkspace ws = LdaInference.workspace();
 
         // posterior inference
 
-        likelihood = LdaInference.ldaInference(doc, model, gamma, phi);
+        likelihood = LdaInference.ldaInference(doc, model, gamma, phi, ws);
 
         // update sufficient statistics
 
         double gamma_sum = 0;
         for (k = 0; k < model.getNumTopics(); k++) {
             gamma_sum += gamma[k];
-            model.ss.alphaSuffstats += digamma(gamma[k]);
+            ss.alphaSuffstats += digamma(gamma[k]);
         }
-        model.ss.alphaSuffstats -= model.getNumTopics() * digamma(gamma_sum);
+        ss.alphaSuffstats -= model.getNumTopics() * digamma(gamma_sum);
 
+        // only topics with non-zero phi contribute
         for (n = 0; n < doc.getLength(); n++) {
-            for (k = 0; k < model.getNumTopics(); k++) {
-                model.ss.classWord[k][doc.getWord(n)] += doc.getCount(n)
+            int[] active = ws.getActive(n);
+            for (i = 0; i < ws.getNumActive(n); i++) {
+                k = active[i];
+                ss.classWord[k][doc.getWord(n)] += doc.getCount(n)
                     * phi[n][k];
-                model.ss.classTotal[k] += doc.getCount(n) * phi[n][k];
+                ss.classTotal[k] += doc.getCount(n) * phi[n][k];
             }
         }
 
-        model.ss.numDocs = model.ss.numDocs + 1;
+        ss.numDocs = ss.numDocs + 1;
 
         return likelihood;
     }
@@ -175,6 +215,7 @@ public class LdaEstimate {
             int d;
             LdaModel model;
             double[][] varGamma, phi;
+            LdaParallelEStep estep = null;
 
             // allocate variational parameters
 
@@ -198,7 +239,14 @@ public class LdaEstimate {
                 model.ss = new LdaSuffStats(model);
             }
             filename = directory + "/000";
+            StopWatch.start(Utils.IO);
             model.save(filename);
+            StopWatch.stop(Utils.IO);
+
+            if (EM_THREADS > 1) {
+                estep = new LdaParallelEStep(corpus, model, varGamma,
+                    EM_THREADS);
+            }
 
             // run expectation maximization
 
@@ -218,17 +266,25 @@ public class LdaEstimate {
 
                 // e-step
 
-                for (d = 0; d < corpus.getNumDocs(); d++) {
-                    if ((d % 100) == 0) {
-                        System.out.println("document " + d);
+                StopWatch.start(Utils.ESTEP);
+                if (estep != null) {
+                    likelihood = estep.run();
+                } else {
+                    for (d = 0; d < corpus.getNumDocs(); d++) {
+                        if ((d % 100) == 0) {
+                            System.out.println("document " + d);
+                        }
+                        likelihood += docEStep(corpus.getDoc(d), varGamma[d],
+                            phi, model);
                     }
-                    likelihood += docEStep(corpus.getDoc(d), varGamma[d], phi,
-                        model);
                 }
+                StopWatch.stop(Utils.ESTEP);
 
                 // m-step
 
+                StopWatch.start(Utils.MSTEP);
                 model.mle(ESTIMATE_ALPHA);
+                StopWatch.stop(Utils.MSTEP);
 
                 // check convergence
 
@@ -243,6 +299,7 @@ public class LdaEstimate {
 
                 // fprintf(likelihood_file, "%10.10f\t%5.5e\n", likelihood,
                 // converged);
+                StopWatch.start(Utils.IO);
                 likelihoodFile.write(likelihood + "\t" + converged + "\n");
                 likelihoodFile.flush();
 
@@ -256,10 +313,12 @@ public class LdaEstimate {
                     saveGamma(filename, varGamma, corpus.getNumDocs(), model
                         .getNumTopics());
                 }
+                StopWatch.stop(Utils.IO);
             }
 
             // output the final model
 
+            StopWatch.start(Utils.IO);
             itername = nf.format(i);
             filename = directory + "/final";
             model.save(filename);
@@ -267,8 +326,13 @@ public class LdaEstimate {
             saveGamma(filename, varGamma, corpus.getNumDocs(), model
                 .getNumTopics());
             likelihoodFile.close();
+            if (estep != null) {
+                estep.shutdown();
+            }
+            StopWatch.stop(Utils.IO);
 
-            // output the word assignments (for visualization)
+            // output the word assignments (for visualization), a final
+            // inference pass after training, not timed as an em phase
             //sprintf(filename, "%s/word-assignments.dat", directory);
             BufferedWriter wasnFile;
             wasnFile = new BufferedWriter(new FileWriter(directory
@@ -281,6 +345,7 @@ public class LdaEstimate {
                     model, varGamma[d], phi);
                 writeWordAssignment(wasnFile, corpus.getDoc(d), phi, model);
             }
+            wasnFile.close();
 
             return model;
         } catch (IOException e) {
@@ -328,6 +393,25 @@ public class LdaEstimate {
                     EM_MAX_ITER = Integer.parseInt(line.substring(12).trim());
                 } else if (line.startsWith("em convergence ")) {
                     EM_CONVERGED = Float.parseFloat(line.substring(15).trim());
+                } else if (line.startsWith("em threads ")) {
+                    EM_THREADS = Integer.parseInt(line.substring(11).trim());
+                } else if (line.startsWith("em mode ")) {
+                    EM_ONLINE = line.substring(8).trim().equals("online");
+                } else if (line.startsWith("online batch size ")) {
+                    ONLINE_BATCH_SIZE = Integer.parseInt(line.substring(18)
+                        .trim());
+                } else if (line.startsWith("online tau0 ")) {
+                    ONLINE_TAU0 = Double.parseDouble(line.substring(12).trim());
+                } else if (line.startsWith("online kappa ")) {
+                    ONLINE_KAPPA = Double
+                        .parseDouble(line.substring(13).trim());
+                } else if (line.startsWith("model format ")) {
+                    String format = line.substring(13).trim();
+                    LdaModel.SAVEBINARY = !format.equals("text");
+                    LdaModel.SAVETXT = !format.equals("binary");
+                } else if (line.startsWith("model dtype ")) {
+                    LdaModel.BINARY_DTYPE = line.substring(12).trim().equals(
+                        "float64") ? LdaModel.FLOAT64 : LdaModel.FLOAT32;
                 } else if (line.startsWith("alpha ")) {
                     alphaAction = line.substring(6).trim();
                 }
@@ -362,6 +446,7 @@ public class LdaEstimate {
 
         model = new LdaModel(modelRoot);
         varGamma = new double[corpus.getNumDocs()][model.getNumTopics()];
+        phi = new double[corpus.getMaxCorpusLength()][model.getNumTopics()];
         filename = save + "-lda-lhood.dat";
 
         try {
@@ -371,7 +456,6 @@ public class LdaEstimate {
                     System.out.println("document " + d);
 
                 doc = corpus.getDoc(d);
-                phi = new double[doc.getLength()][model.getNumTopics()];
                 likelihood = LdaInference.ldaInference(doc, model, varGamma[d],
                     phi);
 
@@ -410,7 +494,6 @@ public class LdaEstimate {
             INITIAL_ALPHA = Float.parseFloat(args[1]);
             K = Integer.parseInt(args[2]);
             readSettings(args[3]);
-            corpus = new Corpus(args[4]);
             @SuppressWarnings("unused")
             boolean a = new File(args[6]).mkdir();
 
@@ -421,8 +504,20 @@ public class LdaEstimate {
             System.out.println("\tem max iter " + EM_MAX_ITER);
             System.out.println("\tem convergence " + EM_CONVERGED);
             System.out.println("\testimate alpha " + ESTIMATE_ALPHA);
-
-            runEm(args[5], args[6], corpus);
+            System.out.println("\tem threads " + EM_THREADS);
+
+            if (EM_ONLINE) {
+                System.out.println("\tonline batch size " + ONLINE_BATCH_SIZE);
+                System.out.println("\tonline tau0 " + ONLINE_TAU0);
+                System.out.println("\tonline kappa " + ONLINE_KAPPA);
+                // documents are streamed from the file
+                LdaOnline.runOnline(args[5], args[6], args[4]);
+            } else {
+                StopWatch.start(Utils.IO);
+                corpus = new Corpus(args[4]);
+                StopWatch.stop(Utils.IO);
+                runEm(args[5], args[6], corpus);
+            }
 
         } else {
             // command: lda inf settings.txt berry.model berry/berry.dat
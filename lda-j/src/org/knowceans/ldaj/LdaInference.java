@@ -29,7 +29,6 @@ import static java.lang.Math.exp;
 import static java.lang.Math.log;
 import static org.knowceans.lda.Utils.digamma;
 import static org.knowceans.lda.Utils.lgamma;
-import static org.knowceans.lda.Utils.logSum;
 
 import org.knowceans.lda.Document;
 
@@ -37,6 +36,12 @@ import org.knowceans.lda.Document;
  * lda inference functions
  * <p>
  * lda-c reference: functions in lda-inference.c. TODO: merge with model?
+ * <p>
+ * The buffers of the inference are kept in a LdaWorkspace per thread, so no
+ * allocation occurs per document. After the first sweep over a document, only
+ * the topics of a word with phi above PHI_THRESHOLD are updated (the others
+ * stay at zero), so the cost per word scales with the active topics rather
+ * than K.
  * 
  * @author heinrich
  */
@@ -46,53 +51,115 @@ public class LdaInference {
 
     public static int VAR_MAX_ITER;
 
+    /**
+     * phi values below this threshold are set to zero and their topics are
+     * not updated for the word in later iterations. 0 for dense inference.
+     */
+    public static double PHI_THRESHOLD = 1e-10;
+
+    /**
+     * workspace per thread
+     */
+    private static ThreadLocal<LdaWorkspace> workspaces = new ThreadLocal<LdaWorkspace>() {
+        @Override
+        protected LdaWorkspace initialValue() {
+            return new LdaWorkspace();
+        }
+    };
+
+    /**
+     * @return the inference workspace of the current thread
+     */
+    public static LdaWorkspace workspace() {
+        return workspaces.get();
+    }
+
     /*
      * variational inference
      */
     // 2009: double lda_inference(document* doc, lda_model* model, double* var_gamma, double** phi)
     public static double ldaInference(Document doc, LdaModel model,
         double[] varGamma, double[][] phi) {
+        return ldaInference(doc, model, varGamma, phi, workspace());
+    }
+
+    /**
+     * variational inference using the buffers of the given workspace, which
+     * afterwards holds the active topics of every word of the document.
+     */
+    public static double ldaInference(Document doc, LdaModel model,
+        double[] varGamma, double[][] phi, LdaWorkspace ws) {
         double converged = 1;
-        double phisum = 0, likelihood = 0, likelihoodOld = 0;
-        double[] oldphi = new double[model.getNumTopics()];
-        int k, n, varIter;
-        double[] digammaGam = new double[model.getNumTopics()];
+        double phisum, phimax, likelihood = 0, likelihoodOld = 0;
+        int k, n, i, na, varIter;
+        int K = model.getNumTopics();
+        int N = doc.getLength();
+
+        ws.ensure(K, N);
+        double[] oldphi = ws.oldphi;
+        double[] digammaGam = ws.digammaGam;
 
         // compute posterior dirichlet
-        for (k = 0; k < model.getNumTopics(); k++) {
-            varGamma[k] = model.getAlpha() + doc.getTotal()
-                / (double) model.getNumTopics();
+        for (k = 0; k < K; k++) {
+            varGamma[k] = model.getAlpha() + doc.getTotal() / (double) K;
             digammaGam[k] = digamma(varGamma[k]);
-            for (n = 0; n < doc.getLength(); n++)
-                phi[n][k] = 1.0 / model.getNumTopics();
+        }
+        for (n = 0; n < N; n++) {
+            double[] phin = phi[n];
+            int[] act = ws.active[n];
+            for (k = 0; k < K; k++) {
+                phin[k] = 1.0 / K;
+                act[k] = k;
+            }
+            ws.nactive[n] = K;
         }
         varIter = 0;
 
-        while ((converged > VAR_CONVERGED) && (varIter < VAR_MAX_ITER)
-            || (VAR_MAX_ITER == -1)) {
+        while ((converged > VAR_CONVERGED)
+            && ((varIter < VAR_MAX_ITER) || (VAR_MAX_ITER == -1))) {
             varIter++;
-            for (n = 0; n < doc.getLength(); n++) {
+            for (n = 0; n < N; n++) {
+                double[] phin = phi[n];
+                int[] act = ws.active[n];
+                int w = doc.getWord(n);
+                int count = doc.getCount(n);
+                na = ws.nactive[n];
+
+                // log phi and its maximum over the active topics
+                phimax = Double.NEGATIVE_INFINITY;
+                for (i = 0; i < na; i++) {
+                    k = act[i];
+                    oldphi[k] = phin[k];
+                    phin[k] = digammaGam[k] + model.logProbW[k][w];
+                    if (phin[k] > phimax) {
+                        phimax = phin[k];
+                    }
+                }
+                // normalise in the linear domain (one exp per cell)
                 phisum = 0;
-                for (k = 0; k < model.getNumTopics(); k++) {
-                    oldphi[k] = phi[n][k];
-
-                    assert varGamma[k] != 0;
-                    phi[n][k] = digammaGam[k]
-                        + model.logProbW[k][doc.getWord(n)];
-
-                    if (k > 0) {
-                        phisum = logSum(phisum, phi[n][k]);
+                for (i = 0; i < na; i++) {
+                    k = act[i];
+                    phin[k] = exp(phin[k] - phimax);
+                    phisum += phin[k];
+                }
+                int nna = 0;
+                for (i = 0; i < na; i++) {
+                    k = act[i];
+                    phin[k] /= phisum;
+                    if (phin[k] < PHI_THRESHOLD) {
+                        phin[k] = 0;
                     } else {
-                        phisum = phi[n][k];
+                        act[nna++] = k;
                     }
+                    varGamma[k] = varGamma[k] + count * (phin[k] - oldphi[k]);
                 }
-                for (k = 0; k < model.getNumTopics(); k++) {
-                    phi[n][k] = exp(phi[n][k] - phisum);
-                    varGamma[k] = varGamma[k] + doc.getCount(n)
-                        * (phi[n][k] - oldphi[k]);
-                }
+                ws.nactive[n] = nna;
             }
-            likelihood = computeLikelihood(doc, model, phi, varGamma);
+            // digamma values are reused over the words of one iteration
+            for (k = 0; k < K; k++) {
+                digammaGam[k] = digamma(varGamma[k]);
+            }
+            likelihood = computeLikelihood(doc, model, phi, varGamma, ws);
             assert !Double.isNaN(likelihood);
             converged = (likelihoodOld - likelihood) / likelihoodOld;
             likelihoodOld = likelihood;
@@ -105,33 +172,61 @@ public class LdaInference {
      */
     public static double computeLikelihood(Document doc, LdaModel model,
         double[][] phi, double[] varGamma) {
-        double likelihood = 0, digsum = 0, varGammaSum = 0;// , x;
-        double[] dig = new double[model.getNumTopics()];
-        int k, n, message = 0;
+        LdaWorkspace ws = workspace();
+        int K = model.getNumTopics();
+        ws.ensure(K, doc.getLength());
+        for (int k = 0; k < K; k++) {
+            ws.digammaGam[k] = digamma(varGamma[k]);
+        }
+        for (int n = 0; n < doc.getLength(); n++) {
+            for (int k = 0; k < K; k++) {
+                ws.active[n][k] = k;
+            }
+            ws.nactive[n] = K;
+        }
+        return computeLikelihood(doc, model, phi, varGamma, ws);
+    }
 
-        for (k = 0; k < model.getNumTopics(); k++) {
-            dig[k] = digamma(varGamma[k]);
+    /**
+     * compute likelihood bound, using the digamma values of varGamma and the
+     * active topics in the workspace.
+     */
+    static double computeLikelihood(Document doc, LdaModel model,
+        double[][] phi, double[] varGamma, LdaWorkspace ws) {
+        double likelihood = 0, digsum = 0, varGammaSum = 0, dk;
+        double[] dig = ws.digammaGam;
+        int k, n, i;
+        int K = model.getNumTopics();
+        double alpha = model.getAlpha();
+
+        for (k = 0; k < K; k++) {
             varGammaSum += varGamma[k];
         }
         digsum = digamma(varGammaSum);
 
-        likelihood = lgamma(model.getAlpha() * model.getNumTopics())
-            - model.getNumTopics() * lgamma(model.getAlpha())
+        likelihood = lgamma(alpha * K) - K * lgamma(alpha)
             - (lgamma(varGammaSum));
 
-        assert likelihood != Double.NaN;
-        for (k = 0; k < model.getNumTopics(); k++) {
-            likelihood += (model.getAlpha() - 1) * (dig[k] - digsum)
-                + lgamma(varGamma[k]) - (varGamma[k] - 1) * (dig[k] - digsum);
-
-            for (n = 0; n < doc.getLength(); n++) {
-                if (phi[n][k] > 0) {
-                    likelihood += doc.getCount(n)
-                        * (phi[n][k] * ((dig[k] - digsum) - log(phi[n][k])
-                            + log(phi[n][k]) - model.logProbW[k][doc.getWord(n)]));
-
+        assert !Double.isNaN(likelihood);
+        for (k = 0; k < K; k++) {
+            dk = dig[k] - digsum;
+            likelihood += (alpha - 1) * dk + lgamma(varGamma[k])
+                - (varGamma[k] - 1) * dk;
+        }
+        for (n = 0; n < doc.getLength(); n++) {
+            double[] phin = phi[n];
+            int[] act = ws.active[n];
+            int w = doc.getWord(n);
+            int na = ws.nactive[n];
+            double wordlik = 0;
+            for (i = 0; i < na; i++) {
+                k = act[i];
+                if (phin[k] > 0) {
+                    wordlik += phin[k]
+                        * ((dig[k] - digsum) - log(phin[k]) + model.logProbW[k][w]);
                 }
             }
+            likelihood += doc.getCount(n) * wordlik;
         }
         return likelihood;
     }
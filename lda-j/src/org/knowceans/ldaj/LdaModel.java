@@ -25,15 +25,20 @@
  */
 package org.knowceans.ldaj;
 
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.DataOutputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.knowceans.lda.Utils;
 
@@ -44,6 +49,14 @@ import static java.lang.Math.*;
  * <p>
  * lda-c reference: Combines the struct lda_model in lda.h and the code in
  * lda-model.h
+ * <p>
+ * Besides the lda-c text format ({root}.beta, {root}.other), models can be
+ * saved in a versioned binary format {root}.beta.bin (little endian): a 32
+ * byte header int magic (LDAM), int version, int num_topics, int num_terms,
+ * int dtype (4 = float32, 8 = float64), int reserved, double alpha, followed
+ * by the num_topics rows of log beta. The binary file is memory-mapped and
+ * copied row by row when loading, without parsing. If both formats exist,
+ * the binary one is loaded.
  * 
  * @author heinrich
  */
@@ -60,6 +73,30 @@ public class LdaModel {
 
     public static boolean SAVETXT = true;
 
+    /**
+     * magic number of the binary model file ("LDAM")
+     */
+    public static final int BINARY_MAGIC = 0x4c44414d;
+
+    public static final int BINARY_VERSION = 1;
+
+    /**
+     * dtype of 4-byte float values
+     */
+    public static final int FLOAT32 = 4;
+
+    /**
+     * dtype of 8-byte double values
+     */
+    public static final int FLOAT64 = 8;
+
+    /**
+     * dtype of the values saved by saveBinary
+     */
+    public static int BINARY_DTYPE = FLOAT32;
+
+    private static final int BINARY_HEADER = 32;
+
     /**
      * create an empty lda model with parameters:
      * 
@@ -86,6 +123,18 @@ public class LdaModel {
         int i, j;
         double x, alpha = 0;
 
+        filename = modelRoot + ".beta.bin";
+        if (isBinary(filename)) {
+            System.out.println("loading " + filename);
+            try {
+                loadBinary(filename);
+                ss = new LdaSuffStats(this);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return;
+        }
+
         filename = modelRoot + ".other";
 
         System.out.println("loading " + filename + "\n");
@@ -105,6 +154,7 @@ public class LdaModel {
             }
             br.close();
             ss = new LdaSuffStats(this);
+            logProbW = new double[numTopics][numTerms];
             this.alpha = alpha;
             filename = modelRoot + ".beta";
             System.out.println("loading " + filename);
@@ -128,6 +178,87 @@ public class LdaModel {
         }
     }
 
+    /**
+     * @param filename
+     * @return true if the file exists and starts with the binary model header
+     */
+    static boolean isBinary(String filename) {
+        File f = new File(filename);
+        if (!f.isFile() || f.length() < BINARY_HEADER) {
+            return false;
+        }
+        try {
+            RandomAccessFile raf = new RandomAccessFile(f, "r");
+            // little endian magic
+            int magic = Integer.reverseBytes(raf.readInt());
+            raf.close();
+            return magic == BINARY_MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * load the parameters from a binary model file. The rows of log beta are
+     * mapped in blocks of at most 1 GB and copied into logProbW.
+     * 
+     * @param filename
+     * @throws IOException
+     */
+    private void loadBinary(String filename) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(filename, "r");
+        try {
+            FileChannel fc = raf.getChannel();
+            ByteBuffer header = fc.map(FileChannel.MapMode.READ_ONLY, 0,
+                BINARY_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            header.getInt();
+            int version = header.getInt();
+            if (version != BINARY_VERSION) {
+                throw new IOException(filename + ": unsupported version "
+                    + version);
+            }
+            numTopics = header.getInt();
+            numTerms = header.getInt();
+            int dtype = header.getInt();
+            header.getInt();
+            alpha = header.getDouble();
+            if (dtype != FLOAT32 && dtype != FLOAT64) {
+                throw new IOException(filename + ": unsupported dtype "
+                    + dtype);
+            }
+            long rowBytes = (long) numTerms * dtype;
+            if (fc.size() < BINARY_HEADER + numTopics * rowBytes) {
+                throw new IOException(filename + " is truncated");
+            }
+            logProbW = new double[numTopics][numTerms];
+            float[] row = dtype == FLOAT32 ? new float[numTerms] : null;
+            int blockRows = (int) max(1, (1L << 30) / max(1, rowBytes));
+            for (int k = 0; k < numTopics; k += blockRows) {
+                int nrows = min(blockRows, numTopics - k);
+                MappedByteBuffer block = fc.map(FileChannel.MapMode.READ_ONLY,
+                    BINARY_HEADER + k * rowBytes, nrows * rowBytes);
+                block.order(ByteOrder.LITTLE_ENDIAN);
+                if (dtype == FLOAT64) {
+                    DoubleBuffer db = block.asDoubleBuffer();
+                    for (int r = 0; r < nrows; r++) {
+                        db.get(logProbW[k + r]);
+                    }
+                } else {
+                    FloatBuffer fb = block.asFloatBuffer();
+                    for (int r = 0; r < nrows; r++) {
+                        fb.get(row);
+                        double[] w = logProbW[k + r];
+                        for (int j = 0; j < numTerms; j++) {
+                            w[j] = row[j];
+                        }
+                    }
+                }
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
     // 2009: void lda_mle(lda_model* model, lda_suffstats* ss, int estimate_alpha)
     void mle(boolean estAlpha) {
         int k;
@@ -167,13 +298,22 @@ public class LdaModel {
      */
     // 2009: void save_lda_model(lda_model*, char*);
     public void save(String modelRoot) {
-        int i, j;
-
         if (SAVEBINARY) {
             saveBinary(modelRoot);
             if (!SAVETXT)
                 return;
         }
+        saveText(modelRoot);
+    }
+
+    /**
+     * save an lda model in the text format of lda-c ({root}.beta and
+     * {root}.other), e.g., to export a binary model
+     * 
+     * @param modelRoot
+     */
+    public void saveText(String modelRoot) {
+        int i, j;
 
         String filename = modelRoot + ".beta";
 
@@ -201,26 +341,60 @@ public class LdaModel {
     }
 
     /**
-     * save an lda model with beta in binary format
+     * save an lda model with beta in binary format with values of type
+     * BINARY_DTYPE
      * 
      * @param modelRoot
      */
     public void saveBinary(String modelRoot) {
+        saveBinary(modelRoot, BINARY_DTYPE);
+    }
+
+    /**
+     * save an lda model with beta in binary format ({root}.beta.bin, see
+     * class comment). The .other file is written as well.
+     * 
+     * @param modelRoot
+     * @param dtype FLOAT32 or FLOAT64
+     */
+    public void saveBinary(String modelRoot, int dtype) {
         int i, j;
 
         String filename = modelRoot + ".beta.bin";
 
+        if (dtype != FLOAT32 && dtype != FLOAT64) {
+            throw new IllegalArgumentException("unsupported dtype " + dtype);
+        }
         try {
-            DataOutputStream dos = new DataOutputStream(
-                new BufferedOutputStream(new FileOutputStream(filename)));
-            dos.writeInt(numTopics);
-            dos.writeInt(numTerms);
+            RandomAccessFile raf = new RandomAccessFile(filename, "rw");
+            raf.setLength(0);
+            FileChannel fc = raf.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(BINARY_HEADER).order(
+                ByteOrder.LITTLE_ENDIAN);
+            header.putInt(BINARY_MAGIC).putInt(BINARY_VERSION).putInt(
+                numTopics).putInt(numTerms).putInt(dtype).putInt(0).putDouble(
+                alpha);
+            header.flip();
+            while (header.hasRemaining()) {
+                fc.write(header);
+            }
+            ByteBuffer row = ByteBuffer.allocate(numTerms * dtype).order(
+                ByteOrder.LITTLE_ENDIAN);
             for (i = 0; i < this.numTopics; i++) {
-                for (j = 0; j < this.numTerms; j++) {
-                    dos.writeFloat((float) (this.logProbW[i][j]));
+                row.clear();
+                if (dtype == FLOAT64) {
+                    row.asDoubleBuffer().put(this.logProbW[i]);
+                } else {
+                    FloatBuffer fb = row.asFloatBuffer();
+                    for (j = 0; j < this.numTerms; j++) {
+                        fb.put((float) (this.logProbW[i][j]));
+                    }
+                }
+                while (row.hasRemaining()) {
+                    fc.write(row);
                 }
             }
-            dos.close();
+            raf.close();
             filename = modelRoot + ".other";
             BufferedWriter bw = new BufferedWriter(new FileWriter(filename));
             bw.write("num_topics " + numTopics + "\n");
@@ -0,0 +1,212 @@
+/*
+ * (C) Copyright 2004-2009, Gregor Heinrich (gregor :: arbylon : net)
+ * (This file is part of the lda-j (org.knowceans.ldaj.*) experimental software
+ * package, a port of lda-c Copyright David Blei.)
+ */
+/*
+ * lda-j is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ */
+/*
+ * lda-j is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ */
+/*
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.ldaj;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+
+import org.knowceans.lda.CorpusStream;
+import org.knowceans.lda.Document;
+import org.knowceans.lda.Utils;
+
+/**
+ * online (stochastic mini-batch) variational em, after Hoffman, Blei and Bach
+ * (2010), Online learning for latent Dirichlet allocation. The corpus is
+ * streamed from its file in mini-batches of ONLINE_BATCH_SIZE documents. After
+ * the e-step of each batch, the topic-word sufficient statistics are updated
+ * as ss = (1 - rho) ss + rho (D / S) ss_batch with the learning rate rho =
+ * (ONLINE_TAU0 + t)^-ONLINE_KAPPA, followed by the m-step. Starting from a
+ * saved model, new documents can be folded into an existing model.
+ * <p>
+ * Settings are read by LdaEstimate.readSettings (em mode online, online batch
+ * size, online tau0, online kappa), em max iter is the maximum number of
+ * passes over the corpus.
+ *
+ * @author heinrich
+ */
+public class LdaOnline {
+
+    /**
+     * run online em over the corpus file
+     *
+     * @param start random, seeded or the root of a saved model
+     * @param directory output directory
+     * @param dataFilename corpus file
+     * @return the estimated model
+     */
+    public static LdaModel runOnline(String start, String directory,
+        String dataFilename) {
+        try {
+            BufferedWriter likelihoodFile;
+            String filename;
+            LdaModel model;
+            LdaSuffStats batchStats;
+            LdaParallelEStep estep = null;
+            CorpusStream stream;
+            int K = LdaEstimate.K;
+            int S = LdaEstimate.ONLINE_BATCH_SIZE;
+
+            stream = new CorpusStream(dataFilename);
+            stream.scan();
+            int D = stream.getNumDocs();
+            System.out.println(stream);
+
+            if (start.equals("seeded")) {
+                model = new LdaModel(stream.getNumTerms(), K);
+                model.ss = new LdaSuffStats(model);
+                model.ss.streamInitialize(model, stream);
+                model.mle(false);
+                model.setAlpha(LdaEstimate.INITIAL_ALPHA);
+            } else if (start.equals("random")) {
+                model = new LdaModel(stream.getNumTerms(), K);
+                model.ss = new LdaSuffStats(model);
+                model.ss.randomInitialize(model);
+                model.mle(false);
+                model.setAlpha(LdaEstimate.INITIAL_ALPHA);
+            } else {
+                model = new LdaModel(start);
+                if (stream.getNumTerms() > model.getNumTerms()) {
+                    System.out.println("corpus has " + stream.getNumTerms()
+                        + " terms, model only " + model.getNumTerms());
+                    stream.close();
+                    return null;
+                }
+                K = model.getNumTopics();
+                model.ss = new LdaSuffStats(model);
+                // the existing model counts like one pass over the corpus:
+                // its tokens, split evenly over the topics (the expected
+                // split of a pass under a symmetric alpha)
+                model.ss.modelInitialize(model, (double) stream.getNumWords()
+                    / K);
+            }
+            model.ss.numDocs = D;
+            batchStats = new LdaSuffStats(model);
+            filename = directory + "/000";
+            model.save(filename);
+
+            Document[] batch = new Document[S];
+            double[][] varGamma = new double[S][K];
+            double[][] phi = new double[stream.getMaxCorpusLength()][K];
+            if (LdaEstimate.EM_THREADS > 1) {
+                estep = new LdaParallelEStep(model,
+                    stream.getMaxCorpusLength(), LdaEstimate.EM_THREADS);
+            }
+
+            int pass = 0, t = 0, nbatch, d;
+            double likelihood = 0, likelihoodOld = 0, converged = 1, rho;
+            filename = directory + "/" + "likelihood.dat";
+            likelihoodFile = new BufferedWriter(new FileWriter(filename));
+            NumberFormat nf = new DecimalFormat("000");
+
+            while (((converged < 0) || (converged > LdaEstimate.EM_CONVERGED) || (pass <= 2))
+                && (pass < LdaEstimate.EM_MAX_ITER)) {
+                pass++;
+                System.out.println("**** online em pass " + pass + " ****");
+                likelihood = 0;
+                stream.reset();
+                while ((nbatch = stream.nextBatch(batch)) > 0) {
+                    t++;
+
+                    // e-step on the mini-batch
+
+                    batchStats.zeroInitialize(model);
+                    if (estep != null) {
+                        estep.setDocs(batch, nbatch, varGamma);
+                        likelihood += estep.run(batchStats);
+                    } else {
+                        for (d = 0; d < nbatch; d++) {
+                            likelihood += LdaEstimate.docEStep(batch[d],
+                                varGamma[d], phi, model, batchStats);
+                        }
+                    }
+
+                    // stochastic update of the statistics and m-step
+
+                    rho = Math.pow(LdaEstimate.ONLINE_TAU0 + t,
+                        -LdaEstimate.ONLINE_KAPPA);
+                    model.ss.blend(batchStats, rho, D / (double) nbatch);
+                    model.mle(LdaEstimate.ESTIMATE_ALPHA);
+                    if ((t % 100) == 0) {
+                        System.out.println("batch " + t + " rho " + rho);
+                    }
+                }
+
+                // check convergence over the pass
+
+                converged = (likelihoodOld - likelihood) / likelihoodOld;
+                likelihoodOld = likelihood;
+                likelihoodFile.write(likelihood + "\t" + converged + "\n");
+                likelihoodFile.flush();
+
+                if ((pass % LdaEstimate.LAG) == 0) {
+                    filename = directory + "/" + nf.format(pass);
+                    model.save(filename);
+                }
+            }
+            likelihoodFile.close();
+            if (estep != null) {
+                estep.shutdown();
+            }
+
+            // output the final model and the gammas of the corpus
+
+            model.save(directory + "/final");
+            saveGamma(directory + "/" + nf.format(pass) + "final.gamma",
+                stream, model, phi);
+            stream.close();
+            return model;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * run inference over the stream and write the gammas document by document.
+     */
+    static void saveGamma(String filename, CorpusStream stream,
+        LdaModel model, double[][] phi) throws IOException {
+        int k, K = model.getNumTopics();
+        double[] gamma = new double[K];
+        Document doc = new Document();
+        BufferedWriter bw = new BufferedWriter(new FileWriter(filename));
+
+        stream.reset();
+        while (stream.next(doc)) {
+            LdaInference.ldaInference(doc, model, gamma, phi);
+            for (k = 0; k < K; k++) {
+                if (k > 0)
+                    bw.write(' ');
+                bw.write(Utils.formatDouble(gamma[k]));
+            }
+            bw.newLine();
+        }
+        bw.close();
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * (C) Copyright 2004-2009, Gregor Heinrich (gregor :: arbylon : net)
+ * (This file is part of the lda-j (org.knowceans.ldaj.*) experimental software
+ * package, a port of lda-c Copyright David Blei.)
+ */
+/*
+ * lda-j is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ */
+/*
+ * lda-j is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ */
+/*
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.ldaj;
+
+import org.knowceans.lda.Corpus;
+import org.knowceans.lda.Document;
+import org.knowceans.util.ParallelFor;
+
+/**
+ * multi-core e-step for LdaEstimate.runEm. The corpus is split into
+ * contiguous document shards, each of which accumulates into its own
+ * sufficient statistics. After the shards are processed, the statistics are
+ * reduced into the model statistics in shard order (parallel over topics), so
+ * results match the sequential e-step up to floating-point summation order
+ * and are reproducible for a fixed number of threads.
+ * <p>
+ * The phi buffers are per thread, the sufficient statistics per shard, both
+ * allocated once and reused across em iterations.
+ *
+ * @author heinrich
+ */
+public class LdaParallelEStep extends ParallelFor {
+
+    private Document[] docs;
+
+    private int numDocs;
+
+    private LdaModel model;
+
+    private double[][] varGamma;
+
+    /**
+     * sufficient statistics per shard
+     */
+    private LdaSuffStats[] shardStats;
+
+    /**
+     * likelihood per shard
+     */
+    private double[] shardLikelihood;
+
+    /**
+     * phi buffer per thread
+     */
+    private double[][][] phis;
+
+    /**
+     * whether the current loop is the reduction over topics
+     */
+    private boolean reducing;
+
+    /**
+     * statistics that receive the reduction
+     */
+    private LdaSuffStats target;
+
+    /**
+     * create a parallel e-step with one shard per thread
+     *
+     * @param corpus
+     * @param model model whose statistics model.ss receive the reduction
+     * @param varGamma [M][K] variational dirichlet parameters
+     * @param nthreads
+     */
+    public LdaParallelEStep(Corpus corpus, LdaModel model,
+        double[][] varGamma, int nthreads) {
+        this(model, corpus.getMaxCorpusLength(), nthreads);
+        setDocs(corpus.getDocs(), corpus.getNumDocs(), varGamma);
+    }
+
+    /**
+     * create a parallel e-step without documents, which are set per run via
+     * setDocs() (e.g., mini-batches of a corpus stream).
+     *
+     * @param model
+     * @param maxLength maximum number of unique terms of a document
+     * @param nthreads
+     */
+    public LdaParallelEStep(LdaModel model, int maxLength, int nthreads) {
+        super(nthreads);
+        this.model = model;
+        shardStats = new LdaSuffStats[nthreads];
+        shardLikelihood = new double[nthreads];
+        phis = new double[nthreads][][];
+        for (int i = 0; i < nthreads; i++) {
+            shardStats[i] = new LdaSuffStats(model);
+            phis[i] = new double[maxLength][model.getNumTopics()];
+        }
+    }
+
+    /**
+     * set the documents of the next runs
+     *
+     * @param docs
+     * @param numDocs number of valid documents in docs
+     * @param varGamma [numDocs][K] variational dirichlet parameters
+     */
+    public void setDocs(Document[] docs, int numDocs, double[][] varGamma) {
+        this.docs = docs;
+        this.numDocs = numDocs;
+        this.varGamma = varGamma;
+    }
+
+    /**
+     * run the e-step over the corpus and reduce the shard statistics into
+     * model.ss, which is expected to be zero-initialised.
+     *
+     * @return likelihood bound of the corpus
+     */
+    public double run() {
+        return run(model.ss);
+    }
+
+    /**
+     * run the e-step over the documents and reduce the shard statistics into
+     * the given statistics, which are expected to be zero-initialised.
+     *
+     * @param target
+     * @return likelihood bound of the documents
+     */
+    public double run(LdaSuffStats target) {
+        this.target = target;
+        reducing = false;
+        loop(shardStats.length);
+        reducing = true;
+        loop(model.getNumTopics());
+
+        double likelihood = 0;
+        for (int s = 0; s < shardStats.length; s++) {
+            likelihood += shardLikelihood[s];
+            target.alphaSuffstats += shardStats[s].alphaSuffstats;
+            target.numDocs += shardStats[s].numDocs;
+        }
+        return likelihood;
+    }
+
+    /**
+     * process one shard of documents or, during reduction, one topic.
+     */
+    @Override
+    public void process(int iteration, int thread) {
+        if (reducing) {
+            reduceTopic(iteration);
+            return;
+        }
+        int nshards = shardStats.length;
+        int M = numDocs;
+        int start = (int) ((long) M * iteration / nshards);
+        int end = (int) ((long) M * (iteration + 1) / nshards);
+        LdaSuffStats ss = shardStats[iteration];
+        double[][] phi = phis[thread];
+        double likelihood = 0;
+
+        ss.zeroInitialize(model);
+        for (int d = start; d < end; d++) {
+            if ((d % 100) == 0) {
+                System.out.println("document " + d);
+            }
+            likelihood += LdaEstimate.docEStep(docs[d], varGamma[d], phi,
+                model, ss);
+        }
+        shardLikelihood[iteration] = likelihood;
+    }
+
+    /**
+     * sum the shard statistics of topic k into the target statistics.
+     *
+     * @param k
+     */
+    private void reduceTopic(int k) {
+        double[] classWord = target.classWord[k];
+        for (int s = 0; s < shardStats.length; s++) {
+            double[] shardWord = shardStats[s].classWord[k];
+            for (int w = 0; w < classWord.length; w++) {
+                classWord[w] += shardWord[w];
+            }
+            target.classTotal[k] += shardStats[s].classTotal[k];
+        }
+    }
+}
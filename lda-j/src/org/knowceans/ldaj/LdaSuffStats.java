@@ -25,9 +25,11 @@
  */
 package org.knowceans.ldaj;
 
+import java.io.IOException;
 import java.util.Arrays;
 
 import org.knowceans.lda.Corpus;
+import org.knowceans.lda.CorpusStream;
 import org.knowceans.lda.Document;
 import org.knowceans.util.Cokus;
 
@@ -82,6 +84,78 @@ public class LdaSuffStats {
 
     }
 
+    /**
+     * seeded initialisation as corpusInitialize, reading the seed documents
+     * from a scanned corpus stream in one pass.
+     */
+    public void streamInitialize(LdaModel model, CorpusStream stream)
+        throws IOException {
+        int num_topics = model.getNumTopics();
+        int[] seeds = new int[num_topics * NUM_INIT];
+        int i, k, d, n;
+        Document doc = new Document();
+
+        for (i = 0; i < seeds.length; i++) {
+            seeds[i] = (int) Math.floor(Cokus.randDouble()
+                * stream.getNumDocs());
+            System.out.println("initialized with document " + seeds[i]);
+        }
+        stream.reset();
+        for (d = 0; stream.next(doc); d++) {
+            for (i = 0; i < seeds.length; i++) {
+                if (seeds[i] != d)
+                    continue;
+                k = i / NUM_INIT;
+                for (n = 0; n < doc.getLength(); n++) {
+                    classWord[k][doc.getWord(n)] += doc.getCount(n);
+                }
+            }
+        }
+        stream.reset();
+        for (k = 0; k < num_topics; k++) {
+            for (n = 0; n < model.getNumTerms(); n++) {
+                classWord[k][n] += 1.0;
+                classTotal[k] += classWord[k][n];
+            }
+        }
+    }
+
+    /**
+     * initialise the statistics from the topics of a loaded model, with
+     * weight total pseudo-counts per topic.
+     */
+    public void modelInitialize(LdaModel model, double weight) {
+        for (int k = 0; k < model.getNumTopics(); k++) {
+            classTotal[k] = 0;
+            for (int w = 0; w < model.getNumTerms(); w++) {
+                classWord[k][w] = weight * Math.exp(model.logProbW[k][w]);
+                classTotal[k] += classWord[k][w];
+            }
+        }
+    }
+
+    /**
+     * stochastic update with the statistics of a mini-batch: this = (1 - rho)
+     * * this + rho * scale * batch, where scale is the ratio of corpus and
+     * batch size.
+     *
+     * @param batch statistics of the mini-batch
+     * @param rho learning rate
+     * @param scale
+     */
+    public void blend(LdaSuffStats batch, double rho, double scale) {
+        double a = 1 - rho, b = rho * scale;
+        for (int k = 0; k < classTotal.length; k++) {
+            double[] cw = classWord[k];
+            double[] bcw = batch.classWord[k];
+            for (int w = 0; w < cw.length; w++) {
+                cw[w] = a * cw[w] + b * bcw[w];
+            }
+            classTotal[k] = a * classTotal[k] + b * batch.classTotal[k];
+        }
+        alphaSuffstats = a * alphaSuffstats + b * batch.alphaSuffstats;
+    }
+
     // 2009: void random_initialize_ss(lda_suffstats* ss, lda_model* model);
     public void randomInitialize(LdaModel model) {
         int num_topics = model.getNumTopics();
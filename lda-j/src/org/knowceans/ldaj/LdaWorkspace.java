@@ -0,0 +1,125 @@
+/*
+ * (C) Copyright 2004-2009, Gregor Heinrich (gregor :: arbylon : net)
+ * (This file is part of the lda-j (org.knowceans.ldaj.*) experimental software
+ * package, a port of lda-c Copyright David Blei.)
+ */
+/*
+ * lda-j is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ */
+/*
+ * lda-j is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ */
+/*
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.ldaj;
+
+/**
+ * buffers of the variational inference for one thread, so LdaInference does
+ * not allocate per document. Besides the K-dimensional buffers, the workspace
+ * keeps for every word position the list of topics whose phi is above
+ * LdaInference.PHI_THRESHOLD, which is what makes the inner loops sparse.
+ * <p>
+ * A workspace must not be shared between threads. It grows on demand.
+ *
+ * @author heinrich
+ */
+public class LdaWorkspace {
+
+    /**
+     * [K] phi of the current word before the update
+     */
+    double[] oldphi;
+
+    /**
+     * [K] digamma(varGamma), refreshed once per variational iteration
+     */
+    double[] digammaGam;
+
+    /**
+     * [N][K] active topics per word position (first nactive[n] entries)
+     */
+    int[][] active;
+
+    /**
+     * [N] number of active topics per word position
+     */
+    int[] nactive;
+
+    private int numTopics;
+
+    /**
+     * create an empty workspace
+     */
+    public LdaWorkspace() {
+        this(0, 0);
+    }
+
+    /**
+     * create a workspace for documents with up to maxLength unique terms.
+     *
+     * @param numTopics
+     * @param maxLength
+     */
+    public LdaWorkspace(int numTopics, int maxLength) {
+        this.numTopics = numTopics;
+        oldphi = new double[numTopics];
+        digammaGam = new double[numTopics];
+        active = new int[maxLength][numTopics];
+        nactive = new int[maxLength];
+    }
+
+    /**
+     * make sure the buffers fit a document of the given number of unique terms
+     *
+     * @param numTopics
+     * @param length
+     */
+    void ensure(int numTopics, int length) {
+        if (numTopics != this.numTopics) {
+            this.numTopics = numTopics;
+            oldphi = new double[numTopics];
+            digammaGam = new double[numTopics];
+            active = new int[Math.max(length, active.length)][numTopics];
+        } else if (length > active.length) {
+            int[][] a = new int[length][];
+            System.arraycopy(active, 0, a, 0, active.length);
+            for (int n = active.length; n < length; n++) {
+                a[n] = new int[numTopics];
+            }
+            active = a;
+        }
+        if (nactive.length < active.length) {
+            nactive = new int[active.length];
+        }
+    }
+
+    /**
+     * @param n word position
+     * @return number of topics with non-zero phi at position n after the last
+     *         inference run
+     */
+    public int getNumActive(int n) {
+        return nactive[n];
+    }
+
+    /**
+     * @param n word position
+     * @return topics with non-zero phi at position n (first getNumActive(n)
+     *         entries are valid)
+     */
+    public int[] getActive(int n) {
+        return active[n];
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.ldam;
+
+import static org.knowceans.util.Gamma.digamma;
+
+/**
+ * sufficient statistics of the Newton-Raphson update of a vectorial alpha
+ * (see Newton.alpha) over the variational dirichlet parameters gamma of M
+ * documents: sum_m digamma(gamma_mk), sum_m digamma(sum_k gamma_mk) and the
+ * column sums sum_m gamma_mk. The statistics are accumulated one document
+ * (row) at a time, so they can be collected during the e-step or by separate
+ * threads and merged afterwards.
+ */
+public class AlphaStats {
+
+    /**
+     * number of topics
+     */
+    final int K;
+
+    /**
+     * number of documents added
+     */
+    int M;
+
+    /**
+     * sum_m digamma(gamma_mk)
+     */
+    final double[] spg;
+
+    /**
+     * sum_m digamma(sum_k gamma_mk)
+     */
+    double psg;
+
+    /**
+     * sum_m gamma_mk
+     */
+    final double[] gsum;
+
+    public AlphaStats(int K) {
+        this.K = K;
+        spg = new double[K];
+        gsum = new double[K];
+    }
+
+    public void clear() {
+        M = 0;
+        psg = 0;
+        for (int k = 0; k < K; k++) {
+            spg[k] = 0;
+            gsum[k] = 0;
+        }
+    }
+
+    /**
+     * add the gamma of one document
+     *
+     * @param gamma [K]
+     */
+    public void add(double[] gamma) {
+        double gs = 0;
+        for (int k = 0; k < K; k++) {
+            gs += gamma[k];
+            spg[k] += digamma(gamma[k]);
+            gsum[k] += gamma[k];
+        }
+        psg += digamma(gs);
+        M++;
+    }
+
+    /**
+     * merge the statistics of other documents
+     *
+     * @param other
+     */
+    public void add(AlphaStats other) {
+        for (int k = 0; k < K; k++) {
+            spg[k] += other.spg[k];
+            gsum[k] += other.gsum[k];
+        }
+        psg += other.psg;
+        M += other.M;
+    }
+
+    public int getNumDocs() {
+        return M;
+    }
+}
@@ -6,12 +6,17 @@ package org.knowceans.ldam;
 import java.util.Arrays;
 
 import org.knowceans.lda.Corpus;
-import org.knowceans.lda.Document;
+import org.knowceans.lda.Utils;
 import org.knowceans.util.Cokus;
 import org.knowceans.util.StopWatch;
 
 public class LdaLearn {
 
+    /**
+     * number of threads (and document shards) of the e-step
+     */
+    public static int THREADS = Runtime.getRuntime().availableProcessors();
+
     /**
      * Top-level learning algorithm
      * 
@@ -24,14 +29,13 @@ public class LdaLearn {
      */
     public static void ldaLearn(Corpus data, double[] alpha, double[][] beta,
         int emmax, int demmax, double epsilon) {
-        double[] gamma, nt, pnt, ap;
-        double[][] q, gammas, betas;
+        double[] betaf;
+        VbEStep estep;
         double lik, plik = 0;
         double z;
         int K = alpha.length;
         int V = data.getNumTerms();
         int M = data.getNumDocs();
-        int dlenmax = data.getMaxCorpusLength();
 
         // random seed
         //srand(time(NULL));
@@ -51,22 +55,12 @@ public class LdaLearn {
         // sort alpha initially
         Arrays.sort(alpha);
 
-        for (int v = 0; v < V; v++) {
-            for (int k = 0; k < K; k++) {
-                beta[v][k] = (double) 1 / V;
-            }
-        }
-
-        // initialize posteriors
-        gammas = new double[M][K];
-        betas = new double[V][K];
+        // beta as flat array [V * K]
+        betaf = new double[VbEStep.flatSize(V, K)];
+        Arrays.fill(betaf, (double) 1 / V);
 
-        // initialize buffers
-        q = new double[dlenmax][K];
-        gamma = new double[K];
-        ap = new double[K];
-        nt = new double[K];
-        pnt = new double[K];
+        // e-step with posteriors and buffers per shard
+        estep = new VbEStep(data, alpha, betaf, K, demmax, THREADS);
 
         System.out.println("Number of documents          = " + M);
         System.out.println("Number of words              = " + V);
@@ -74,6 +68,7 @@ public class LdaLearn {
         System.out.println("Number of outer EM iteration = " + emmax);
         System.out.println("Number of inner EM iteration = " + demmax);
         System.out.println("Convergence threshold        = " + epsilon);
+        System.out.println("Number of threads            = " + THREADS);
 
         /*
          * learn main
@@ -83,31 +78,27 @@ public class LdaLearn {
             System.out.println("iteration " + (t + 1) + "/" + emmax + "..\t");
             System.out.flush();
 
-            // VB-E step
-            // iterate over documents
-            for (int d = 0; d < M; d++) {
-                Document doc = data.getDoc(d);
-                VbEm.vbem(doc, gamma, q, nt, pnt, ap, alpha, beta, demmax);
-                accumGammas(gammas, gamma, d);
-                accumBetas(betas, q, doc);
-            }
+            // VB-E step, with the likelihood of the current parameters
+            StopWatch.start(Utils.ESTEP);
+            lik = estep.run();
+            StopWatch.stop(Utils.ESTEP);
+
             // VB-M step
             // Newton-Raphson for alpha
-            Newton.alpha(alpha, gammas, M, K, 0);
+            StopWatch.start(Utils.MSTEP);
+            Newton.alpha(alpha, estep.getAlphaStats(), 0);
 
             // MLE for beta
-            LdamUtils.normalizeMatrixCol(beta, betas);
+            estep.mstep();
+            StopWatch.stop(Utils.MSTEP);
 
-            // reset buffer
-            for (int v = 0; v < V; v++)
-                Arrays.fill(betas[v], 0);
             // converged ?
-            lik = ldaLik(data, beta, gammas, data.getNumDocs(), K);
             System.out.println("likelihood = " + lik + "\t");
             System.out.flush();
             if ((t > 1) && (Math.abs((lik - plik) / lik) < epsilon)) {
                 if (t < 5) {
                     System.out.println("\nearly convergence. restarting.");
+                    estep.shutdown();
                     ldaLearn(data, alpha, beta, emmax, demmax, epsilon);
                     return;
                 } else {
@@ -123,49 +114,11 @@ public class LdaLearn {
             System.out.println("ETA:" + StopWatch.read() + " (" + eta
                 + " sec/step)");
         }
-        return;
-    }
+        estep.shutdown();
 
-    private static double ldaLik(Corpus data, double[][] beta,
-        double[][] gammas, int m, int nclass) {
-        double[][] egammas;
-        double z, lik;
-        int j, k;
-        int n;
-        lik = 0;
-
-        egammas = new double[m][nclass];
-        LdamUtils.normalizeMatrixRow(egammas, gammas);
-
-        for (int d = 0; d < data.getNumDocs(); d++) {
-            Document doc = data.getDoc(d);
-            n = doc.getLength();
-            for (j = 0; j < n; j++) {
-                for (k = 0, z = 0; k < nclass; k++)
-                    z += beta[doc.getWord(j)][k] * egammas[d][k];
-                lik += doc.getCount(j) * Math.log(z);
-            }
+        for (int v = 0; v < V; v++) {
+            System.arraycopy(betaf, v * K, beta[v], 0, K);
         }
-
-        return lik;
-    }
-
-    static void accumGammas(double[][] gammas, double[] gamma, int m) {
-        /* gammas(n,:) = gamma for Newton-Raphson of alpha */
-        int k;
-        for (k = 0; k < gamma.length; k++)
-            gammas[m][k] = gamma[k];
         return;
     }
-
-    static void accumBetas(double[][] betas, double[][] q, Document doc) {
-        int i, k;
-        int n = doc.getLength();
-        int K = betas[0].length;
-
-        for (i = 0; i < n; i++)
-            for (k = 0; k < K; k++)
-                betas[doc.getWord(i)][k] += q[i][k] * doc.getCount(i);
-    }
-
 }
@@ -31,8 +31,10 @@ import java.io.FileWriter;
 import java.io.IOException;
 
 import org.knowceans.lda.Corpus;
+import org.knowceans.lda.Utils;
 import org.knowceans.util.Arguments;
 import org.knowceans.util.ArrayIo;
+import org.knowceans.util.StopWatch;
 
 // lda.c/.h
 public class LdaMain {
@@ -52,18 +54,23 @@ public class LdaMain {
         String options = "k|topics=i {number of topics, default = 50}" + //
             "i|iter=i {maximum iterations in outer loop} " + // 
             "d|diter=i {maximum iterations in VB loop}" + //
-            "e|eps=f {convergence tolerance}";
+            "e|eps=f {convergence tolerance}" + //
+            "t|threads=i {number of threads, default = number of processors}";
         String types = "s {corpusfile} s {modelbase}";
         Arguments a = new Arguments(options, types);
         a.parse(args);
 
+        StopWatch.start(Utils.IO);
         data = new Corpus((String) a.getArgument(1, "./nips/nips.corpus"));
+        StopWatch.stop(Utils.IO);
         String model = (String) a.getArgument(2, "nips.ldam");
 
         int K = (Integer) a.getOption("k", CLASS_DEFAULT);
         int emmax = (Integer) a.getOption("i", EMMAX_DEFAULT);
         int demmax = (Integer) a.getOption("d", DEMMAX_DEFAULT);
-        double epsilon = (Double) a.getOption("e", EPSILON_DEFAULT);
+        double epsilon = ((Number) a.getOption("e", EPSILON_DEFAULT))
+            .doubleValue();
+        LdaLearn.THREADS = (Integer) a.getOption("t", LdaLearn.THREADS);
 
         V = data.getNumTerms();
 
@@ -73,8 +80,11 @@ public class LdaMain {
         beta = new double[V][K];
 
         LdaLearn.ldaLearn(data, alpha, beta, emmax, demmax, epsilon);
+        Newton.shutdown();
 
+        StopWatch.start(Utils.IO);
         ldaWrite(model, alpha, beta);
+        StopWatch.stop(Utils.IO);
 
     }
 
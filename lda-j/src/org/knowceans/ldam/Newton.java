@@ -5,11 +5,28 @@ package org.knowceans.ldam;
 
 import static org.knowceans.util.Gamma.*;
 
+import org.knowceans.util.ParallelFor;
+
 public class Newton {
 
     public static int MAX_RECURSION_LIMIT = 20;
     public static int MAX_NEWTON_ITERATION = 20;
 
+    /**
+     * number of threads for the sufficient statistics of alpha
+     */
+    public static int THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * minimum M * K for a parallel sweep
+     */
+    private static final int PARALLEL_MIN_SIZE = 1 << 14;
+
+    /**
+     * parallel sweep over the gammas (created on first use)
+     */
+    private static Sweep sweep;
+
     /**
      * this is for vectorial alpha
      * 
@@ -20,11 +37,65 @@ public class Newton {
      * @param level
      */
     static void alpha(double[] alpha, double[][] gammas, int M, int K, int level) {
-        int i, j, t;
+        AlphaStats stats = new AlphaStats(K);
+        suffStats(stats, gammas, M);
+        alpha(alpha, stats, level);
+    }
+
+    /**
+     * compute the sufficient statistics of alpha from the gammas in one
+     * row-major sweep, in parallel for large M * K. The result is
+     * reproducible for a fixed number of threads (one block per thread, so
+     * the summation order depends on THREADS).
+     * 
+     * @param stats (cleared)
+     * @param gammas [M][K]
+     * @param M
+     */
+    static void suffStats(AlphaStats stats, double[][] gammas, int M) {
+        stats.clear();
+        if (THREADS <= 1 || (long) M * stats.K < PARALLEL_MIN_SIZE) {
+            for (int m = 0; m < M; m++) {
+                stats.add(gammas[m]);
+            }
+            return;
+        }
+        synchronized (Newton.class) {
+            if (sweep == null) {
+                sweep = new Sweep(THREADS);
+            }
+            sweep.run(stats, gammas, M);
+        }
+    }
+
+    /**
+     * shut down the threads of the parallel sweep
+     */
+    public static void shutdown() {
+        synchronized (Newton.class) {
+            if (sweep != null) {
+                sweep.shutdown();
+                sweep = null;
+            }
+        }
+    }
+
+    /**
+     * this is for vectorial alpha, with the sufficient statistics computed
+     * beforehand, e.g., during the e-step. The restarts at higher levels reuse
+     * the statistics, so each Newton iteration costs O(K).
+     * 
+     * @param alpha
+     * @param stats
+     * @param level
+     */
+    static void alpha(double[] alpha, AlphaStats stats, int level) {
+        int i, t;
         double[] g, h, pg, palpha;
-        double z, sh, hgz;
-        double psg, spg, gs;
+        double sh, hgz;
         double alpha0, palpha0;
+        int K = stats.K;
+        int M = stats.M;
 
         // allocate arrays
         g = new double[K];
@@ -33,34 +104,9 @@ public class Newton {
         palpha = new double[K];
 
         // initialize
-        if (level == 0) {
-            for (i = 0; i < K; i++) {
-                for (j = 0, z = 0; j < M; j++) {
-                    z += gammas[j][i];
-                }
-                alpha[i] = z / (M * K);
-            }
-        } else {
-            for (i = 0; i < K; i++) {
-                for (j = 0, z = 0; j < M; j++) {
-                    z += gammas[j][i];
-                }
-                alpha[i] = z / (M * K * Math.pow(10, level));
-            }
-        }
-
-        psg = 0;
-        for (i = 0; i < M; i++) {
-            for (j = 0, gs = 0; j < K; j++) {
-                gs += gammas[i][j];
-            }
-            psg += digamma(gs);
-        }
         for (i = 0; i < K; i++) {
-            for (j = 0, spg = 0; j < M; j++) {
-                spg += digamma(gammas[j][i]);
-            }
-            pg[i] = spg - psg;
+            alpha[i] = stats.gsum[i] / (M * K * Math.pow(10, level));
+            pg[i] = stats.spg[i] - stats.psg;
         }
 
         /* main iteration */
@@ -94,7 +140,7 @@ public class Newton {
                             .println("newton:: maximum recursion limit reached.");
                         System.exit(1);
                     } else {
-                        alpha(alpha, gammas, M, K, 1 + level);
+                        alpha(alpha, stats, 1 + level);
                         return;
                     }
                 }
@@ -110,6 +156,50 @@ public class Newton {
         }
         System.err.println("newton:: maximum iteration reached. t = " + t);
     }
+
+    /**
+     * Sweep computes the statistics in a fixed number of contiguous blocks of
+     * documents, which are merged in block order.
+     */
+    private static class Sweep extends ParallelFor {
+
+        private double[][] gammas;
+
+        private int M;
+
+        private AlphaStats[] blocks;
+
+        Sweep(int nthreads) {
+            super(nthreads);
+            blocks = new AlphaStats[nthreads];
+        }
+
+        void run(AlphaStats stats, double[][] gammas, int M) {
+            this.gammas = gammas;
+            this.M = M;
+            for (int b = 0; b < blocks.length; b++) {
+                if (blocks[b] == null || blocks[b].K != stats.K) {
+                    blocks[b] = new AlphaStats(stats.K);
+                }
+            }
+            loop(blocks.length);
+            for (int b = 0; b < blocks.length; b++) {
+                stats.add(blocks[b]);
+            }
+            this.gammas = null;
+        }
+
+        @Override
+        public void process(int block, int thread) {
+            AlphaStats stats = blocks[block];
+            int start = (int) ((long) M * block / blocks.length);
+            int end = (int) ((long) M * (block + 1) / blocks.length);
+            stats.clear();
+            for (int m = start; m < end; m++) {
+                stats.add(gammas[m]);
+            }
+        }
+    }
     
     /**
      * this is for scalar alpha 
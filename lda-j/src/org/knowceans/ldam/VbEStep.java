@@ -0,0 +1,247 @@
+/*
+ * Created on Oct 17, 2026
+ */
+package org.knowceans.ldam;
+
+import java.util.Arrays;
+
+import org.knowceans.lda.Corpus;
+import org.knowceans.lda.Document;
+import org.knowceans.util.ParallelFor;
+
+/**
+ * parallel VB-EM iteration for LdaLearn with beta and its statistics in flat
+ * arrays [V * K] (topic weights of a word contiguous). The corpus is split
+ * into one contiguous shard of documents per thread, and each shard
+ * accumulates its own beta statistics, alpha statistics and likelihood in a
+ * single pass over its documents. The m-step of beta reduces the shards in
+ * shard order and normalises the columns in two row-major passes over blocks
+ * of words. Results are reproducible for a fixed number of threads.
+ * <p>
+ * The likelihood of a document, sum_t n_t log sum_k beta_tk gamma_k /
+ * sum(gamma), is computed with the beta of the e-step, i.e., before the m-step.
+ */
+public class VbEStep extends ParallelFor {
+
+    private static final int ESTEP = 0, REDUCE = 1, NORMALIZE = 2;
+
+    private Corpus data;
+
+    private double[] alpha;
+
+    /**
+     * beta[w * K + k]
+     */
+    private double[] beta;
+
+    private int K;
+
+    private int V;
+
+    private int demmax;
+
+    private int phase;
+
+    /**
+     * beta statistics per shard [V * K]
+     */
+    private double[][] betas;
+
+    /**
+     * alpha statistics per shard
+     */
+    private AlphaStats[] alphaStats;
+
+    private double[] shardLik;
+
+    /**
+     * column sums per block of words [K]
+     */
+    private double[][] blockSums;
+
+    /**
+     * column sums of the reduced statistics
+     */
+    private double[] colSums;
+
+    /**
+     * per thread: q, nt, pnt, ap, gamma
+     */
+    private double[][][] qs;
+
+    private double[][][] buffers;
+
+    /**
+     * size of a flat [V * K] array, checked against the maximum array size
+     * (word offsets w * K are int)
+     *
+     * @param V
+     * @param K
+     * @return V * K
+     * @throws IllegalArgumentException if V * K exceeds Integer.MAX_VALUE
+     */
+    public static int flatSize(int V, int K) {
+        if ((long) V * K > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("V * K = " + (long) V * K
+                + " (V = " + V + ", K = " + K + ") exceeds the flat array size "
+                + Integer.MAX_VALUE);
+        }
+        return V * K;
+    }
+
+    /**
+     * @param data corpus
+     * @param alpha alpha estimate (updated by the caller)
+     * @param beta beta estimate [V * K], updated by mstep()
+     * @param K number of topics
+     * @param demmax max iterations of the document vb loop
+     * @param nthreads number of threads and shards
+     */
+    public VbEStep(Corpus data, double[] alpha, double[] beta, int K,
+        int demmax, int nthreads) {
+        super(nthreads);
+        this.data = data;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.K = K;
+        this.V = data.getNumTerms();
+        this.demmax = demmax;
+        betas = new double[nthreads][flatSize(V, K)];
+        alphaStats = new AlphaStats[nthreads];
+        shardLik = new double[nthreads];
+        blockSums = new double[nthreads][K];
+        colSums = new double[K];
+        qs = new double[nthreads][][];
+        buffers = new double[nthreads][][];
+        for (int i = 0; i < nthreads; i++) {
+            alphaStats[i] = new AlphaStats(K);
+            qs[i] = new double[data.getMaxCorpusLength()][K];
+            buffers[i] = new double[4][K];
+        }
+    }
+
+    /**
+     * e-step over the corpus, accumulating the statistics of alpha and beta.
+     *
+     * @return likelihood of the corpus
+     */
+    public double run() {
+        phase = ESTEP;
+        loop(betas.length);
+        double lik = 0;
+        for (int s = 0; s < betas.length; s++) {
+            lik += shardLik[s];
+        }
+        return lik;
+    }
+
+    /**
+     * @return alpha statistics of the last e-step, merged in shard order
+     */
+    public AlphaStats getAlphaStats() {
+        AlphaStats stats = new AlphaStats(K);
+        for (int s = 0; s < alphaStats.length; s++) {
+            stats.add(alphaStats[s]);
+        }
+        return stats;
+    }
+
+    /**
+     * MLE for beta: normalise the columns of the beta statistics of the last
+     * e-step into beta.
+     */
+    public void mstep() {
+        phase = REDUCE;
+        loop(blockSums.length);
+        for (int k = 0; k < K; k++) {
+            colSums[k] = 0;
+        }
+        for (int b = 0; b < blockSums.length; b++) {
+            for (int k = 0; k < K; k++) {
+                colSums[k] += blockSums[b][k];
+            }
+        }
+        phase = NORMALIZE;
+        loop(blockSums.length);
+    }
+
+    @Override
+    public void process(int iteration, int thread) {
+        if (phase == ESTEP) {
+            estep(iteration, thread);
+        } else {
+            int start = (int) ((long) V * iteration / blockSums.length);
+            int end = (int) ((long) V * (iteration + 1) / blockSums.length);
+            if (phase == REDUCE) {
+                reduce(iteration, start * K, end * K);
+            } else {
+                for (int w = start * K; w < end * K; w += K) {
+                    for (int k = 0; k < K; k++) {
+                        beta[w + k] = betas[0][w + k] / colSums[k];
+                    }
+                }
+            }
+        }
+    }
+
+    private void estep(int shard, int thread) {
+        int M = data.getNumDocs();
+        int start = (int) ((long) M * shard / betas.length);
+        int end = (int) ((long) M * (shard + 1) / betas.length);
+        double[][] q = qs[thread];
+        double[] nt = buffers[thread][0];
+        double[] pnt = buffers[thread][1];
+        double[] ap = buffers[thread][2];
+        double[] gamma = buffers[thread][3];
+        double[] bs = betas[shard];
+        AlphaStats stats = alphaStats[shard];
+        double lik = 0, gsum, z;
+        int t, k, w, n;
+
+        Arrays.fill(bs, 0);
+        stats.clear();
+        for (int d = start; d < end; d++) {
+            Document doc = data.getDoc(d);
+            VbEm.vbem(doc, gamma, q, nt, pnt, ap, alpha, beta, demmax);
+            stats.add(gamma);
+            for (k = 0, gsum = 0; k < K; k++) {
+                gsum += gamma[k];
+            }
+            // likelihood and beta statistics in one pass over the tokens
+            for (t = 0; t < doc.getLength(); t++) {
+                w = doc.getWord(t) * K;
+                n = doc.getCount(t);
+                for (k = 0, z = 0; k < K; k++) {
+                    z += beta[w + k] * gamma[k];
+                    bs[w + k] += q[t][k] * n;
+                }
+                lik += n * Math.log(z / gsum);
+            }
+        }
+        shardLik[shard] = lik;
+    }
+
+    /**
+     * sum the shard statistics of elements [start, end) into shard 0 and
+     * their column sums into the block sums.
+     */
+    private void reduce(int block, int start, int end) {
+        double[] sums = blockSums[block];
+        double[] target = betas[0];
+        for (int k = 0; k < K; k++) {
+            sums[k] = 0;
+        }
+        for (int s = 1; s < betas.length; s++) {
+            double[] bs = betas[s];
+            for (int i = start; i < end; i++) {
+                target[i] += bs[i];
+            }
+        }
+        for (int i = start, k = 0; i < end; i++) {
+            sums[k] += target[i];
+            if (++k == K) {
+                k = 0;
+            }
+        }
+    }
+}
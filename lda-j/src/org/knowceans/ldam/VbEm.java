@@ -77,4 +77,65 @@ public class VbEm {
 
         return;
     }
+
+    /**
+     * variational E step with beta in a flat array, beta[w * K + k], so the
+     * topic weights of a word are contiguous. Computes the same values as the
+     * variant with beta[V][K].
+     * 
+     * @param doc document
+     * @param gamma var param for document
+     * @param q var param for tokens
+     * @param nt (local) words per topic
+     * @param pnt (local) saved words per topic (for convergence monitoring)
+     * @param ap (local)
+     * @param alpha alpha estimate
+     * @param beta beta estimate, [V * K]
+     * @param demmax max iterations
+     */
+    public static void vbem(Document doc, double[] gamma, double[][] q,
+        double[] nt, double[] pnt, double[] ap, double[] alpha,
+        double[] beta, int demmax) {
+        int r, k, t, w;
+        double qsum;
+        double[] qt;
+        int Tm = doc.getLength();
+        int K = gamma.length;
+
+        for (k = 0; k < K; k++) {
+            nt[k] = (double) Tm / K;
+        }
+
+        for (r = 0; r < demmax; r++) {
+            // vb-estep
+            for (k = 0; k < K; k++) {
+                ap[k] = Math.exp(digamma(alpha[k] + nt[k]));
+                nt[k] = 0;
+            }
+            // accumulate and normalize q, vb-mstep
+            for (t = 0; t < Tm; t++) {
+                qt = q[t];
+                w = doc.getWord(t) * K;
+                qsum = 0;
+                for (k = 0; k < K; k++) {
+                    qt[k] = beta[w + k] * ap[k];
+                    qsum += qt[k];
+                }
+                for (k = 0; k < K; k++) {
+                    qt[k] /= qsum;
+                    nt[k] += qt[k] * doc.getCount(t);
+                }
+            }
+            // converged ?
+            if ((r > 0) && LdamUtils.converged(nt, pnt, K, 1.0e-2))
+                break;
+            for (k = 0; k < K; k++) {
+                pnt[k] = nt[k];
+            }
+        }
+        // update gamma
+        for (k = 0; k < K; k++) {
+            gamma[k] = alpha[k] + nt[k];
+        }
+    }
 }